@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+package tdd.bench;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tdd.BulkConverter;
+import tdd.ColumnTransformer;
+import tdd.FileConverter;
+import tdd.MalformedNumberException;
+import tdd.MalformedPolicy;
+import tdd.NumeralParser;
+import tdd.NumeralSummary;
+import tdd.ParallelConverter;
+import tdd.RomanArabicConverter;
+import tdd.ValidationReport;
+import tdd.ValueOutOfBoundsException;
+
+/**
+ * The batch and streaming conversions, over SIZE values at a time. Scores are per value, so
+ * they can be compared with the single-number benchmarks.
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkBenchmark
+{
+    /** Number of values in each batch */
+    static final int SIZE = 1 << 16;
+    
+    private int[] values;
+    private CharSequence[] romans;
+    private String[] strings;
+    private byte[] bytes;
+    private int[] offsets;
+    private int[] decoded;
+    private byte[] status;
+    private ByteBuffer lines;
+    private ParallelConverter parallel;
+    private Path in;
+    private Path out;
+    private Path csv;
+    private CharSequence[] malformed;
+    private final String[] messages = new String[SIZE];
+    private final ValidationReport report = new ValidationReport();
+    private final ColumnTransformer transformer = ColumnTransformer.toArabic(',', MalformedPolicy.COUNT, 2);
+    
+    @Setup
+    public void setUp() throws IOException {
+        values = Inputs.values(SIZE, 7);
+        romans = new CharSequence[SIZE];
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < SIZE; i++) {
+            romans[i] = Inputs.roman(values[i]);
+            text.append(romans[i]).append('\n');
+        }
+        strings = new String[SIZE];
+        bytes = new byte[15 * SIZE];
+        offsets = new int[SIZE + 1];
+        decoded = new int[SIZE];
+        status = new byte[SIZE];
+        lines = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.US_ASCII));
+        parallel = new ParallelConverter();
+        malformed = Inputs.numbers("malformed", SIZE);
+        
+        in = Files.createTempFile("numerals", ".txt");
+        out = Files.createTempFile("numerals", ".out");
+        try (FileChannel channel = FileChannel.open(in, StandardOpenOption.WRITE)) {
+            channel.write(lines.duplicate());
+        }
+        
+        // A record per value, with the numeral in the middle of fields that are copied through
+        final StringBuilder records = new StringBuilder();
+        for (int i = 0; i < SIZE; i++) {
+            records.append(i).append(",\"item ").append(i).append(", boxed\",").append(romans[i]).append(",12.50,EUR\n");
+        }
+        csv = Files.createTempFile("numerals", ".csv");
+        Files.write(csv, records.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        parallel.close();
+        Files.deleteIfExists(in);
+        Files.deleteIfExists(out);
+        Files.deleteIfExists(csv);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int validateWithExceptions() {
+        int failures = 0;
+        for (int i = 0; i < SIZE; i++) {
+            try {
+                new RomanArabicConverter(malformed[i].toString()).toRoman();
+            } catch (MalformedNumberException | ValueOutOfBoundsException e) {
+                messages[failures++] = "Row " + i + ": " + e.getMessage();
+            }
+        }
+        return failures;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long validateWithReport() {
+        report.clear();
+        report.checkAll(malformed, 0, SIZE);
+        return report.failures();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int bulkToRomanStrings() {
+        return BulkConverter.toRoman(values, 0, SIZE, strings, 0);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int bulkToRomanBytes() {
+        return BulkConverter.toRoman(values, 0, SIZE, bytes, 0, offsets, 0);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int bulkToArabic() {
+        return BulkConverter.toArabic(romans, 0, SIZE, decoded, 0, status, 0);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int bulkToArabicPerfectHash() {
+        return BulkConverter.toArabic(romans, 0, SIZE, decoded, 0, status, 0, NumeralParser.PERFECT_HASH);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int parallelToArabic() {
+        return parallel.toArabic(romans, 0, SIZE, decoded, 0, status, 0);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public byte[] parallelLinesToArabic() throws MalformedNumberException {
+        return parallel.toArabic(lines);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public NumeralSummary summarizeLines() throws MalformedNumberException {
+        return NumeralSummary.of(lines, MalformedPolicy.COUNT);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public FileConverter.Stats fileToArabic() throws IOException, MalformedNumberException {
+        return FileConverter.toArabic(in, out);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public FileConverter.Stats fileToRoman() throws IOException, MalformedNumberException, ValueOutOfBoundsException {
+        return FileConverter.toRoman(in, out);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public ColumnTransformer.Stats csvColumnToArabic() throws IOException, MalformedNumberException, ValueOutOfBoundsException {
+        return transformer.transform(csv, out);
+    }
+}
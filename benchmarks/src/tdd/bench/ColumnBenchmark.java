@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tdd.BulkConverter;
+import tdd.NumeralColumn;
+
+/**
+ * Writing and scanning a NumeralColumn of SIZE values, on and off the heap, against the same
+ * work on a plain int[]. Scores are per value.
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnBenchmark
+{
+    /** Number of values in the column */
+    static final int SIZE = BulkBenchmark.SIZE;
+    
+    @Param({"heap", "offHeap"})
+    public String storage;
+    
+    private int[] values;
+    private int[] decoded;
+    private byte[] bytes;
+    private int[] offsets;
+    private NumeralColumn column;
+    
+    @Setup
+    public void setUp() {
+        values = Inputs.values(SIZE, 7);
+        decoded = new int[SIZE];
+        bytes = new byte[SIZE * 15];
+        offsets = new int[SIZE + 1];
+        column = "heap".equals(storage) ? NumeralColumn.onHeap(SIZE) : NumeralColumn.offHeap(SIZE);
+        column.append(values, 0, SIZE);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int append() {
+        column.clear();
+        return column.append(values, 0, SIZE);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int[] get() {
+        column.get(0, SIZE, decoded, 0);
+        return decoded;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long sum() {
+        return column.sum();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long sumIntArray() {
+        long sum = 0;
+        for (int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int toRomanBytes() {
+        return column.toRoman(0, SIZE, bytes, 0, offsets, 0);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int toRomanBytesIntArray() {
+        return BulkConverter.toRoman(values, 0, SIZE, bytes, 0, offsets, 0);
+    }
+}
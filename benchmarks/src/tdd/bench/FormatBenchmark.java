@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+package tdd.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import tdd.MalformedNumberException;
+import tdd.NumeralDictionary;
+import tdd.RomanArabicConverter;
+import tdd.ValueOutOfBoundsException;
+
+/**
+ * toRoman(), valueOf() and encode() across the whole range, 1 to 3999, plus the out-of-range case, and
+ * encode() out of a mapped NumeralDictionary. Scores are per numeral.
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark
+{
+    private RomanArabicConverter[] converters;
+    private RomanArabicConverter outOfRange;
+    private final byte[] buffer = new byte[RomanArabicConverter.MAX_ROMAN_LENGTH];
+    private Path file;
+    private NumeralDictionary dictionary;
+    
+    @Setup
+    public void setUp() throws MalformedNumberException, IOException {
+        converters = new RomanArabicConverter[3999];
+        for (int i = 0; i < converters.length; i++) {
+            converters[i] = new RomanArabicConverter(Integer.toString(i + 1));
+        }
+        outOfRange = new RomanArabicConverter("4000");
+        file = Files.createTempFile("numerals", ".dict");
+        NumeralDictionary.write(file);
+        dictionary = NumeralDictionary.map(file);
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(3999)
+    public void toRomanFullRange(Blackhole blackhole) throws ValueOutOfBoundsException {
+        for (RomanArabicConverter converter : converters) {
+            blackhole.consume(converter.toRoman());
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(3999)
+    public int encodeFullRange() {
+        int written = 0;
+        for (int i = 1; i < 4000; i++) {
+            written += RomanArabicConverter.encode(i, buffer, 0);
+        }
+        return written;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(3999)
+    public int dictionaryEncodeFullRange() {
+        int written = 0;
+        for (int i = 1; i < 4000; i++) {
+            written += dictionary.encode(i, buffer, 0);
+        }
+        return written;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(3999)
+    public void valueOfFullRange(Blackhole blackhole) throws ValueOutOfBoundsException {
+        for (int i = 1; i < 4000; i++) {
+            blackhole.consume(RomanArabicConverter.valueOf(i).toRoman());
+        }
+    }
+    
+    @Benchmark
+    public Object toRomanOutOfRange() {
+        try {
+            return outOfRange.toRoman();
+        } catch (ValueOutOfBoundsException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd.bench;
+
+import java.util.Random;
+
+import tdd.MalformedNumberException;
+import tdd.RomanArabicConverter;
+import tdd.ValueOutOfBoundsException;
+
+/**
+ * Builds the inputs the benchmarks run on. Every benchmark cycles through a fixed, seeded set of
+ * inputs so the results are comparable from run to run.
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+final class Inputs
+{
+    /** How many different inputs each benchmark cycles through */
+    static final int COUNT = 1024;
+    
+    /** Malformed inputs, covering each way a number can be rejected */
+    private static final String[] MALFORMED = {"", "   ", "garbage", "1 4", "IIII", "IIV", "VX", "MMMM", "IVgarbageIV", "15IX", "2147483648"};
+    
+    private Inputs() {
+        // Only static methods
+    }
+    
+    /**
+     * @param count how many values
+     * @param seed seed for the values
+     * @return random values between 1 and 3999
+     */
+    static int[] values(int count, long seed) {
+        final Random random = new Random(seed);
+        final int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = 1 + random.nextInt(3999);
+        }
+        return values;
+    }
+    
+    /**
+     * @param kind one of arabic, roman, lowerRoman, unicodeRoman, paddedArabic, paddedRoman or malformed
+     * @param count how many inputs
+     * @return the inputs
+     */
+    static String[] numbers(String kind, int count) {
+        final int[] values = values(count, 42);
+        final String[] numbers = new String[count];
+        for (int i = 0; i < count; i++) {
+            switch (kind) {
+                case "arabic":
+                    numbers[i] = Integer.toString(values[i]);
+                    break;
+                case "roman":
+                    numbers[i] = roman(values[i]);
+                    break;
+                case "lowerRoman":
+                    numbers[i] = roman(values[i]).toLowerCase();
+                    break;
+                case "unicodeRoman":
+                    numbers[i] = unicode(roman(values[i]));
+                    break;
+                case "paddedArabic":
+                    numbers[i] = "   " + values[i] + "  ";
+                    break;
+                case "paddedRoman":
+                    numbers[i] = "   " + roman(values[i]) + "  ";
+                    break;
+                case "malformed":
+                    numbers[i] = MALFORMED[i % MALFORMED.length];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown kind of input " + kind);
+            }
+        }
+        return numbers;
+    }
+    
+    /**
+     * @param value a value between 1 and 3999
+     * @return its Roman numeral
+     */
+    static String roman(int value) {
+        try {
+            return new RomanArabicConverter(Integer.toString(value)).toRoman();
+        } catch (MalformedNumberException | ValueOutOfBoundsException e) {
+            throw new AssertionError(e);
+        }
+    }
+    
+    /**
+     * @param roman a Roman numeral
+     * @return the same numeral in the Unicode Roman numeral letters, U+2160 and up
+     */
+    static String unicode(String roman) {
+        final char[] chars = roman.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = "\u2160\u2164\u2169\u216C\u216D\u216E\u216F".charAt("IVXLCDM".indexOf(chars[i]));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import tdd.ConversionServer;
+import tdd.RomanArabicConverter;
+
+/**
+ * <p>
+ * Drives a {@link ConversionServer} over its line protocol and reports throughput and latency.
+ * Each connection keeps up to <code>depth</code> lines of <code>batch</code> numbers in flight,
+ * writing as many lines at once as it has room for, which is how a pipelining client behaves.
+ * Latency is measured per line, from the write that sent it to the read that brought its answer
+ * back, and kept in 1 microsecond buckets up to 100 ms.
+ * </p>
+ * <p>
+ * Usage: <code>java -cp benchmarks/target/benchmarks.jar tdd.bench.LoadGenerator [connections]
+ * [seconds] [depth] [batch] [host:port]</code>. Without an address it starts a server of its own
+ * on loopback. The first fifth of the run is warm-up and isn't counted.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class LoadGenerator
+{
+    /** Latency buckets, one per microsecond, with the last one holding everything slower */
+    private static final int BUCKETS = 100_001;
+    
+    private LoadGenerator() {
+        // Only static methods
+    }
+    
+    /**
+     * One connection: a thread that writes and a thread that reads.
+     */
+    private static final class Connection
+    {
+        final Socket socket;
+        final byte[][] lines;
+        final int batch;
+        final Semaphore window;
+        final AtomicLongArray sent;
+        final long[] latencies = new long[BUCKETS];
+        final long measureFrom;
+        final long measureTo;
+        long answered;
+        long errors;
+        volatile boolean stopped;
+        
+        Connection(InetSocketAddress address, byte[][] lines, int batch, int depth, long measureFrom, long measureTo) throws IOException {
+            socket = new Socket(address.getAddress(), address.getPort());
+            socket.setTcpNoDelay(true);
+            this.lines = lines;
+            this.batch = batch;
+            window = new Semaphore(depth);
+            sent = new AtomicLongArray(depth);
+            this.measureFrom = measureFrom;
+            this.measureTo = measureTo;
+        }
+        
+        void send() {
+            final byte[] chunk = new byte[lines[0].length * sent.length()];
+            try {
+                final OutputStream out = socket.getOutputStream();
+                long sequence = 0;
+                while (!stopped) {
+                    window.acquire();
+                    final int count = 1 + window.drainPermits();
+                    int length = 0;
+                    final long now = System.nanoTime();
+                    for (int i = 0; i < count; i++, sequence++) {
+                        final byte[] line = lines[(int) (sequence % lines.length)];
+                        System.arraycopy(line, 0, chunk, length, line.length);
+                        length += line.length;
+                        sent.set((int) (sequence % sent.length()), now);
+                    }
+                    out.write(chunk, 0, length);
+                }
+            } catch (IOException | InterruptedException e) {
+                // Stopped
+            }
+        }
+        
+        void receive() {
+            final byte[] buffer = new byte[1 << 16];
+            try {
+                final InputStream in = socket.getInputStream();
+                long sequence = 0;
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    final long now = System.nanoTime();
+                    for (int i = 0; i < read; i++) {
+                        if (buffer[i] == '!') errors++;
+                        if (buffer[i] != '\n') continue;
+                        final long start = sent.get((int) (sequence++ % sent.length()));
+                        window.release();
+                        if (start < measureFrom || start >= measureTo) continue;
+                        answered++;
+                        latencies[(int) Math.min(BUCKETS - 1, (now - start) / 1000)]++;
+                    }
+                    if (now >= measureTo) break;
+                }
+            } catch (IOException e) {
+                // Closed
+            }
+            stopped = true;
+        }
+    }
+    
+    /**
+     * @param batch numbers per line
+     * @return request lines alternating between Roman numerals and Arabic numbers
+     */
+    private static byte[][] lines(int batch) {
+        final int[] values = Inputs.values(Inputs.COUNT * batch, 42);
+        final byte[][] lines = new byte[Inputs.COUNT][];
+        final int width = (RomanArabicConverter.MAX_ROMAN_LENGTH + 1) * batch;
+        for (int i = 0; i < lines.length; i++) {
+            final StringBuilder line = new StringBuilder(width);
+            for (int j = 0; j < batch; j++) {
+                final int value = values[i * batch + j];
+                if (j > 0) line.append(' ');
+                line.append((i + j) % 2 == 0 ? Inputs.roman(value) : Integer.toString(value));
+            }
+            // Pad so every line is the same length, which keeps the send buffer simple
+            while (line.length() < width - 1) line.append(' ');
+            lines[i] = line.append('\n').toString().getBytes(StandardCharsets.US_ASCII);
+        }
+        return lines;
+    }
+    
+    /**
+     * @param latencies counts per microsecond
+     * @param total how many were counted
+     * @param fraction which percentile, as a fraction
+     * @return the latency at that percentile, in microseconds
+     */
+    private static int percentile(long[] latencies, long total, double fraction) {
+        final long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < latencies.length; i++) {
+            seen += latencies[i];
+            if (seen >= rank) return i;
+        }
+        return latencies.length - 1;
+    }
+    
+    /**
+     * Runs the load and prints the results.
+     * @param args connections, seconds, depth, batch and address, all optional
+     * @throws Exception if the server can't be reached
+     */
+    public static void main(String[] args) throws Exception {
+        final int connections = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final int depth = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        final int batch = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        ConversionServer server = null;
+        InetSocketAddress address;
+        if (args.length > 4) {
+            final int colon = args[4].lastIndexOf(':');
+            address = new InetSocketAddress(args[4].substring(0, colon), Integer.parseInt(args[4].substring(colon + 1)));
+        } else {
+            final InetAddress loopback = InetAddress.getLoopbackAddress();
+            server = ConversionServer.start(new InetSocketAddress(loopback, 0), new InetSocketAddress(loopback, 0));
+            address = server.tcpAddress();
+        }
+        
+        final byte[][] lines = lines(batch);
+        final long start = System.nanoTime();
+        final long measureFrom = start + seconds * 200_000_000L;
+        final long measureTo = start + seconds * 1_000_000_000L;
+        final List<Connection> running = new ArrayList<>();
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            final Connection connection = new Connection(address, lines, batch, depth, measureFrom, measureTo);
+            running.add(connection);
+            threads.add(new Thread(connection::send, "load-send-" + i));
+            threads.add(new Thread(connection::receive, "load-receive-" + i));
+        }
+        for (Thread thread : threads) {
+            // A sender may be waiting for room in its window when the run ends
+            thread.setDaemon(true);
+            thread.start();
+        }
+        for (int i = 1; i < threads.size(); i += 2) {
+            threads.get(i).join();
+        }
+        
+        final long[] latencies = new long[BUCKETS];
+        long answered = 0;
+        long errors = 0;
+        for (Connection connection : running) {
+            connection.socket.close();
+            answered += connection.answered;
+            errors += connection.errors;
+            for (int i = 0; i < BUCKETS; i++) {
+                latencies[i] += connection.latencies[i];
+            }
+        }
+        if (server != null) server.close();
+        
+        final double measured = (measureTo - measureFrom) / 1e9;
+        System.out.printf("%d connections, depth %d, %d numbers per line, %.1f s measured%n", connections, depth, batch, measured);
+        System.out.printf("%.0f lines/s, %.0f conversions/s, %d errors%n", answered / measured, answered * batch / measured, errors);
+        System.out.printf("Latency per line (us): p50 %d, p99 %d, p99.9 %d, max %s%n", percentile(latencies, answered, 0.5),
+                percentile(latencies, answered, 0.99), percentile(latencies, answered, 0.999),
+                latencies[BUCKETS - 1] > 0 ? ">100000" : Integer.toString(percentile(latencies, answered, 1.0)));
+    }
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+package tdd.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tdd.LazyRomanArabicConverter;
+import tdd.MalformedNumberException;
+import tdd.NumeralDictionary;
+import tdd.ParseCache;
+import tdd.PerfectHashDecoder;
+import tdd.RomanArabicConverter;
+
+/**
+ * Parsing one number at a time, through the constructors and through the static entry points, for
+ * each kind of input.
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark
+{
+    @Param({"arabic", "roman", "lowerRoman", "unicodeRoman", "paddedArabic", "paddedRoman", "malformed"})
+    public String kind;
+    
+    private String[] numbers;
+    private int next;
+    /** Big enough to hold every input, so it only ever misses while warming up */
+    private final ParseCache cache = new ParseCache(4 * Inputs.COUNT);
+    private Path file;
+    private NumeralDictionary dictionary;
+    
+    @Setup
+    public void setUp() throws IOException {
+        numbers = Inputs.numbers(kind, Inputs.COUNT);
+        file = Files.createTempFile("numerals", ".dict");
+        NumeralDictionary.write(file);
+        dictionary = NumeralDictionary.map(file);
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+    
+    private String nextNumber() {
+        final String number = numbers[next];
+        next = (next + 1) & (Inputs.COUNT - 1);
+        return number;
+    }
+    
+    @Benchmark
+    public int constructor() {
+        try {
+            return new RomanArabicConverter(nextNumber()).toArabic();
+        } catch (MalformedNumberException e) {
+            return -1;
+        }
+    }
+    
+    @Benchmark
+    public Object lazyConstructorUnread() {
+        return new LazyRomanArabicConverter(nextNumber());
+    }
+    
+    @Benchmark
+    public int lazyConstructor() {
+        try {
+            return new LazyRomanArabicConverter(nextNumber()).toArabic();
+        } catch (MalformedNumberException e) {
+            return -1;
+        }
+    }
+    
+    @Benchmark
+    public int parse() {
+        final String number = nextNumber();
+        try {
+            return RomanArabicConverter.parse(number, 0, number.length());
+        } catch (MalformedNumberException e) {
+            return -1;
+        }
+    }
+    
+    @Benchmark
+    public long tryParse() {
+        final String number = nextNumber();
+        return RomanArabicConverter.tryParse(number, 0, number.length());
+    }
+    
+    @Benchmark
+    public long cachedTryParse() {
+        final String number = nextNumber();
+        return cache.tryParse(number, 0, number.length());
+    }
+    
+    @Benchmark
+    public long perfectHashTryParse() {
+        final String number = nextNumber();
+        return PerfectHashDecoder.tryParse(number, 0, number.length());
+    }
+    
+    @Benchmark
+    public long dictionaryTryParse() {
+        final String number = nextNumber();
+        return dictionary.tryParse(number, 0, number.length());
+    }
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd.bench;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tdd.BulkConverter;
+import tdd.FileConverter;
+import tdd.MalformedNumberException;
+import tdd.NumeralDecoder;
+import tdd.ValueOutOfBoundsException;
+
+/**
+ * Reading a large file of numbers, one per line, with line ends found a byte at a time (the
+ * scalar forks, with -Dtdd.vector=false) and a vector at a time (the vector forks, with the
+ * incubator module). The text is padded Roman numerals and Arabic numbers, with one line in 20
+ * holding a stray character. The buffer benchmarks go through BulkConverter, which rejects those
+ * lines without parsing them; the file benchmarks go through FileConverter, so every line there
+ * is valid. The decoder benchmark feeds the same text to a NumeralDecoder in chunks the size of a
+ * TCP segment, so about one line in 90 is split. Scores are per line.
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ScanBenchmark
+{
+    /** Number of lines, about 16 MB of text */
+    static final int LINES = 1 << 20;
+    
+    private static final String VECTOR = "--add-modules=jdk.incubator.vector";
+    private static final String SCALAR = "-Dtdd.vector=false";
+    
+    private ByteBuffer text;
+    private final int[] values = new int[1 << 14];
+    private final NumeralDecoder decoder = new NumeralDecoder();
+    private long sum;
+    private final byte[] status = new byte[values.length];
+    private Path in;
+    private Path out;
+    
+    @Setup
+    public void setUp() throws IOException {
+        final int[] numbers = Inputs.values(LINES, 15);
+        final Random random = new Random(15);
+        final StringBuilder mixed = new StringBuilder();
+        final StringBuilder valid = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            final String number = i % 2 == 0 ? Inputs.roman(numbers[i]) : Integer.toString(numbers[i]);
+            final String line = "    " + number + "   \n";
+            valid.append(line);
+            mixed.append(random.nextInt(20) == 0 ? "    " + number + "?  \n" : line);
+        }
+        text = ByteBuffer.wrap(mixed.toString().getBytes(StandardCharsets.US_ASCII));
+        
+        in = Files.createTempFile("numerals", ".txt");
+        out = Files.createTempFile("numerals", ".out");
+        try (FileChannel channel = FileChannel.open(in, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(valid.toString().getBytes(StandardCharsets.US_ASCII)));
+        }
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(in);
+        Files.deleteIfExists(out);
+    }
+    
+    private int readAll() {
+        text.clear();
+        int read = 0;
+        while (text.hasRemaining()) {
+            read += BulkConverter.toArabic(text, values, 0, status, 0);
+        }
+        return read;
+    }
+    
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = SCALAR)
+    @OperationsPerInvocation(LINES)
+    public int bufferToArabicScalar() {
+        return readAll();
+    }
+    
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = VECTOR)
+    @OperationsPerInvocation(LINES)
+    public int bufferToArabicVector() {
+        return readAll();
+    }
+    
+    @Benchmark
+    @Fork(1)
+    @OperationsPerInvocation(LINES)
+    public long decoderChunks() {
+        sum = 0;
+        decoder.reset();
+        final int limit = text.capacity();
+        for (int from = 0; from < limit; from += 1460) {
+            text.limit(Math.min(from + 1460, limit)).position(from);
+            decoder.feed(text, result -> sum += result);
+        }
+        return sum;
+    }
+    
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = SCALAR)
+    @OperationsPerInvocation(LINES)
+    public FileConverter.Stats fileToRomanScalar() throws IOException, MalformedNumberException, ValueOutOfBoundsException {
+        return FileConverter.toRoman(in, out);
+    }
+    
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = VECTOR)
+    @OperationsPerInvocation(LINES)
+    public FileConverter.Stats fileToRomanVector() throws IOException, MalformedNumberException, ValueOutOfBoundsException {
+        return FileConverter.toRoman(in, out);
+    }
+}
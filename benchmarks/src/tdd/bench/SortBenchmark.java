@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd.bench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tdd.NumeralSorter;
+
+/**
+ * Sorting SIZE Roman numerals by value, with a comparison sort that parses on every comparison and
+ * with the radix sorts. Every benchmark sorts a fresh copy, and scores are per numeral.
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortBenchmark
+{
+    /** Number of numerals sorted */
+    static final int SIZE = 1 << 18;
+    
+    private String[] numerals;
+    
+    @Setup
+    public void setUp() {
+        final int[] values = Inputs.values(SIZE, 11);
+        numerals = new String[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            numerals[i] = Inputs.roman(values[i]);
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public String[] comparisonSort() {
+        final String[] copy = numerals.clone();
+        Arrays.sort(copy, NumeralSorter.BY_VALUE);
+        return copy;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public String[] radixSort() {
+        final String[] copy = numerals.clone();
+        NumeralSorter.sort(copy);
+        return copy;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public String[] parallelRadixSort() {
+        final String[] copy = numerals.clone();
+        NumeralSorter.parallelSort(copy);
+        return copy;
+    }
+}
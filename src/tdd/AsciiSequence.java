@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reusable view of the bytes in a buffer as characters, one byte per character. This lets
+ * {@link RomanArabicConverter#tryParse(CharSequence, int, int)} run on bytes in place, without
+ * decoding them into a String first. Indexes are absolute positions in the buffer, up to its limit.
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+final class AsciiSequence implements CharSequence
+{
+    /** The bytes being looked at */
+    private ByteBuffer bytes;
+    
+    /**
+     * @param bytes the bytes to look at
+     * @return this, now looking at bytes
+     */
+    AsciiSequence wrap(ByteBuffer bytes) {
+        this.bytes = bytes;
+        return this;
+    }
+    
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+    
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes.get(index) & 0xFF);
+    }
+    
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        final byte[] copy = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            copy[i - start] = bytes.get(i);
+        }
+        return new String(copy, StandardCharsets.ISO_8859_1);
+    }
+    
+    @Override
+    public String toString() {
+        return subSequence(0, length()).toString();
+    }
+}
@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * Converts whole arrays of numbers at once. These follow the same rules as
+ * {@link RomanArabicConverter}, but work on slices of caller-supplied arrays and never create a
+ * converter or an exception per element. Roman numerals come straight out of the converter's table,
+ * and numbers are read with {@link RomanArabicConverter#tryParse(CharSequence, int, int)}.
+ * </p>
+ * <p>
+ * Instead of throwing, problems with single elements are reported in a status array using
+ * {@link #OK}, {@link #MALFORMED} and {@link #OUT_OF_RANGE}.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class BulkConverter
+{
+    /** The element converted fine */
+    public static final byte OK = 0;
+    /** The element was not a valid Roman or Arabic number */
+    public static final byte MALFORMED = 1;
+    /** The element was a valid number, but not between 1 and 3999 */
+    public static final byte OUT_OF_RANGE = 2;
+    
+    /** How many line ends to find at a time when reading text */
+    static final int SCAN_CHUNK = 1024;
+    
+    private BulkConverter() {
+        // Only static methods
+    }
+    
+    /**
+     * Converts values[from..to) into Roman numerals, stored starting at dst[dstOffset]. Values that
+     * are out of range are stored as null.
+     * 
+     * @param values the values to convert
+     * @param from index of the first value
+     * @param to index after the last value
+     * @param dst where to put the numerals
+     * @param dstOffset where to put the first numeral
+     * @return the number of values that were out of range
+     */
+    public static int toRoman(int[] values, int from, int to, String[] dst, int dstOffset) {
+        checkRange(values.length, from, to);
+        checkRange(dst.length, dstOffset, dstOffset + (to - from));
+        int outOfRange = 0;
+        for (int i = from, j = dstOffset; i < to; i++, j++) {
+            final String roman = RomanArabicConverter.roman(values[i]);
+            if (roman == null) outOfRange++;
+            dst[j] = roman;
+        }
+        return outOfRange;
+    }
+    
+    /**
+     * Converts values[from..to) into Roman numerals packed as ASCII bytes one after another, starting
+     * at dst[dstOffset]. The numeral for values[from + k] is dst[offsets[offsetsOffset + k]] up to
+     * dst[offsets[offsetsOffset + k + 1]], so offsets needs room for one more entry than there are
+     * values. A numeral is never longer than {@link RomanArabicConverter#MAX_ROMAN_LENGTH} bytes, so
+     * dst needs at most that much per value. Values
+     * that are out of range come out as empty numerals.
+     * 
+     * @param values the values to convert
+     * @param from index of the first value
+     * @param to index after the last value
+     * @param dst where to put the bytes
+     * @param dstOffset where to put the first byte
+     * @param offsets where to put the start of each numeral, and the end of the last one
+     * @param offsetsOffset where to put the first start
+     * @return the number of bytes written
+     * @throws IndexOutOfBoundsException if the values, the numerals or the offsets don't fit, in
+     *         which case nothing is written
+     */
+    public static int toRoman(int[] values, int from, int to, byte[] dst, int dstOffset, int[] offsets, int offsetsOffset) {
+        checkRange(values.length, from, to);
+        checkRange(offsets.length, offsetsOffset, offsetsOffset + (to - from) + 1);
+        // Add up the exact length first, in a long so it can't wrap
+        long end = dstOffset;
+        for (int i = from; i < to; i++) {
+            end += RomanArabicConverter.length(values[i]);
+        }
+        checkRange(dst.length, dstOffset, end);
+        int pos = dstOffset;
+        int k = offsetsOffset;
+        for (int i = from; i < to; i++) {
+            offsets[k++] = pos;
+            final int length = RomanArabicConverter.encode(values[i], dst, pos);
+            if (length > 0) pos += length;
+        }
+        offsets[k] = pos;
+        return pos - dstOffset;
+    }
+    
+    /**
+     * Reads numbers[from..to), which can be Roman or Arabic with the same rules as the
+     * RomanArabicConverter constructor, into dst starting at dstOffset. The status of each one is
+     * stored starting at status[statusOffset]. Malformed numbers are stored as 0. Numbers that are
+     * out of range are still stored, since they are valid Arabic numbers.
+     * 
+     * @param numbers the numbers to read
+     * @param from index of the first number
+     * @param to index after the last number
+     * @param dst where to put the values
+     * @param dstOffset where to put the first value
+     * @param status where to put the status of each number
+     * @param statusOffset where to put the first status
+     * @return the number of numbers that weren't {@link #OK}
+     */
+    public static int toArabic(CharSequence[] numbers, int from, int to, int[] dst, int dstOffset, byte[] status, int statusOffset) {
+        return toArabic(numbers, from, to, dst, dstOffset, status, statusOffset, NumeralParser.STANDARD);
+    }
+    
+    /**
+     * Same as {@link #toArabic(CharSequence[], int, int, int[], int, byte[], int)}, but reads the
+     * numbers with the given parser.
+     * 
+     * @param numbers the numbers to read
+     * @param from index of the first number
+     * @param to index after the last number
+     * @param dst where to put the values
+     * @param dstOffset where to put the first value
+     * @param status where to put the status of each number
+     * @param statusOffset where to put the first status
+     * @param parser how to read each number
+     * @return the number of numbers that weren't {@link #OK}
+     */
+    public static int toArabic(CharSequence[] numbers, int from, int to, int[] dst, int dstOffset, byte[] status, int statusOffset, NumeralParser parser) {
+        checkRange(numbers.length, from, to);
+        checkRange(dst.length, dstOffset, dstOffset + (to - from));
+        checkRange(status.length, statusOffset, statusOffset + (to - from));
+        int failed = 0;
+        for (int i = from, j = dstOffset, k = statusOffset; i < to; i++, j++, k++) {
+            final CharSequence number = numbers[i];
+            failed += store(parser.tryParse(number, 0, number.length()), dst, j, status, k);
+        }
+        return failed;
+    }
+    
+    /**
+     * Reads the numbers in a buffer of ASCII text, one per line, from its position up to its limit,
+     * stopping when dst or status is full. Only complete lines, ending in '\n', are read, and the
+     * position is moved past the last one, so whatever is left is the start of a line still to come.
+     * <p>
+     * Lines are found, and lines holding a byte that can't be part of any number are marked
+     * {@link #MALFORMED}, a whole block at a time with the Vector API when the JVM has
+     * <code>--add-modules jdk.incubator.vector</code>. Only the lines left over are parsed.
+     * </p>
+     * 
+     * @param lines the text, one number per line
+     * @param dst where to put the values
+     * @param dstOffset where to put the first value
+     * @param status where to put the status of each number
+     * @param statusOffset where to put the first status
+     * @return the number of lines read
+     */
+    public static int toArabic(ByteBuffer lines, int[] dst, int dstOffset, byte[] status, int statusOffset) {
+        checkRange(dst.length, dstOffset, dstOffset);
+        checkRange(status.length, statusOffset, statusOffset);
+        final int room = Math.min(dst.length - dstOffset, status.length - statusOffset);
+        final int[] ends = new int[Math.min(room, SCAN_CHUNK)];
+        final AsciiSequence chars = new AsciiSequence().wrap(lines);
+        int start = lines.position();
+        int read = 0;
+        int found;
+        while ((found = RecordScanner.INSTANCE.scan(lines, start, lines.limit(), ends, Math.min(ends.length, room - read))) > 0) {
+            for (int e = 0; e < found; e++, read++) {
+                final int end = ends[e];
+                if (end < 0) {
+                    store(NumeralError.UNEXPECTED_CHARACTER.at(start), dst, dstOffset + read, status, statusOffset + read);
+                    start = ~end + 1;
+                } else {
+                    store(RomanArabicConverter.tryParse(chars, start, end), dst, dstOffset + read, status, statusOffset + read);
+                    start = end + 1;
+                }
+            }
+        }
+        lines.position(start);
+        return read;
+    }
+    
+    /**
+     * Stores one parsed number.
+     * @param result what tryParse returned
+     * @param dst where to put the value
+     * @param j where in dst
+     * @param status where to put the status
+     * @param k where in status
+     * @return 1 if the number wasn't {@link #OK}, 0 if it was
+     */
+    private static int store(long result, int[] dst, int j, byte[] status, int k) {
+        if (!RomanArabicConverter.isValid(result)) {
+            dst[j] = 0;
+            status[k] = MALFORMED;
+            return 1;
+        }
+        dst[j] = (int) result;
+        if (result >= 4000 || result <= 0) {
+            status[k] = OUT_OF_RANGE;
+            return 1;
+        }
+        status[k] = OK;
+        return 0;
+    }
+    
+    /**
+     * Makes sure [from, to) fits in an array, so the loops don't fail halfway through.
+     * @param length length of the array
+     * @param from start of the range
+     * @param to end of the range
+     */
+    static void checkRange(int length, int from, int to) {
+        if (from < 0 || from > to || to > length) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + length);
+        }
+    }
+    
+    /**
+     * Same as {@link #checkRange(int, int, int)}, for an end that was added up and may not fit in an int.
+     * @param length length of the array
+     * @param from start of the range
+     * @param to end of the range
+     */
+    static void checkRange(int length, int from, long to) {
+        if (from < 0 || from > to || to > length) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + length);
+        }
+    }
+}
@@ -0,0 +1,507 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>
+ * Rewrites chosen columns of a delimited file (CSV, TSV...) from Roman numerals to Arabic numbers
+ * or the other way around, and copies every other byte through untouched. Fields follow the same
+ * rules as the {@link RomanArabicConverter} constructor, and only the number itself is replaced,
+ * so padding around it and a '\r' before the newline stay where they were.
+ * </p>
+ * <p>
+ * Records end with '\n'. A field that starts with '"' is quoted, as in RFC 4180: delimiters and
+ * newlines inside it are part of it, "" stands for a quote, and a numeral in it is converted with
+ * the quotes kept around it. Columns are counted from 0.
+ * </p>
+ * <p>
+ * Input is read through one fixed-size buffer and output goes through another about the same size,
+ * so memory stays the same however big the input is. Bytes outside the converted fields are never
+ * decoded, only copied in bulk, and a field only has to fit in the buffer if it's one to convert;
+ * one that doesn't is treated like a malformed one. A field that can't be converted is left as it
+ * is, counted or not, unless the policy is {@link MalformedPolicy#FAIL}.
+ * </p>
+ * <p>
+ * Transformers are immutable, and any number of transformations can run with one at the same time.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class ColumnTransformer
+{
+    /** Size of the input buffer unless {@link #withBufferSize(int)} says otherwise */
+    public static final int DEFAULT_BUFFER_SIZE = 64 << 10;
+    /** Smallest buffer that can be asked for */
+    static final int MIN_BUFFER_SIZE = 16;
+    
+    private final byte delimiter;
+    /** Indexed by column, true for the ones to convert */
+    private final boolean[] targets;
+    private final boolean toRoman;
+    private final MalformedPolicy policy;
+    private final boolean header;
+    private final int bufferSize;
+    
+    /**
+     * @param delimiter what separates fields
+     * @param targets which columns to convert
+     * @param toRoman true to write Roman numerals, false to write Arabic numbers
+     * @param policy what to do with fields that can't be converted
+     * @param header whether the first record is copied through as it is
+     * @param bufferSize size of the input buffer
+     */
+    private ColumnTransformer(byte delimiter, boolean[] targets, boolean toRoman, MalformedPolicy policy, boolean header, int bufferSize) {
+        this.delimiter = delimiter;
+        this.targets = targets;
+        this.toRoman = toRoman;
+        this.policy = policy;
+        this.header = header;
+        this.bufferSize = bufferSize;
+    }
+    
+    /**
+     * @param delimiter what separates fields, such as ',' or '\t'
+     * @param policy what to do with fields that aren't valid numbers or can't be Roman numerals
+     * @param columns the columns to convert
+     * @return a transformer that writes Roman numerals into the columns
+     * @throws IllegalArgumentException if the delimiter isn't ASCII or is '"', '\r' or '\n', or a column is negative or there are none
+     */
+    public static ColumnTransformer toRoman(char delimiter, MalformedPolicy policy, int... columns) {
+        return create(delimiter, true, policy, columns);
+    }
+    
+    /**
+     * @param delimiter what separates fields, such as ',' or '\t'
+     * @param policy what to do with fields that aren't valid numbers
+     * @param columns the columns to convert
+     * @return a transformer that writes Arabic numbers into the columns
+     * @throws IllegalArgumentException if the delimiter isn't ASCII or is '"', '\r' or '\n', or a column is negative or there are none
+     */
+    public static ColumnTransformer toArabic(char delimiter, MalformedPolicy policy, int... columns) {
+        return create(delimiter, false, policy, columns);
+    }
+    
+    /**
+     * Checks the arguments to the factories.
+     * @param delimiter what separates fields
+     * @param toRoman true to write Roman numerals, false to write Arabic numbers
+     * @param policy what to do with fields that can't be converted
+     * @param columns the columns to convert
+     * @return the transformer
+     */
+    private static ColumnTransformer create(char delimiter, boolean toRoman, MalformedPolicy policy, int[] columns) {
+        if (policy == null) throw new NullPointerException("policy");
+        if (delimiter >= 0x80 || delimiter == '"' || delimiter == '\r' || delimiter == '\n') {
+            throw new IllegalArgumentException("Unusable delimiter: " + (int) delimiter);
+        }
+        if (columns.length == 0) throw new IllegalArgumentException("No columns to convert");
+        int last = 0;
+        for (int column : columns) {
+            if (column < 0) throw new IllegalArgumentException("Negative column: " + column);
+            last = Math.max(last, column);
+        }
+        final boolean[] targets = new boolean[last + 1];
+        for (int column : columns) {
+            targets[column] = true;
+        }
+        return new ColumnTransformer((byte) delimiter, targets, toRoman, policy, false, DEFAULT_BUFFER_SIZE);
+    }
+    
+    /**
+     * @return a transformer like this one that copies the first record, the header, through as it is
+     */
+    public ColumnTransformer withHeader() {
+        return new ColumnTransformer(delimiter, targets, toRoman, policy, true, bufferSize);
+    }
+    
+    /**
+     * @param bufferSize size of the input buffer, which is also the longest field that can be converted
+     * @return a transformer like this one with a different buffer size
+     * @throws IllegalArgumentException if the size is below 16 bytes
+     */
+    public ColumnTransformer withBufferSize(int bufferSize) {
+        if (bufferSize < MIN_BUFFER_SIZE) throw new IllegalArgumentException("Buffer too small: " + bufferSize);
+        return new ColumnTransformer(delimiter, targets, toRoman, policy, header, bufferSize);
+    }
+    
+    /**
+     * Transforms one file into another.
+     * @param in the file to read
+     * @param out the file to write, replaced if it exists
+     * @return how much was transformed and how fast
+     * @throws IOException if either file can't be used
+     * @throws MalformedNumberException if a field to convert isn't a valid number and the policy is FAIL
+     * @throws ValueOutOfBoundsException if a field's value can't be a Roman numeral and the policy is FAIL
+     */
+    public Stats transform(Path in, Path out) throws IOException, MalformedNumberException, ValueOutOfBoundsException {
+        try (FileChannel reader = FileChannel.open(in, StandardOpenOption.READ);
+                FileChannel writer = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            return transform(reader, writer);
+        }
+    }
+    
+    /**
+     * Transforms everything in until its end into out. Neither channel is closed.
+     * @param in where to read records from
+     * @param out where to write them
+     * @return how much was transformed and how fast
+     * @throws IOException if either channel fails
+     * @throws MalformedNumberException if a field to convert isn't a valid number and the policy is FAIL
+     * @throws ValueOutOfBoundsException if a field's value can't be a Roman numeral and the policy is FAIL
+     */
+    public Stats transform(ReadableByteChannel in, WritableByteChannel out) throws IOException, MalformedNumberException, ValueOutOfBoundsException {
+        return new Run(in, out).call();
+    }
+    
+    /**
+     * @param column a column
+     * @return true if it's one to convert
+     */
+    private boolean isTarget(int column) {
+        return column < targets.length && targets[column];
+    }
+    
+    /**
+     * One transformation: the buffers and where it is in the input.
+     */
+    private final class Run
+    {
+        private final ReadableByteChannel in;
+        private final WritableByteChannel out;
+        private final byte[] input = new byte[bufferSize];
+        private final ByteBuffer inputBuffer = ByteBuffer.wrap(input);
+        private final AsciiSequence chars = new AsciiSequence().wrap(inputBuffer);
+        /** Room for a whole buffer of input, plus a field that grew when it was converted */
+        private final ByteBuffer output = ByteBuffer.allocate(bufferSize + RomanArabicConverter.MAX_ROMAN_LENGTH);
+        private final long start = System.nanoTime();
+        
+        /** Bytes of input in the buffer */
+        private int filled;
+        private boolean eof;
+        /** The record being read, from 1, and the column in it, from 0 */
+        private long record = 1;
+        private int column;
+        private boolean atFieldStart = true;
+        private boolean inQuotes;
+        /** The field being read is one to convert that's too long to, so it's copied instead */
+        private boolean passThrough;
+        private byte lastByte = '\n';
+        
+        private long bytesRead;
+        private long bytesWritten;
+        private long converted;
+        private long rejected;
+        
+        Run(ReadableByteChannel in, WritableByteChannel out) {
+            this.in = in;
+            this.out = out;
+        }
+        
+        /**
+         * @return the stats, once everything has been transformed
+         */
+        Stats call() throws IOException, MalformedNumberException, ValueOutOfBoundsException {
+            while (!eof) {
+                inputBuffer.limit(input.length).position(filled);
+                while (inputBuffer.hasRemaining()) {
+                    final int read = in.read(inputBuffer);
+                    if (read < 0) {
+                        eof = true;
+                        break;
+                    }
+                    bytesRead += read;
+                    if (read == 0) break;
+                }
+                filled = inputBuffer.position();
+                if (filled > 0) lastByte = input[filled - 1];
+                
+                final int used = process();
+                if (used == 0 && filled == input.length) {
+                    // A field to convert fills the whole buffer
+                    rejectTooLong();
+                    continue;
+                }
+                System.arraycopy(input, used, input, 0, filled - used);
+                filled -= used;
+            }
+            flush();
+            final long records = bytesRead == 0 ? 0 : lastByte == '\n' ? record - 1 : record;
+            return new Stats(records, converted, rejected, bytesRead, bytesWritten, System.nanoTime() - start);
+        }
+        
+        /**
+         * Goes through as much of the buffer as can be, copying bytes through and converting fields.
+         * @return how many bytes at the start of the buffer are done with
+         */
+        private int process() throws IOException, MalformedNumberException, ValueOutOfBoundsException {
+            int i = 0;
+            int pending = 0;
+            while (i < filled) {
+                if (atFieldStart && !passThrough && isTarget(column) && (!header || record > 1)) {
+                    int end = fieldEnd(i);
+                    if (end < 0) {
+                        if (!eof) break;
+                        end = filled;
+                    }
+                    copy(pending, i);
+                    convert(i, end);
+                    i = pending = end;
+                    atFieldStart = false;
+                    continue;
+                }
+                final byte b = input[i];
+                if (inQuotes) {
+                    if (b == '"') {
+                        // "" is a quote inside the field, and the second one could be in the next read
+                        if (i + 1 == filled && !eof) break;
+                        if (i + 1 < filled && input[i + 1] == '"') i++;
+                        else inQuotes = false;
+                    }
+                } else if (b == delimiter) {
+                    column++;
+                    atFieldStart = true;
+                    passThrough = false;
+                    i++;
+                    continue;
+                } else if (b == '\n') {
+                    record++;
+                    column = 0;
+                    atFieldStart = true;
+                    passThrough = false;
+                    i++;
+                    continue;
+                } else if (b == '"' && atFieldStart) {
+                    inQuotes = true;
+                }
+                atFieldStart = false;
+                i++;
+            }
+            copy(pending, i);
+            return i;
+        }
+        
+        /**
+         * @param from where a field starts
+         * @return the index of the delimiter or newline after it, or -1 if that isn't in the buffer yet
+         */
+        private int fieldEnd(int from) {
+            boolean quoted = false;
+            for (int i = from; i < filled; i++) {
+                final byte b = input[i];
+                if (quoted) {
+                    if (b == '"') {
+                        if (i + 1 < filled && input[i + 1] == '"') i++;
+                        else if (i + 1 < filled || eof) quoted = false;
+                        else return -1;
+                    }
+                } else if (b == delimiter || b == '\n') {
+                    return i;
+                } else if (b == '"' && i == from) {
+                    quoted = true;
+                }
+            }
+            return -1;
+        }
+        
+        /**
+         * Converts a field into the output, or copies it if it can't be converted.
+         * @param from index of the first byte of the field
+         * @param to index after the last byte of the field
+         */
+        private void convert(int from, int to) throws IOException, MalformedNumberException, ValueOutOfBoundsException {
+            // The number is between the quotes if there are any, with anything after the closing one kept
+            int numberFrom = from;
+            int numberTo = to;
+            if (from < to && input[from] == '"') {
+                for (int i = from + 1; i < to; i++) {
+                    if (input[i] != '"') continue;
+                    // Leave "" in, so the field is rejected as malformed
+                    if (i + 1 < to && input[i + 1] == '"') {
+                        i++;
+                    } else {
+                        numberFrom = from + 1;
+                        numberTo = i;
+                        break;
+                    }
+                }
+            }
+            while (numberFrom < numberTo && input[numberFrom] <= ' ' && input[numberFrom] >= 0) numberFrom++;
+            while (numberTo > numberFrom && input[numberTo - 1] <= ' ' && input[numberTo - 1] >= 0) numberTo--;
+            
+            final long result = RomanArabicConverter.tryParse(chars, numberFrom, numberTo);
+            if (!RomanArabicConverter.isValid(result)) {
+                reject(from, to, RomanArabicConverter.malformed(chars, result).getMessage(), false);
+                return;
+            }
+            if (output.remaining() < (to - from) + RomanArabicConverter.MAX_ROMAN_LENGTH) flush();
+            final int mark = output.position();
+            output.put(input, from, numberFrom - from);
+            if (toRoman) {
+                if (RomanArabicConverter.encode((int) result, output) < 0) {
+                    output.position(mark);
+                    reject(from, to, NumeralError.OUT_OF_RANGE.message(' '), true);
+                    return;
+                }
+            } else {
+                FileConverter.putArabic((int) result, output);
+            }
+            output.put(input, numberTo, to - numberTo);
+            converted++;
+        }
+        
+        /**
+         * Deals with a field that can't be converted, as the policy says.
+         * @param from index of the first byte of the field
+         * @param to index after the last byte of the field
+         * @param message why it can't be converted
+         * @param outOfRange true if it's a valid number that can't be a Roman numeral
+         */
+        private void reject(int from, int to, String message, boolean outOfRange) throws IOException, MalformedNumberException, ValueOutOfBoundsException {
+            if (policy == MalformedPolicy.FAIL) {
+                final String where = "Record " + record + ", column " + column + ": ";
+                if (outOfRange) throw new ValueOutOfBoundsException(where + message);
+                throw new MalformedNumberException(where + message);
+            }
+            if (policy == MalformedPolicy.COUNT) rejected++;
+            copy(from, to);
+        }
+        
+        /**
+         * Gives up on converting a field that fills the whole buffer, and copies it through instead.
+         */
+        private void rejectTooLong() throws MalformedNumberException {
+            if (policy == MalformedPolicy.FAIL) {
+                throw new MalformedNumberException("Record " + record + ", column " + column + ": longer than " + input.length + " bytes");
+            }
+            if (policy == MalformedPolicy.COUNT) rejected++;
+            passThrough = true;
+        }
+        
+        /**
+         * Copies input[from..to) into the output as it is.
+         * @param from index of the first byte
+         * @param to index after the last byte
+         */
+        private void copy(int from, int to) throws IOException {
+            if (output.remaining() < to - from) flush();
+            output.put(input, from, to - from);
+        }
+        
+        /**
+         * Writes everything in the output buffer and empties it.
+         */
+        private void flush() throws IOException {
+            output.flip();
+            bytesWritten += output.remaining();
+            while (output.hasRemaining()) {
+                out.write(output);
+            }
+            output.clear();
+        }
+    }
+    
+    /**
+     * Transforms a file from the command line and prints how fast it went.
+     * @param args "roman" or "arabic", the delimiter, the columns separated by commas, then the
+     *        file to read and the file to write
+     * @throws Exception if the transformation fails
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 5 || args[1].length() != 1) {
+            System.err.println("Usage: ColumnTransformer roman|arabic <delimiter> <column,...> <in> <out>");
+            System.exit(2);
+        }
+        final String[] names = args[2].split(",");
+        final int[] columns = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            columns[i] = Integer.parseInt(names[i].trim());
+        }
+        final char delimiter = args[1].charAt(0);
+        final ColumnTransformer transformer = "roman".equals(args[0])
+                ? toRoman(delimiter, MalformedPolicy.COUNT, columns) : toArabic(delimiter, MalformedPolicy.COUNT, columns);
+        System.out.println(transformer.transform(Paths.get(args[3]), Paths.get(args[4])));
+    }
+    
+    /**
+     * How much a transformation did and how long it took.
+     */
+    public static final class Stats
+    {
+        private final long records;
+        private final long converted;
+        private final long rejected;
+        private final long bytesRead;
+        private final long bytesWritten;
+        private final long nanos;
+        
+        Stats(long records, long converted, long rejected, long bytesRead, long bytesWritten, long nanos) {
+            this.records = records;
+            this.converted = converted;
+            this.rejected = rejected;
+            this.bytesRead = bytesRead;
+            this.bytesWritten = bytesWritten;
+            this.nanos = nanos;
+        }
+        
+        /** @return the number of records, the header included */
+        public long records() {
+            return records;
+        }
+        
+        /** @return the number of fields converted */
+        public long converted() {
+            return converted;
+        }
+        
+        /** @return the number of fields left as they were because they couldn't be converted, if the policy is COUNT */
+        public long rejected() {
+            return rejected;
+        }
+        
+        /** @return the size of the input */
+        public long bytesRead() {
+            return bytesRead;
+        }
+        
+        /** @return the size of the output */
+        public long bytesWritten() {
+            return bytesWritten;
+        }
+        
+        /** @return how long the transformation took, in nanoseconds */
+        public long nanos() {
+            return nanos;
+        }
+        
+        /** @return input throughput in megabytes (10^6 bytes) per second */
+        public double megabytesPerSecond() {
+            return nanos == 0 ? 0 : bytesRead * 1000.0 / nanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%d records, %d fields converted, %d rejected, %d bytes in, %d bytes out, %.1f ms, %.1f MB/s",
+                    records, converted, rejected, bytesRead, bytesWritten, nanos / 1e6, megabytesPerSecond());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+/**
+ * The outcome of converting one element of a stream with {@link ConversionProcessor}. Bad elements
+ * don't end the stream; they come out as a Conversion with an {@link #error()} instead.
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class Conversion
+{
+    private final CharSequence input;
+    private final int value;
+    private final NumeralError error;
+    private final int offset;
+    
+    /**
+     * @param input what was converted
+     * @param value its value, if it had one
+     * @param error why it failed, or null if it didn't
+     * @param offset index in input of the character that caused the failure
+     */
+    Conversion(CharSequence input, int value, NumeralError error, int offset) {
+        this.input = input;
+        this.value = value;
+        this.error = error;
+        this.offset = offset;
+    }
+    
+    /**
+     * @return the element as it came in
+     */
+    public CharSequence input() {
+        return input;
+    }
+    
+    /**
+     * @return true if the element converted fine
+     */
+    public boolean isOk() {
+        return error == null;
+    }
+    
+    /**
+     * @return the integer value of the element. That's also there for {@link NumeralError#OUT_OF_RANGE},
+     *         but means nothing for any other error.
+     */
+    public int value() {
+        return value;
+    }
+    
+    /**
+     * @return the shared Roman numeral for the value, or null if the element was malformed or out of range
+     */
+    public String roman() {
+        return error == null ? RomanArabicConverter.roman(value) : null;
+    }
+    
+    /**
+     * @return why the element failed, or null if it didn't
+     */
+    public NumeralError error() {
+        return error;
+    }
+    
+    /**
+     * @return the index in {@link #input()} of the character that caused the failure, or -1 if
+     *         there was none
+     */
+    public int errorOffset() {
+        return error == null || error == NumeralError.OUT_OF_RANGE ? -1 : offset;
+    }
+    
+    /**
+     * @return the message the converter would have thrown, or null if the element converted fine
+     */
+    public String message() {
+        if (error == null) return null;
+        final char offending = offset >= 0 && offset < input.length() ? input.charAt(offset) : ' ';
+        return error.message(offending);
+    }
+    
+    @Override
+    public String toString() {
+        return error == null ? input + " -> " + value : input + ": " + message();
+    }
+}
@@ -0,0 +1,319 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * <p>
+ * A {@link Flow.Processor} that converts a stream of numbers, Roman or Arabic, into
+ * {@link Conversion}s. Malformed elements, and values that are out of range when converting to
+ * Roman numerals, come out as conversions with an error instead of ending the stream, and no
+ * exception is created for them.
+ * </p>
+ * <p>
+ * Elements are requested from upstream only as far as subscribers have asked for results: never
+ * more than the smallest demand any subscriber still has outstanding, and nothing at all while
+ * there are no subscribers, so nothing is published before anyone can receive it. They're
+ * requested a batch at a time, and converted together with {@link BulkConverter} once everything
+ * requested has arrived or the stream ends. More is only requested once the last batch has been
+ * published. Since a partial batch waits for the rest of it, use a batch size of 1 for a source
+ * that trickles in and needs every element as soon as it arrives.
+ * </p>
+ * <p>
+ * Like any processor it subscribes to one publisher. Closing it cancels the upstream
+ * subscription at the next element.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class ConversionProcessor extends SubmissionPublisher<Conversion> implements Flow.Processor<CharSequence, Conversion>
+{
+    /** How many elements are requested and converted at once unless told otherwise */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    
+    private final boolean toRoman;
+    private final CharSequence[] batch;
+    private final int[] values;
+    private final byte[] status;
+    private int size;
+    private Flow.Subscription subscription;
+    
+    /** Guards the counts and the subscribers, which downstream requests change from other threads */
+    private final Object lock = new Object();
+    /** Subscribers that haven't cancelled or been completed */
+    private final List<Downstream> downstream = new ArrayList<>();
+    /** Elements requested from upstream, received from it, and results published, since the start */
+    private long requested;
+    private long received;
+    private long published;
+    
+    /**
+     * @param toRoman true if out-of-range values are errors
+     * @param executor runs delivery to subscribers
+     * @param maxBufferCapacity how many results each subscriber may have waiting
+     * @param batchSize how many elements are requested and converted at once
+     */
+    private ConversionProcessor(boolean toRoman, Executor executor, int maxBufferCapacity, int batchSize) {
+        super(executor, maxBufferCapacity);
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        this.toRoman = toRoman;
+        batch = new CharSequence[batchSize];
+        values = new int[batchSize];
+        status = new byte[batchSize];
+    }
+    
+    /**
+     * @return a processor that converts numbers to their integer values, delivering on the common
+     *         pool with the default buffer and batch sizes
+     */
+    public static ConversionProcessor toArabic() {
+        return toArabic(ForkJoinPool.commonPool(), Flow.defaultBufferSize(), DEFAULT_BATCH_SIZE);
+    }
+    
+    /**
+     * Creates a processor that converts numbers to their integer values. Any value an int can hold
+     * is fine.
+     * @param executor runs delivery to subscribers
+     * @param maxBufferCapacity how many results each subscriber may have waiting
+     * @param batchSize how many elements are requested and converted at once
+     * @return the processor
+     */
+    public static ConversionProcessor toArabic(Executor executor, int maxBufferCapacity, int batchSize) {
+        return new ConversionProcessor(false, executor, maxBufferCapacity, batchSize);
+    }
+    
+    /**
+     * @return a processor that converts numbers to Roman numerals, delivering on the common pool
+     *         with the default buffer and batch sizes
+     */
+    public static ConversionProcessor toRoman() {
+        return toRoman(ForkJoinPool.commonPool(), Flow.defaultBufferSize(), DEFAULT_BATCH_SIZE);
+    }
+    
+    /**
+     * Creates a processor that converts numbers to Roman numerals. Values outside 1..3999 come out
+     * with {@link NumeralError#OUT_OF_RANGE}.
+     * @param executor runs delivery to subscribers
+     * @param maxBufferCapacity how many results each subscriber may have waiting
+     * @param batchSize how many elements are requested and converted at once
+     * @return the processor
+     */
+    public static ConversionProcessor toRoman(Executor executor, int maxBufferCapacity, int batchSize) {
+        return new ConversionProcessor(true, executor, maxBufferCapacity, batchSize);
+    }
+    
+    /**
+     * Subscribes to the results. What the subscriber requests is what lets elements be requested
+     * from upstream.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super Conversion> subscriber) {
+        final Downstream wrapper = new Downstream(Objects.requireNonNull(subscriber));
+        super.subscribe(wrapper);
+        wrapper.join();
+    }
+    
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null || isClosed()) {
+            subscription.cancel();
+            return;
+        }
+        synchronized (lock) {
+            this.subscription = subscription;
+        }
+        pull();
+    }
+    
+    @Override
+    public void onNext(CharSequence item) {
+        if (isClosed()) {
+            subscription.cancel();
+            return;
+        }
+        batch[size++] = Objects.requireNonNull(item);
+        final boolean complete;
+        synchronized (lock) {
+            complete = ++received >= requested;
+        }
+        if (complete || size == batch.length) {
+            flush();
+            pull();
+        }
+    }
+    
+    @Override
+    public void onError(Throwable throwable) {
+        flush();
+        closeExceptionally(throwable);
+    }
+    
+    @Override
+    public void onComplete() {
+        flush();
+        close();
+    }
+    
+    /**
+     * Converts whatever is in the batch and publishes it in order.
+     */
+    private void flush() {
+        final int flushed = size;
+        BulkConverter.toArabic(batch, 0, size, values, 0, status, 0);
+        for (int i = 0; i < size && !isClosed(); i++) {
+            submit(convert(batch[i], values[i], status[i]));
+        }
+        Arrays.fill(batch, 0, size, null);
+        size = 0;
+        synchronized (lock) {
+            published += flushed;
+        }
+    }
+    
+    /**
+     * Requests up to a batch from upstream, if everything requested so far has been published and
+     * every subscriber still wants more. The request is made outside the lock, since upstream may
+     * deliver on this thread straight away.
+     */
+    private void pull() {
+        final Flow.Subscription upstream;
+        final long n;
+        synchronized (lock) {
+            if (subscription == null || downstream.isEmpty() || published < requested || isClosed()) return;
+            long limit = Long.MAX_VALUE;
+            for (Downstream d : downstream) {
+                limit = Math.min(limit, d.limit());
+            }
+            n = Math.min(batch.length, limit - requested);
+            if (n <= 0) return;
+            requested += n;
+            upstream = subscription;
+        }
+        upstream.request(n);
+    }
+    
+    /**
+     * Stands between the publisher and a subscriber, to see what it requests.
+     */
+    private final class Downstream implements Flow.Subscriber<Conversion>, Flow.Subscription
+    {
+        private final Flow.Subscriber<? super Conversion> subscriber;
+        /** Results published before it joined, which it never gets */
+        private long base;
+        /** What it has requested, up to Long.MAX_VALUE */
+        private long demand;
+        /** Whether it has been completed or cancelled */
+        private boolean left;
+        private Flow.Subscription subscription;
+        
+        Downstream(Flow.Subscriber<? super Conversion> subscriber) {
+            this.subscriber = subscriber;
+        }
+        
+        /**
+         * Starts counting its demand. That waits until the publisher has it in its list, since
+         * onSubscribe runs before that, and with a same-thread executor anything upstream
+         * delivered then would be published to nobody.
+         */
+        void join() {
+            synchronized (lock) {
+                if (left) return;
+                base = published;
+                downstream.add(this);
+            }
+            pull();
+        }
+        
+        /**
+         * @return how many results can be published, counting from the start, before it has to
+         *         ask for more
+         */
+        long limit() {
+            return base + demand < 0 ? Long.MAX_VALUE : base + demand;
+        }
+        
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscriber.onSubscribe(this);
+        }
+        
+        @Override
+        public void onNext(Conversion item) {
+            subscriber.onNext(item);
+        }
+        
+        @Override
+        public void onError(Throwable throwable) {
+            leave();
+            subscriber.onError(throwable);
+        }
+        
+        @Override
+        public void onComplete() {
+            leave();
+            subscriber.onComplete();
+        }
+        
+        @Override
+        public void request(long n) {
+            // The publisher deals with n < 1, and counts what it hands out
+            subscription.request(n);
+            if (n < 1) return;
+            synchronized (lock) {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            pull();
+        }
+        
+        @Override
+        public void cancel() {
+            subscription.cancel();
+            leave();
+            // The others may have been waiting on this one
+            pull();
+        }
+        
+        private void leave() {
+            synchronized (lock) {
+                left = true;
+                downstream.remove(this);
+            }
+        }
+    }
+    
+    /**
+     * @param input the element
+     * @param value what the bulk converter made of it
+     * @param status whether the bulk converter could read it
+     * @return the result to publish
+     */
+    private Conversion convert(CharSequence input, int value, byte status) {
+        if (status == BulkConverter.MALFORMED) {
+            // Rare, so it's fine to parse again just to find out why
+            final long result = RomanArabicConverter.tryParse(input, 0, input.length());
+            return new Conversion(input, 0, NumeralError.of(result), NumeralError.offsetOf(result));
+        }
+        if (toRoman && (value >= 4000 || value <= 0)) return new Conversion(input, value, NumeralError.OUT_OF_RANGE, -1);
+        return new Conversion(input, value, null, -1);
+    }
+}
@@ -0,0 +1,451 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <p>
+ * Serves conversions over TCP and HTTP. Both speak the same line protocol: each line holds one or
+ * more numbers separated by spaces, and gets back a line with one answer per number, in order.
+ * A Roman numeral is answered with its Arabic value and an Arabic number with its Roman numeral,
+ * so <code>XIV 2014</code> gets <code>14 MMXIV</code>. A number that can't be converted is
+ * answered with <code>!</code> and the name of its {@link NumeralError}, such as
+ * <code>!TOO_MANY_REPEATS</code>, and a line longer than {@link #BUFFER_SIZE} with
+ * <code>!TOO_LONG</code>.
+ * </p>
+ * <p>
+ * Over TCP, clients may pipeline: send any number of lines without waiting for answers. Each
+ * connection gets its own thread, a virtual thread when the JVM has them, and a pair of buffers
+ * that it reuses for everything sent on it. Whatever has arrived is answered in one go and
+ * written back with a single write, so many small pipelined requests cost about as much as one
+ * big one.
+ * </p>
+ * <p>
+ * Over HTTP, <code>GET /convert?q=XIV+2014</code> answers one line, and a <code>POST</code> to
+ * <code>/convert</code> answers every line of the body. Buffers for HTTP requests are kept in a
+ * pool, since the JDK server doesn't say which connection a request came in on.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class ConversionServer implements Closeable
+{
+    /** Size of each buffer, and so the longest line that can be answered */
+    public static final int BUFFER_SIZE = 1 << 16;
+    
+    /** The longest answer to a single number: "!" and the longest error name, or a Roman numeral */
+    private static final int MAX_ANSWER = 24;
+    
+    private static final byte[][] ERROR_ANSWERS = new byte[NumeralError.values().length][];
+    private static final byte[] TOO_LONG = "!TOO_LONG\n".getBytes(StandardCharsets.US_ASCII);
+    
+    static {
+        for (NumeralError error : NumeralError.values()) {
+            ERROR_ANSWERS[error.ordinal()] = ("!" + error.name()).getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+    
+    private final ServerSocketChannel tcp;
+    private final HttpServer http;
+    private final ExecutorService threads = newThreadPerTaskExecutor();
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private final Queue<HttpSession> httpSessions = new ConcurrentLinkedQueue<>();
+    private final Thread acceptor;
+    
+    /**
+     * @param tcpAddress where to listen for TCP
+     * @param httpAddress where to listen for HTTP
+     * @throws IOException if either can't be listened on
+     */
+    private ConversionServer(InetSocketAddress tcpAddress, InetSocketAddress httpAddress) throws IOException {
+        tcp = ServerSocketChannel.open().bind(tcpAddress);
+        try {
+            http = HttpServer.create(httpAddress, 0);
+        } catch (IOException e) {
+            tcp.close();
+            throw e;
+        }
+        http.setExecutor(threads);
+        http.createContext("/convert", this::exchange);
+        acceptor = new Thread(this::accept, "conversion-acceptor");
+        acceptor.setDaemon(true);
+    }
+    
+    /**
+     * Starts a server. Use port 0 to have a free port picked.
+     * @param tcpAddress where to listen for the line protocol
+     * @param httpAddress where to listen for HTTP
+     * @return the running server
+     * @throws IOException if either address can't be listened on
+     */
+    public static ConversionServer start(InetSocketAddress tcpAddress, InetSocketAddress httpAddress) throws IOException {
+        final ConversionServer server = new ConversionServer(tcpAddress, httpAddress);
+        server.acceptor.start();
+        server.http.start();
+        return server;
+    }
+    
+    /**
+     * @return where the line protocol is served, with the actual port
+     * @throws IOException if the server has been closed
+     */
+    public InetSocketAddress tcpAddress() throws IOException {
+        return (InetSocketAddress) tcp.getLocalAddress();
+    }
+    
+    /**
+     * @return where HTTP is served, with the actual port
+     */
+    public InetSocketAddress httpAddress() {
+        return http.getAddress();
+    }
+    
+    /**
+     * Stops listening and drops every open connection.
+     */
+    @Override
+    public void close() throws IOException {
+        tcp.close();
+        http.stop(0);
+        for (SocketChannel connection : connections) {
+            connection.close();
+        }
+        threads.shutdownNow();
+    }
+    
+    /**
+     * Uses a virtual thread per task where the JVM has them (Java 21 and later), and otherwise a
+     * cached pool of daemon threads, which is the closest thing. This builds for Java 17, so the
+     * virtual thread executor has to be looked up.
+     * @return the executor for connections and HTTP requests
+     */
+    static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                final Thread thread = new Thread(task, "conversion-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+    
+    /**
+     * Hands each new connection to its own thread until the server is closed. A connection that
+     * can't be set up is closed, and doesn't stop the others.
+     */
+    private void accept() {
+        while (tcp.isOpen()) {
+            final SocketChannel connection;
+            try {
+                connection = tcp.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                // Only this connection failed, like one reset before it was accepted
+                continue;
+            }
+            try {
+                connection.socket().setTcpNoDelay(true);
+                connections.add(connection);
+                threads.execute(() -> serve(connection));
+            } catch (IOException | RejectedExecutionException e) {
+                // Reset already, or the server is closing
+                connections.remove(connection);
+                try {
+                    connection.close();
+                } catch (IOException ignored) {
+                    // Nothing more to do with it
+                }
+            }
+        }
+    }
+    
+    /**
+     * Answers everything sent on a connection until the client closes it.
+     * @param connection the connection
+     */
+    private void serve(SocketChannel connection) {
+        try (connection) {
+            final Session session = new Session() {
+                @Override
+                void write(ByteBuffer answers) throws IOException {
+                    while (answers.hasRemaining()) {
+                        connection.write(answers);
+                    }
+                }
+            };
+            while (connection.read(session.input) >= 0) {
+                session.answerComplete();
+                session.flush();
+            }
+        } catch (ClosedChannelException e) {
+            // The server is shutting down
+        } catch (IOException e) {
+            // The client went away
+        } finally {
+            connections.remove(connection);
+        }
+    }
+    
+    /**
+     * Answers a GET or POST to /convert.
+     * @param exchange the request
+     * @throws IOException if the client goes away
+     */
+    private void exchange(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            final String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "GET, POST");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            HttpSession session = httpSessions.poll();
+            if (session == null) session = new HttpSession();
+            try {
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=US-ASCII");
+                exchange.sendResponseHeaders(200, 0);
+                session.body = exchange.getResponseBody();
+                if (method.equals("GET")) {
+                    session.answerQuery(exchange.getRequestURI());
+                } else {
+                    session.answerBody(exchange.getRequestBody());
+                }
+                session.flush();
+            } finally {
+                session.body = null;
+                session.input.clear();
+                session.output.clear();
+                httpSessions.offer(session);
+            }
+        }
+    }
+    
+    /**
+     * The buffers for one connection, and the protocol on top of them. The input buffer is kept
+     * ready for reading into; answers pile up in the output buffer until flush() or until it's
+     * about to run out of room.
+     */
+    private abstract static class Session
+    {
+        final ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+        final ByteBuffer output = ByteBuffer.allocate(BUFFER_SIZE);
+        private final AsciiSequence characters = new AsciiSequence().wrap(input);
+        /** Set while skipping the rest of a line that didn't fit */
+        private boolean discarding;
+        
+        /**
+         * @param answers answers to send, to be written out completely
+         * @throws IOException if they can't be sent
+         */
+        abstract void write(ByteBuffer answers) throws IOException;
+        
+        /**
+         * Answers every complete line in the input, and keeps what's left of an incomplete one.
+         * @throws IOException if answers can't be sent
+         */
+        void answerComplete() throws IOException {
+            input.flip();
+            int start = input.position();
+            for (int i = start; i < input.limit(); i++) {
+                if (input.get(i) != '\n') continue;
+                if (discarding) {
+                    discarding = false;
+                } else {
+                    answer(start, i);
+                }
+                start = i + 1;
+            }
+            input.position(start);
+            if (discarding) {
+                input.position(input.limit());
+            } else if (start == 0 && input.limit() == input.capacity()) {
+                // A whole buffer without the end of a line
+                room(TOO_LONG.length);
+                output.put(TOO_LONG);
+                input.position(input.limit());
+                discarding = true;
+            }
+            input.compact();
+        }
+        
+        /**
+         * Answers what's left in the input as a line of its own, for input that ends without a
+         * newline.
+         * @throws IOException if answers can't be sent
+         */
+        void answerRest() throws IOException {
+            input.flip();
+            if (input.hasRemaining() && !discarding) answer(input.position(), input.limit());
+            input.clear();
+            discarding = false;
+        }
+        
+        /**
+         * Answers one line.
+         * @param from index of the first character of the line
+         * @param to index of the newline, or the end of the line
+         * @throws IOException if answers can't be sent
+         */
+        void answer(int from, int to) throws IOException {
+            if (to > from && input.get(to - 1) == '\r') to--;
+            boolean first = true;
+            int i = from;
+            while (true) {
+                while (i < to && input.get(i) <= ' ') i++;
+                if (i == to && !first) break;
+                final int start = i;
+                while (i < to && input.get(i) > ' ') i++;
+                room(MAX_ANSWER + 1);
+                if (!first) output.put((byte) ' ');
+                answer(start, i, start < i ? input.get(start) : 0);
+                first = false;
+                if (i == to) break;
+            }
+            room(1);
+            output.put((byte) '\n');
+        }
+        
+        /**
+         * Answers one number.
+         * @param from index of its first character
+         * @param to index after its last character
+         * @param first its first character, or anything if it's empty
+         */
+        private void answer(int from, int to, byte first) {
+            final long result = RomanArabicConverter.tryParse(characters, from, to);
+            if (!RomanArabicConverter.isValid(result)) {
+                output.put(ERROR_ANSWERS[NumeralError.of(result).ordinal()]);
+            } else if (first == '-' || first == '+' || (first >= '0' && first <= '9')) {
+                if (RomanArabicConverter.encode((int) result, output) < 0) {
+                    output.put(ERROR_ANSWERS[NumeralError.OUT_OF_RANGE.ordinal()]);
+                }
+            } else {
+                FileConverter.putArabic((int) result, output);
+            }
+        }
+        
+        /**
+         * Makes sure the output has room for more.
+         * @param bytes how much room is needed
+         * @throws IOException if answers can't be sent
+         */
+        private void room(int bytes) throws IOException {
+            if (output.remaining() < bytes) flush();
+        }
+        
+        /**
+         * Sends whatever has been answered so far.
+         * @throws IOException if answers can't be sent
+         */
+        void flush() throws IOException {
+            if (output.position() == 0) return;
+            output.flip();
+            write(output);
+            output.clear();
+        }
+    }
+    
+    /**
+     * The buffers for HTTP requests, which answer into the response body.
+     */
+    private static final class HttpSession extends Session
+    {
+        OutputStream body;
+        
+        @Override
+        void write(ByteBuffer answers) throws IOException {
+            body.write(answers.array(), answers.position(), answers.remaining());
+            answers.position(answers.limit());
+        }
+        
+        /**
+         * Answers the numbers in the q parameter of a GET, as one line.
+         * @param uri the request URI
+         * @throws IOException if answers can't be sent
+         */
+        void answerQuery(URI uri) throws IOException {
+            // Split and decode the raw query, so an escaped '+' or '&' is taken literally. The
+            // server has already turned away a URI with a broken escape.
+            final String query = uri.getRawQuery();
+            if (query != null) {
+                for (String parameter : query.split("&")) {
+                    if (parameter.startsWith("q=")) {
+                        final byte[] numbers = URLDecoder.decode(parameter.substring(2), StandardCharsets.UTF_8).getBytes(StandardCharsets.ISO_8859_1);
+                        if (numbers.length > input.capacity()) {
+                            output.put(TOO_LONG);
+                            return;
+                        }
+                        input.put(numbers);
+                        break;
+                    }
+                }
+            }
+            // Always one line, even without numbers
+            input.flip();
+            answer(0, input.limit());
+            input.clear();
+        }
+        
+        /**
+         * Answers every line of a POST body.
+         * @param request the body
+         * @throws IOException if it can't be read or answers can't be sent
+         */
+        void answerBody(InputStream request) throws IOException {
+            int read;
+            while ((read = request.read(input.array(), input.position(), input.remaining())) >= 0) {
+                input.position(input.position() + read);
+                answerComplete();
+            }
+            answerRest();
+        }
+    }
+    
+    /**
+     * Runs a server until the JVM is stopped.
+     * @param args the TCP port and the HTTP port, 7070 and 7071 if not given
+     * @throws IOException if the ports can't be listened on
+     */
+    public static void main(String[] args) throws IOException {
+        final int tcpPort = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+        final int httpPort = args.length > 1 ? Integer.parseInt(args[1]) : 7071;
+        final ConversionServer server = start(new InetSocketAddress(tcpPort), new InetSocketAddress(httpPort));
+        System.out.println("Line protocol on " + server.tcpAddress() + ", HTTP on " + server.httpAddress());
+    }
+}
@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * <p>
+ * Counts what {@link RomanArabicConverter} is asked to do: how many inputs were Arabic or Roman,
+ * how many were malformed, how many values were out of range for a Roman numeral, and how long
+ * parsing and formatting took. Everything goes through the static methods of the converter, so
+ * the bulk, file and parallel converters are counted too.
+ * </p>
+ * <p>
+ * Recording is off unless the JVM is started with <code>-Dtdd.metrics=true</code>. The switch is a
+ * static final, so when it's off the JIT drops the checks and the converter costs the same as
+ * without metrics. When it's on, every counter is a LongAdder, so threads converting at the same
+ * time don't fight over a single cache line, and the metrics are published through JMX as
+ * {@value #OBJECT_NAME}.
+ * </p>
+ * <p>
+ * Counters are read and reset one at a time, so a snapshot taken while converting may be slightly
+ * inconsistent between counters.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class ConverterMetrics implements ConverterMetricsMBean
+{
+    /** Whether the converter records anything, read once from the tdd.metrics system property */
+    public static final boolean ENABLED = Boolean.getBoolean("tdd.metrics");
+    
+    /** The name the metrics are registered under */
+    public static final String OBJECT_NAME = "tdd:type=ConverterMetrics";
+    
+    private static final ConverterMetrics INSTANCE = new ConverterMetrics();
+    
+    static {
+        if (ENABLED) {
+            try {
+                INSTANCE.register(ManagementFactory.getPlatformMBeanServer());
+            } catch (JMException e) {
+                // Still recording, just not visible through JMX
+            }
+        }
+    }
+    
+    private final LongAdder arabicInputs = new LongAdder();
+    private final LongAdder romanInputs = new LongAdder();
+    private final LongAdder malformedInputs = new LongAdder();
+    private final LongAdder outOfRangeFormats = new LongAdder();
+    private final Histogram parseLatency = new Histogram();
+    private final Histogram formatLatency = new Histogram();
+    
+    ConverterMetrics() {
+        // One per JVM, except in tests
+    }
+    
+    /**
+     * @return the metrics the converter records into
+     */
+    public static ConverterMetrics get() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Records a parse. Only called by the converter when {@link #ENABLED} is set.
+     * @param value the characters that were parsed
+     * @param from index of the first character
+     * @param to index after the last character
+     * @param result what tryParse returned
+     * @param startNanos System.nanoTime() when parsing started
+     */
+    static void parsed(CharSequence value, int from, int to, long result, long startNanos) {
+        INSTANCE.recordParse(value, from, to, result, System.nanoTime() - startNanos);
+    }
+    
+    /**
+     * Records a format. Only called by the converter when {@link #ENABLED} is set.
+     * @param inRange false if the value was out of range
+     * @param startNanos System.nanoTime() when formatting started
+     */
+    static void formatted(boolean inRange, long startNanos) {
+        INSTANCE.recordFormat(inRange, System.nanoTime() - startNanos);
+    }
+    
+    void recordParse(CharSequence value, int from, int to, long result, long nanos) {
+        parseLatency.record(nanos);
+        if (!RomanArabicConverter.isValid(result)) {
+            malformedInputs.increment();
+            return;
+        }
+        // Valid, so there is something other than spaces, and the converter went by its first character
+        while (value.charAt(from) <= ' ') from++;
+        final char first = value.charAt(from);
+        if (first == '-' || first == '+' || Character.digit(first, 10) >= 0) {
+            arabicInputs.increment();
+        } else {
+            romanInputs.increment();
+        }
+    }
+    
+    void recordFormat(boolean inRange, long nanos) {
+        formatLatency.record(nanos);
+        if (!inRange) outOfRangeFormats.increment();
+    }
+    
+    /**
+     * Publishes these metrics as {@value #OBJECT_NAME}. This happens on its own when
+     * {@link #ENABLED} is set.
+     * @param server the server to register with
+     * @throws JMException if they can't be registered, for example because they already are
+     */
+    public void register(MBeanServer server) throws JMException {
+        server.registerMBean(this, new ObjectName(OBJECT_NAME));
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+    
+    @Override
+    public long getArabicInputs() {
+        return arabicInputs.sum();
+    }
+    
+    @Override
+    public long getRomanInputs() {
+        return romanInputs.sum();
+    }
+    
+    @Override
+    public long getMalformedInputs() {
+        return malformedInputs.sum();
+    }
+    
+    @Override
+    public long getFormats() {
+        return formatLatency.count();
+    }
+    
+    @Override
+    public long getOutOfRangeFormats() {
+        return outOfRangeFormats.sum();
+    }
+    
+    @Override
+    public double getParseMeanNanos() {
+        return parseLatency.mean();
+    }
+    
+    @Override
+    public long getParseP50Nanos() {
+        return parseLatency.percentile(0.5);
+    }
+    
+    @Override
+    public long getParseP99Nanos() {
+        return parseLatency.percentile(0.99);
+    }
+    
+    @Override
+    public double getFormatMeanNanos() {
+        return formatLatency.mean();
+    }
+    
+    @Override
+    public long getFormatP50Nanos() {
+        return formatLatency.percentile(0.5);
+    }
+    
+    @Override
+    public long getFormatP99Nanos() {
+        return formatLatency.percentile(0.99);
+    }
+    
+    @Override
+    public long[] getParseHistogram() {
+        return parseLatency.buckets();
+    }
+    
+    @Override
+    public long[] getFormatHistogram() {
+        return formatLatency.buckets();
+    }
+    
+    @Override
+    public void reset() {
+        arabicInputs.reset();
+        romanInputs.reset();
+        malformedInputs.reset();
+        outOfRangeFormats.reset();
+        parseLatency.reset();
+        formatLatency.reset();
+    }
+    
+    /**
+     * Latencies in power-of-two buckets. Bucket i counts times from 2^(i-1) up to, but not
+     * including, 2^i nanoseconds (bucket 0 is exactly 0), so recording is a count of leading zeros
+     * and an add.
+     */
+    private static final class Histogram
+    {
+        private final LongAdder[] buckets = new LongAdder[64];
+        private final LongAdder totalNanos = new LongAdder();
+        
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+        
+        void record(long nanos) {
+            // nanoTime() can go backwards a little between cores
+            if (nanos < 0) nanos = 0;
+            buckets[64 - Long.numberOfLeadingZeros(nanos)].increment();
+            totalNanos.add(nanos);
+        }
+        
+        long[] buckets() {
+            final long[] counts = new long[buckets.length];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return counts;
+        }
+        
+        long count() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+        
+        double mean() {
+            final long count = count();
+            return count == 0 ? 0 : (double) totalNanos.sum() / count;
+        }
+        
+        long percentile(double fraction) {
+            final long[] counts = buckets();
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            if (total == 0) return 0;
+            final long rank = (long) Math.ceil(fraction * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return i == 0 ? 0 : (1L << i) - 1;
+            }
+            return Long.MAX_VALUE;
+        }
+        
+        void reset() {
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+            totalNanos.reset();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+/**
+ * The JMX view of {@link ConverterMetrics}. Latencies are in nanoseconds, and percentiles are the
+ * upper bound of the power-of-two bucket they fall in, so they are accurate to within a factor of 2.
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public interface ConverterMetricsMBean
+{
+    /** @return true if the converter is recording, which is set by the tdd.metrics system property */
+    boolean isEnabled();
+    
+    /** @return how many numbers were parsed as Arabic */
+    long getArabicInputs();
+    
+    /** @return how many numbers were parsed as Roman numerals */
+    long getRomanInputs();
+    
+    /** @return how many inputs were malformed, Arabic or Roman */
+    long getMalformedInputs();
+    
+    /** @return how many values were formatted as Roman numerals */
+    long getFormats();
+    
+    /** @return how many values could not be formatted because they weren't between 1 and 3999 */
+    long getOutOfRangeFormats();
+    
+    /** @return the average time to parse a number */
+    double getParseMeanNanos();
+    
+    /** @return the median time to parse a number */
+    long getParseP50Nanos();
+    
+    /** @return the 99th percentile of the time to parse a number */
+    long getParseP99Nanos();
+    
+    /** @return the average time to format a Roman numeral */
+    double getFormatMeanNanos();
+    
+    /** @return the median time to format a Roman numeral */
+    long getFormatP50Nanos();
+    
+    /** @return the 99th percentile of the time to format a Roman numeral */
+    long getFormatP99Nanos();
+    
+    /** @return parse counts by latency, where bucket i holds times below 2^i nanoseconds */
+    long[] getParseHistogram();
+    
+    /** @return format counts by latency, where bucket i holds times below 2^i nanoseconds */
+    long[] getFormatHistogram();
+    
+    /** Sets everything back to zero */
+    void reset();
+}
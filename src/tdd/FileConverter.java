@@ -0,0 +1,317 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>
+ * Converts files holding one number per line, Roman or Arabic, into files holding one Roman
+ * numeral or one Arabic number per line.
+ * </p>
+ * <p>
+ * Each line follows the same rules as the {@link RomanArabicConverter} constructor, so it may have
+ * leading and trailing spaces (including a '\r' before the '\n'), and a malformed line or a value
+ * that can't be written as a Roman numeral fails the conversion with the same exception, prefixed
+ * with the line number.
+ * </p>
+ * <p>
+ * The input is memory-mapped a window at a time and parsed as ASCII bytes in place, and the output
+ * goes through one fixed-size direct buffer. Nothing is allocated per line, and the memory used
+ * stays the same no matter how big the file is, since old windows are only backed by the page
+ * cache. Line ends are found a vector of bytes at a time when the Vector API is available, the
+ * same way as {@link BulkConverter#toArabic(ByteBuffer, int[], int, byte[], int)}.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class FileConverter
+{
+    /** How much of the input to map at a time */
+    static final int WINDOW_SIZE = 64 << 20;
+    /** The most that can be mapped at once, and so the longest line there can be */
+    static final int MAX_WINDOW = Integer.MAX_VALUE;
+    /** Size of the output buffer */
+    private static final int OUTPUT_SIZE = 64 << 10;
+    /** Longest line we can write: a Roman numeral (an int with its sign is shorter), plus the newline */
+    static final int MAX_LINE = RomanArabicConverter.MAX_ROMAN_LENGTH + 1;
+    
+    private FileConverter() {
+        // Only static methods
+    }
+    
+    /**
+     * Converts every line of in into a Roman numeral in out.
+     * @param in the file to read
+     * @param out the file to write, replaced if it exists
+     * @return how much was converted and how fast
+     * @throws IOException if either file can't be used
+     * @throws MalformedNumberException if a line isn't a valid Roman or Arabic number
+     * @throws ValueOutOfBoundsException if a line's value can't be written as a Roman numeral
+     */
+    public static Stats toRoman(Path in, Path out) throws IOException, MalformedNumberException, ValueOutOfBoundsException {
+        return convert(in, out, true, WINDOW_SIZE);
+    }
+    
+    /**
+     * Converts every line of in into an Arabic number in out.
+     * @param in the file to read
+     * @param out the file to write, replaced if it exists
+     * @return how much was converted and how fast
+     * @throws IOException if either file can't be used
+     * @throws MalformedNumberException if a line isn't a valid Roman or Arabic number
+     */
+    public static Stats toArabic(Path in, Path out) throws IOException, MalformedNumberException {
+        try {
+            return convert(in, out, false, WINDOW_SIZE);
+        } catch (ValueOutOfBoundsException e) {
+            throw new AssertionError(e); // Arabic numbers don't have bounds
+        }
+    }
+    
+    /**
+     * Does the conversion, mapping windowSize bytes of in at a time. A window grows if a single
+     * line doesn't fit in it, up to {@link #MAX_WINDOW}.
+     * @param in the file to read
+     * @param out the file to write
+     * @param toRoman true to write Roman numerals, false to write Arabic numbers
+     * @param windowSize how much of in to map at a time
+     * @return how much was converted and how fast
+     * @throws IOException if either file can't be used
+     * @throws MalformedNumberException if a line isn't a valid Roman or Arabic number
+     * @throws ValueOutOfBoundsException if a line's value can't be written as a Roman numeral
+     */
+    static Stats convert(Path in, Path out, boolean toRoman, int windowSize) throws IOException, MalformedNumberException, ValueOutOfBoundsException {
+        return convert(in, out, toRoman, windowSize, MAX_WINDOW);
+    }
+    
+    /**
+     * Does the conversion, with a window that grows no bigger than maxWindow, so the limit on
+     * line length can be tried without a file that big.
+     * @param in the file to read
+     * @param out the file to write
+     * @param toRoman true to write Roman numerals, false to write Arabic numbers
+     * @param windowSize how much of in to map at a time
+     * @param maxWindow the most of in to map at a time
+     * @return how much was converted and how fast
+     * @throws IOException if either file can't be used
+     * @throws MalformedNumberException if a line isn't a valid Roman or Arabic number, or is longer
+     *             than maxWindow
+     * @throws ValueOutOfBoundsException if a line's value can't be written as a Roman numeral
+     */
+    static Stats convert(Path in, Path out, boolean toRoman, int windowSize, int maxWindow)
+            throws IOException, MalformedNumberException, ValueOutOfBoundsException {
+        final long start = System.nanoTime();
+        final AsciiSequence chars = new AsciiSequence();
+        final ByteBuffer output = ByteBuffer.allocateDirect(OUTPUT_SIZE);
+        final int[] ends = new int[BulkConverter.SCAN_CHUNK];
+        long lines = 0;
+        long written = 0;
+        
+        try (FileChannel reader = FileChannel.open(in, StandardOpenOption.READ);
+                FileChannel writer = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final long size = reader.size();
+            long position = 0;
+            int window = windowSize;
+            while (position < size) {
+                final int length = (int) Math.min(window, size - position);
+                final boolean last = position + length == size;
+                final MappedByteBuffer mapped = reader.map(FileChannel.MapMode.READ_ONLY, position, length);
+                chars.wrap(mapped);
+                
+                int lineStart = 0;
+                int found;
+                while ((found = RecordScanner.INSTANCE.scan(mapped, lineStart, length, ends, ends.length)) > 0) {
+                    for (int e = 0; e < found; e++) {
+                        // A line flagged as malformed is still parsed, for the exact error
+                        final int end = ends[e] < 0 ? ~ends[e] : ends[e];
+                        lines++;
+                        written += convertLine(chars, lineStart, end, lines, toRoman, output, writer);
+                        lineStart = end + 1;
+                    }
+                }
+                if (last && lineStart < length) {
+                    // Last line without a newline
+                    lines++;
+                    written += convertLine(chars, lineStart, length, lines, toRoman, output, writer);
+                    lineStart = length;
+                }
+                
+                if (lineStart == 0 && !last) {
+                    // One line is bigger than the whole window, which can only grow so far
+                    if (window >= maxWindow) {
+                        throw new MalformedNumberException("Line " + (lines + 1) + ": Lines must not be longer than " + maxWindow + " bytes!");
+                    }
+                    window = (int) Math.min(maxWindow, 2L * window);
+                } else {
+                    position += lineStart;
+                    window = windowSize;
+                }
+            }
+            written += flush(output, writer);
+            return new Stats(lines, size, written, System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * Converts one line into the output buffer, writing the buffer out first if it's nearly full.
+     * @param chars the mapped window
+     * @param from index of the first character of the line
+     * @param to index of the newline, or the end of the file
+     * @param line the line number, for error messages
+     * @param toRoman true to write a Roman numeral, false to write an Arabic number
+     * @param output the output buffer
+     * @param writer the output file
+     * @return how many bytes were written to the file to make room
+     * @throws IOException if the output can't be written
+     * @throws MalformedNumberException if the line isn't a valid Roman or Arabic number
+     * @throws ValueOutOfBoundsException if the line's value can't be written as a Roman numeral
+     */
+    private static int convertLine(AsciiSequence chars, int from, int to, long line, boolean toRoman, ByteBuffer output, FileChannel writer)
+            throws IOException, MalformedNumberException, ValueOutOfBoundsException {
+        final long result = RomanArabicConverter.tryParse(chars, from, to);
+        if (!RomanArabicConverter.isValid(result)) {
+            throw new MalformedNumberException("Line " + line + ": " + RomanArabicConverter.malformed(chars, result).getMessage());
+        }
+        
+        final int flushed = output.remaining() < MAX_LINE ? flush(output, writer) : 0;
+        if (!putLine((int) result, toRoman, output)) {
+            throw new ValueOutOfBoundsException("Line " + line + ": " + NumeralError.OUT_OF_RANGE.message(' '));
+        }
+        return flushed;
+    }
+    
+    /**
+     * Puts a value into the output as a Roman numeral or an Arabic number, followed by a newline.
+     * @param value the value
+     * @param toRoman true to write a Roman numeral, false to write an Arabic number
+     * @param output where to put it, with at least MAX_LINE bytes of room
+     * @return false if a Roman numeral was asked for and the value can't be written as one
+     */
+    static boolean putLine(int value, boolean toRoman, ByteBuffer output) {
+        if (toRoman) {
+            if (RomanArabicConverter.encode(value, output) < 0) return false;
+        } else {
+            putArabic(value, output);
+        }
+        output.put((byte) '\n');
+        return true;
+    }
+    
+    /**
+     * Writes the digits of value like Integer.toString, without creating the String.
+     * @param value the value
+     * @param output where to put the digits
+     */
+    static void putArabic(int value, ByteBuffer output) {
+        if (value < 0) output.put((byte) '-');
+        else value = -value; // Work with negatives so Integer.MIN_VALUE works
+        
+        int digits = 1;
+        for (int rest = value / 10; rest != 0; rest /= 10) digits++;
+        final int end = output.position() + digits;
+        for (int i = end - 1; i >= end - digits; i--) {
+            output.put(i, (byte) ('0' - value % 10));
+            value /= 10;
+        }
+        output.position(end);
+    }
+    
+    /**
+     * Writes everything in the output buffer to the file and empties it.
+     * @param output the output buffer
+     * @param writer the output file
+     * @return how many bytes were written
+     * @throws IOException if the output can't be written
+     */
+    private static int flush(ByteBuffer output, FileChannel writer) throws IOException {
+        output.flip();
+        final int bytes = output.remaining();
+        while (output.hasRemaining()) {
+            writer.write(output);
+        }
+        output.clear();
+        return bytes;
+    }
+    
+    /**
+     * Converts a file from the command line and prints how fast it went.
+     * @param args "roman" or "arabic", then the file to read and the file to write
+     * @throws Exception if the conversion fails
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            System.err.println("Usage: FileConverter roman|arabic <in> <out>");
+            System.exit(2);
+        }
+        final Path in = Paths.get(args[1]);
+        final Path out = Paths.get(args[2]);
+        System.out.println("roman".equals(args[0]) ? toRoman(in, out) : toArabic(in, out));
+    }
+    
+    /**
+     * How much a conversion did and how long it took.
+     */
+    public static final class Stats
+    {
+        private final long lines;
+        private final long bytesRead;
+        private final long bytesWritten;
+        private final long nanos;
+        
+        Stats(long lines, long bytesRead, long bytesWritten, long nanos) {
+            this.lines = lines;
+            this.bytesRead = bytesRead;
+            this.bytesWritten = bytesWritten;
+            this.nanos = nanos;
+        }
+        
+        /** @return the number of lines converted */
+        public long lines() {
+            return lines;
+        }
+        
+        /** @return the size of the input */
+        public long bytesRead() {
+            return bytesRead;
+        }
+        
+        /** @return the size of the output */
+        public long bytesWritten() {
+            return bytesWritten;
+        }
+        
+        /** @return how long the conversion took, in nanoseconds */
+        public long nanos() {
+            return nanos;
+        }
+        
+        /** @return input throughput in megabytes (10^6 bytes) per second */
+        public double megabytesPerSecond() {
+            return nanos == 0 ? 0 : bytesRead * 1000.0 / nanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%d lines, %d bytes in, %d bytes out, %.1f ms, %.1f MB/s",
+                    lines, bytesRead, bytesWritten, nanos / 1e6, megabytesPerSecond());
+        }
+    }
+}
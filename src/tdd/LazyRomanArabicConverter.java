@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+/**
+ * <p>
+ * A converter that keeps the string it was given and only parses it the first time its value is
+ * asked for, for code that creates converters it may never read. It follows the same rules as
+ * {@link RomanArabicConverter}; the difference is that a malformed number is reported by
+ * {@link #toArabic()} and {@link #toRoman()} instead of the constructor.
+ * </p>
+ * <p>
+ * Once parsed, the value is kept as the shared instance from {@link RomanArabicConverter#valueOf(int)},
+ * whose toRoman() hands back the numeral from the converter's table, so neither is ever worked
+ * out twice. That reference is the only state that changes, and the converter it points to is
+ * immutable, so threads that race to parse first just do the same work and store the same
+ * result, like String caches its hash code; no locking is needed. A malformed number isn't
+ * remembered, and is parsed again every time it's read.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class LazyRomanArabicConverter
+{
+    /** The number as given */
+    private final String value;
+    /** The parsed value, or null until it's been read */
+    private RomanArabicConverter converter;
+    
+    /**
+     * Constructor that only keeps the string. It may hold a Roman or an Arabic number, with the
+     * same rules as the {@link RomanArabicConverter} constructor, but isn't looked at yet.
+     * 
+     * @param value the string representing the Roman or Arabic number
+     */
+    public LazyRomanArabicConverter(String value)
+    {
+        if (value == null) throw new NullPointerException("value");
+        this.value = value;
+    }
+    
+    /**
+     * @return the string this converter was created with
+     */
+    public String input()
+    {
+        return value;
+    }
+    
+    /**
+     * @return true if the string has been parsed, and was valid
+     */
+    public boolean isParsed()
+    {
+        return converter != null;
+    }
+    
+    /**
+     * Parses the string if that hasn't been done yet.
+     * 
+     * @return the converter for the value
+     * @throws MalformedNumberException if the string does not represent a valid Roman or Arabic number
+     */
+    public RomanArabicConverter get() throws MalformedNumberException
+    {
+        // Read once, so a race can't turn a non-null into a null between the check and the return
+        RomanArabicConverter parsed = converter;
+        if (parsed == null) {
+            parsed = RomanArabicConverter.valueOf(value);
+            converter = parsed;
+        }
+        return parsed;
+    }
+    
+    /**
+     * @return the integer value of the number given
+     * @throws MalformedNumberException if the string does not represent a valid Roman or Arabic number
+     */
+    public int toArabic() throws MalformedNumberException
+    {
+        return get().toArabic();
+    }
+    
+    /**
+     * @return the string that represents the value of the number as a Roman numeral
+     * @throws MalformedNumberException if the string does not represent a valid Roman or Arabic number
+     * @throws ValueOutOfBoundsException if the value is not between 1 and 3999
+     */
+    public String toRoman() throws MalformedNumberException, ValueOutOfBoundsException
+    {
+        return get().toRoman();
+    }
+    
+    @Override
+    public String toString()
+    {
+        return value;
+    }
+}
@@ -31,4 +31,17 @@ public class MalformedNumberException extends Exception
 	{
 		super(message);
 	}
+	
+	/**
+	 * Constructor with a descriptive message that can skip filling in the stack trace, which is
+	 * most of the cost of throwing this when inputs are expected to be bad. Suppression goes with
+	 * it: one with a stack trace keeps what try-with-resources adds, and one without doesn't.
+	 * @param message The descriptive message
+	 * @param writableStackTrace whether the stack trace should be filled in, and suppressed
+	 *            exceptions kept
+	 */
+	public MalformedNumberException(String message, boolean writableStackTrace)
+	{
+		super(message, null, writableStackTrace, writableStackTrace);
+	}
 }
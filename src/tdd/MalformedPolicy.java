@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+/**
+ * What to do with a row that isn't a valid Roman or Arabic number when going through many of them.
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public enum MalformedPolicy
+{
+    /** Leave it out, and don't keep track of it */
+    SKIP,
+    /** Leave it out, but count it */
+    COUNT,
+    /** Stop with a {@link MalformedNumberException} naming the row */
+    FAIL
+}
@@ -0,0 +1,364 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * <p>
+ * A growable column of numbers between 1 and 3999, packed two bytes to a cell instead of the 40 or
+ * more that a String or converter per cell costs. Cells can also be empty, for values that were
+ * out of range or didn't parse; those are stored as {@link #EMPTY} and read back as 0.
+ * </p>
+ * <p>
+ * A column keeps its cells either in a short[] on the heap, or off the heap in a direct buffer,
+ * where the garbage collector never has to look at them. Both kinds behave the same. Roman
+ * numerals are never stored: they come out of the converter's table when they are read, so a cell
+ * costs the same whichever way its number was written.
+ * </p>
+ * <p>
+ * The off-heap cells are a direct buffer rather than a MemorySegment. On the JDK 17 this builds
+ * for, MemorySegment is in jdk.incubator.foreign, whose API changed in every release until it
+ * became java.lang.foreign in Java 22, so code written against it wouldn't compile on a later
+ * JDK. The vector scanner gets away with an incubator module because it's optional: it's one
+ * class, loaded by name, and without the module the scalar scanner does the same job. A column
+ * can't fall back like that, as its cells have to be somewhere. A direct buffer keeps
+ * them just as far from the garbage collector, for up to 2<sup>30</sup> cells.
+ * </p>
+ * <p>
+ * Columns are not thread-safe. Any number of threads can read one that is no longer being written.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class NumeralColumn
+{
+    /** What an empty cell holds */
+    public static final short EMPTY = 0;
+    
+    private static final int DEFAULT_CAPACITY = 16;
+    
+    private final boolean offHeap;
+    /** Either wraps a short[] or views a direct buffer, so every access goes the same way */
+    private ShortBuffer cells;
+    private int size;
+    
+    /**
+     * @param offHeap whether the cells live in a direct buffer
+     * @param capacity how many cells to make room for
+     */
+    private NumeralColumn(boolean offHeap, int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Negative capacity: " + capacity);
+        this.offHeap = offHeap;
+        this.cells = allocate(offHeap, capacity);
+    }
+    
+    /**
+     * @return an empty column with its cells in a short[]
+     */
+    public static NumeralColumn onHeap() {
+        return onHeap(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * @param capacity how many cells to make room for before the column has to grow
+     * @return an empty column with its cells in a short[]
+     */
+    public static NumeralColumn onHeap(int capacity) {
+        return new NumeralColumn(false, capacity);
+    }
+    
+    /**
+     * @param capacity how many cells to make room for before the column has to grow
+     * @return an empty column with its cells in a direct buffer
+     */
+    public static NumeralColumn offHeap(int capacity) {
+        return new NumeralColumn(true, capacity);
+    }
+    
+    /**
+     * @return whether the cells live in a direct buffer
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+    
+    /**
+     * @return the number of cells
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @return how many cells fit before the column has to grow
+     */
+    public int capacity() {
+        return cells.capacity();
+    }
+    
+    /**
+     * @return the bytes taken by the cells, including room not used yet
+     */
+    public long sizeInBytes() {
+        return (long) capacity() * Short.BYTES;
+    }
+    
+    /**
+     * Adds a cell at the end.
+     * 
+     * @param value the value to add
+     * @return true if it was stored, false if it was out of range and the cell was left empty
+     */
+    public boolean append(int value) {
+        ensureCapacity(size + 1);
+        final short cell = cell(value);
+        cells.put(size++, cell);
+        return cell != EMPTY;
+    }
+    
+    /**
+     * Adds values[from..to) at the end. Values that are out of range are stored as empty cells.
+     * 
+     * @param values the values to add
+     * @param from index of the first value
+     * @param to index after the last value
+     * @return the number of values that were out of range
+     */
+    public int append(int[] values, int from, int to) {
+        BulkConverter.checkRange(values.length, from, to);
+        ensureCapacity(size + (to - from));
+        int outOfRange = 0;
+        for (int i = from; i < to; i++) {
+            final short cell = cell(values[i]);
+            if (cell == EMPTY) outOfRange++;
+            cells.put(size++, cell);
+        }
+        return outOfRange;
+    }
+    
+    /**
+     * Reads numbers[from..to), which can be Roman or Arabic with the same rules as the
+     * RomanArabicConverter constructor, and adds them at the end. Numbers that are malformed or out
+     * of range are stored as empty cells.
+     * 
+     * @param numbers the numbers to add
+     * @param from index of the first number
+     * @param to index after the last number
+     * @return the number of numbers that were stored as empty cells
+     */
+    public int append(CharSequence[] numbers, int from, int to) {
+        BulkConverter.checkRange(numbers.length, from, to);
+        ensureCapacity(size + (to - from));
+        int empty = 0;
+        for (int i = from; i < to; i++) {
+            final CharSequence number = numbers[i];
+            final long result = RomanArabicConverter.tryParse(number, 0, number.length());
+            final short cell = RomanArabicConverter.isValid(result) ? cell((int) result) : EMPTY;
+            if (cell == EMPTY) empty++;
+            cells.put(size++, cell);
+        }
+        return empty;
+    }
+    
+    /**
+     * Replaces the value of a cell.
+     * 
+     * @param index the cell
+     * @param value the new value
+     * @return true if it was stored, false if it was out of range and the cell was emptied
+     * @throws IndexOutOfBoundsException if there's no such cell
+     */
+    public boolean set(int index, int value) {
+        checkIndex(index);
+        final short cell = cell(value);
+        cells.put(index, cell);
+        return cell != EMPTY;
+    }
+    
+    /**
+     * @param index the cell
+     * @return the value of the cell, or 0 if it's empty
+     * @throws IndexOutOfBoundsException if there's no such cell
+     */
+    public int get(int index) {
+        checkIndex(index);
+        return cells.get(index);
+    }
+    
+    /**
+     * @param index the cell
+     * @return true if the cell is empty
+     * @throws IndexOutOfBoundsException if there's no such cell
+     */
+    public boolean isEmpty(int index) {
+        return get(index) == EMPTY;
+    }
+    
+    /**
+     * Copies the values of cells [from..to) into dst starting at dstOffset. Empty cells come out
+     * as 0.
+     * 
+     * @param from the first cell
+     * @param to the cell after the last one
+     * @param dst where to put the values
+     * @param dstOffset where to put the first value
+     */
+    public void get(int from, int to, int[] dst, int dstOffset) {
+        BulkConverter.checkRange(size, from, to);
+        BulkConverter.checkRange(dst.length, dstOffset, dstOffset + (to - from));
+        final ShortBuffer cells = this.cells;
+        for (int i = from, j = dstOffset; i < to; i++, j++) {
+            dst[j] = cells.get(i);
+        }
+    }
+    
+    /**
+     * @param index the cell
+     * @return the Roman numeral for the cell, or null if it's empty
+     * @throws IndexOutOfBoundsException if there's no such cell
+     */
+    public String toRoman(int index) {
+        return RomanArabicConverter.roman(get(index));
+    }
+    
+    /**
+     * Looks up the Roman numerals for cells [from..to), stored starting at dst[dstOffset]. Empty
+     * cells come out as null.
+     * 
+     * @param from the first cell
+     * @param to the cell after the last one
+     * @param dst where to put the numerals
+     * @param dstOffset where to put the first numeral
+     * @return the number of empty cells
+     */
+    public int toRoman(int from, int to, String[] dst, int dstOffset) {
+        BulkConverter.checkRange(size, from, to);
+        BulkConverter.checkRange(dst.length, dstOffset, dstOffset + (to - from));
+        final ShortBuffer cells = this.cells;
+        int empty = 0;
+        for (int i = from, j = dstOffset; i < to; i++, j++) {
+            final String roman = RomanArabicConverter.roman(cells.get(i));
+            if (roman == null) empty++;
+            dst[j] = roman;
+        }
+        return empty;
+    }
+    
+    /**
+     * Writes the Roman numerals for cells [from..to) as ASCII, one after another, the same way as
+     * {@link BulkConverter#toRoman(int[], int, int, byte[], int, int[], int)}. Empty cells come out
+     * as empty numerals.
+     * 
+     * @param from the first cell
+     * @param to the cell after the last one
+     * @param dst where to put the bytes
+     * @param dstOffset where to put the first byte
+     * @param offsets where to put the start of each numeral, and the end of the last one
+     * @param offsetsOffset where to put the first start
+     * @return the number of bytes written
+     * @throws IndexOutOfBoundsException if the cells, the numerals or the offsets don't fit, in
+     *         which case nothing is written
+     */
+    public int toRoman(int from, int to, byte[] dst, int dstOffset, int[] offsets, int offsetsOffset) {
+        BulkConverter.checkRange(size, from, to);
+        BulkConverter.checkRange(offsets.length, offsetsOffset, offsetsOffset + (to - from) + 1);
+        final ShortBuffer cells = this.cells;
+        // Add up the exact length first, in a long so it can't wrap
+        long end = dstOffset;
+        for (int i = from; i < to; i++) {
+            end += RomanArabicConverter.length(cells.get(i));
+        }
+        BulkConverter.checkRange(dst.length, dstOffset, end);
+        int pos = dstOffset;
+        int k = offsetsOffset;
+        for (int i = from; i < to; i++) {
+            offsets[k++] = pos;
+            final int length = RomanArabicConverter.encode(cells.get(i), dst, pos);
+            if (length > 0) pos += length;
+        }
+        offsets[k] = pos;
+        return pos - dstOffset;
+    }
+    
+    /**
+     * @return the sum of every cell, with empty ones counting as 0
+     */
+    public long sum() {
+        final ShortBuffer cells = this.cells;
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+    
+    /**
+     * Empties the column, keeping its room for cells.
+     */
+    public void clear() {
+        size = 0;
+    }
+    
+    @Override
+    public String toString() {
+        return "NumeralColumn[size=" + size + ", capacity=" + capacity() + (offHeap ? ", off heap]" : "]");
+    }
+    
+    /**
+     * @param value a value
+     * @return the cell holding it, or EMPTY if it's out of range
+     */
+    private static short cell(int value) {
+        return value >= 4000 || value <= 0 ? EMPTY : (short) value;
+    }
+    
+    /**
+     * @param index an index
+     * @throws IndexOutOfBoundsException if there's no such cell
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+    }
+    
+    /**
+     * Grows the cells, by half again at least, so they fit count.
+     * 
+     * @param count how many cells need to fit
+     */
+    private void ensureCapacity(int count) {
+        if (count < 0) throw new OutOfMemoryError("Column too large");
+        final int capacity = cells.capacity();
+        if (count <= capacity) return;
+        final int grown = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(count, capacity + (capacity >> 1) + 1L));
+        final ShortBuffer larger = allocate(offHeap, grown);
+        larger.put(cells.duplicate().position(0).limit(size));
+        cells = larger;
+    }
+    
+    /**
+     * @param offHeap whether the cells live in a direct buffer
+     * @param capacity how many cells to make room for
+     * @return zeroed cells
+     */
+    private static ShortBuffer allocate(boolean offHeap, int capacity) {
+        if (!offHeap) return ShortBuffer.wrap(new short[capacity]);
+        if (capacity > Integer.MAX_VALUE / Short.BYTES) throw new OutOfMemoryError("Column too large for a direct buffer");
+        return ByteBuffer.allocateDirect(capacity * Short.BYTES).order(ByteOrder.nativeOrder()).asShortBuffer();
+    }
+}
@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongConsumer;
+
+/**
+ * <p>
+ * Decodes numbers, one per record, from bytes that arrive a chunk at a time, such as reads from a
+ * socket, without putting a number back together when it's split between two chunks. It keeps the
+ * state a parse is in between calls: for a Roman numeral the place and count {@link RomanAutomaton}
+ * is at and the value so far, for an Arabic number the sign and the digits so far. When the
+ * delimiter that ends a record comes along, the result goes to a {@link LongConsumer} the way
+ * {@link RomanArabicConverter#tryParse(CharSequence, int, int)} would have returned it for the
+ * record on its own, error offsets counted from the start of the record.
+ * </p>
+ * <p>
+ * Records follow the same rules as the {@link RomanArabicConverter} constructor, and bytes are
+ * read as ISO-8859-1 characters, like everywhere else bytes are parsed. Trailing spaces can't be
+ * told apart from spaces in the middle until what comes after them arrives, so a decoder
+ * remembers where the first of them was, and that's where an error is reported if more of the
+ * number follows, the same as tryParse.
+ * </p>
+ * <p>
+ * A decoder allocates nothing as it goes, and {@link #reset()} makes it as good as new, so one per
+ * connection can decode any amount of input. It isn't thread-safe.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class NumeralDecoder
+{
+    /** What's been seen of the record so far */
+    private static final int NOTHING = 0, ROMAN = 1, ARABIC = 2, FAILED = 3;
+    
+    private final byte delimiter;
+    
+    private int mode;
+    /** How many bytes of the record have been seen */
+    private int length;
+    /** Offset of the first byte that isn't a space */
+    private int start;
+    /** Offset of the first space after the number, -1 if there isn't one, and what it was */
+    private int spaceAt;
+    private byte space;
+    /** The automaton's state, or whether there's a minus sign and whether any digits have come */
+    private int state;
+    private boolean negative;
+    private boolean digits;
+    /** The value so far; negative for Arabic numbers, so Integer.MIN_VALUE fits */
+    private int value;
+    /** Why the record was rejected, and the character at its offset */
+    private long failure;
+    private char offending;
+    
+    private long records;
+    private long position;
+    
+    /**
+     * Constructor for records ending in '\n'. A '\r' before it is trimmed like any other space.
+     */
+    public NumeralDecoder() {
+        this((byte) '\n');
+    }
+    
+    /**
+     * @param delimiter the byte that ends a record
+     */
+    public NumeralDecoder(byte delimiter) {
+        this.delimiter = delimiter;
+        reset();
+    }
+    
+    /**
+     * Reads everything from the position to the limit of chunk, and passes sink the result for
+     * every record that ends in it. The position ends up at the limit.
+     * 
+     * @param chunk the next bytes
+     * @param sink what to do with each result, which {@link RomanArabicConverter#isValid(long)} and
+     *        {@link NumeralError#of(long)} can read; {@link #records()} is the record's index
+     *        while it runs
+     */
+    public void feed(ByteBuffer chunk, LongConsumer sink) {
+        final int limit = chunk.limit();
+        for (int i = chunk.position(); i < limit; i++) {
+            final byte b = chunk.get(i);
+            if (b == delimiter) {
+                sink.accept(result());
+                records++;
+                clear();
+            } else {
+                accept(b);
+            }
+        }
+        position += limit - chunk.position();
+        chunk.position(limit);
+    }
+    
+    /**
+     * Ends the input. If a record had started since the last delimiter, sink gets its result.
+     * Either way, the next byte fed starts a new record.
+     * 
+     * @param sink what to do with the last result
+     * @return true if there was a record to end
+     */
+    public boolean finish(LongConsumer sink) {
+        if (length == 0) return false;
+        sink.accept(result());
+        records++;
+        clear();
+        return true;
+    }
+    
+    /**
+     * @return while a sink runs for a failed record, the character at the failure's offset, or ' '
+     *         if it's past the end, for {@link NumeralError#message(char)}
+     */
+    public char offending() {
+        return offending;
+    }
+    
+    /**
+     * @return true if part of a record has been fed since the last delimiter
+     */
+    public boolean hasPartialRecord() {
+        return length > 0;
+    }
+    
+    /**
+     * @return how many records have ended since the decoder was created or reset
+     */
+    public long records() {
+        return records;
+    }
+    
+    /**
+     * @return how many bytes have been fed since the decoder was created or reset
+     */
+    public long position() {
+        return position;
+    }
+    
+    /**
+     * Forgets any partial record and the counts, for a new stream.
+     */
+    public void reset() {
+        clear();
+        records = 0;
+        position = 0;
+    }
+    
+    /**
+     * Gets ready for the next record.
+     */
+    private void clear() {
+        mode = NOTHING;
+        length = 0;
+        start = 0;
+        spaceAt = -1;
+        state = RomanAutomaton.START;
+        negative = false;
+        digits = false;
+        value = 0;
+        failure = 0;
+        offending = ' ';
+    }
+    
+    /**
+     * Takes one byte of a record.
+     * @param b the byte, which isn't the delimiter
+     */
+    private void accept(byte b) {
+        final int offset = length++;
+        if (mode == FAILED) return;
+        final char c = (char) (b & 0xFF);
+        if (c <= ' ') {
+            // Leading spaces are skipped; the first one after the number is kept in case more follows
+            if (mode != NOTHING && spaceAt < 0) {
+                spaceAt = offset;
+                space = b;
+            }
+            return;
+        }
+        if (spaceAt >= 0) {
+            // The space wasn't trailing after all, and it's where tryParse would stop
+            step((char) (space & 0xFF), spaceAt);
+            if (mode == FAILED) offending = (char) (space & 0xFF);
+            return;
+        }
+        if (mode == NOTHING) {
+            // Same test as tryParse: a Roman numeral has to start with one of its letters
+            start = offset;
+            mode = c == '-' || c == '+' || (c >= '0' && c <= '9') ? ARABIC : ROMAN;
+            if (c == '-' || c == '+') {
+                negative = c == '-';
+                return;
+            }
+        }
+        step(c, offset);
+        if (mode == FAILED) offending = c;
+    }
+    
+    /**
+     * Moves the parse on by one character of the number.
+     * @param c the character
+     * @param offset where it is in the record
+     */
+    private void step(char c, int offset) {
+        if (mode == ROMAN) {
+            final int transition = RomanAutomaton.step(state, RomanAutomaton.classOf(c));
+            if (transition < 0) {
+                fail(RomanAutomaton.errorOf(transition).at(offset));
+            } else {
+                value += RomanAutomaton.valueOf(transition);
+                state = RomanAutomaton.stateOf(transition);
+            }
+            return;
+        }
+        
+        // Accumulate negatively, like Integer.parseInt and tryParse
+        final int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        final int digit = c >= '0' && c <= '9' ? c - '0' : -1;
+        if (digit < 0 || value < limit / 10 || value * 10 < limit + digit) {
+            fail(NumeralError.NOT_A_NUMBER.at(offset));
+            return;
+        }
+        value = value * 10 - digit;
+        digits = true;
+    }
+    
+    /**
+     * Rejects the record; the rest of it is skipped.
+     * @param result the failure
+     */
+    private void fail(long result) {
+        mode = FAILED;
+        failure = result;
+    }
+    
+    /**
+     * @return the result of the record that just ended
+     */
+    private long result() {
+        switch (mode) {
+        case NOTHING:
+            return NumeralError.EMPTY.at(length);
+        case ROMAN:
+            return value;
+        case ARABIC:
+            if (!digits) {
+                offending = negative ? '-' : '+';
+                return NumeralError.NOT_A_NUMBER.at(start);
+            }
+            return negative ? value : -value;
+        default:
+            return failure;
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "NumeralDecoder[records=" + records + ", position=" + position + (length > 0 ? ", partial record]" : "]");
+    }
+}
@@ -0,0 +1,335 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+
+/**
+ * <p>
+ * The numeral tables in a file that every JVM on a host can map instead of building its own.
+ * {@link #write(Path)} lays out the 3999 canonical numerals as ASCII with a table of where each
+ * one starts, and after them {@link PerfectHashDecoder}'s tables, which map a numeral back to its
+ * value. {@link #map(Path)} maps the file read-only and checks its header, and that is all the
+ * setting up there is: nothing is built, nothing is copied onto the heap, and every process
+ * reads the same pages out of the page cache.
+ * </p>
+ * <p>
+ * The layout, all little-endian:
+ * </p>
+ * <ul>
+ * <li>a header of four ints: {@link #MAGIC}, {@link #VERSION}, and the number of slot and bucket
+ * bits of the hash</li>
+ * <li>4001 ints: where the numeral for each value starts in the ASCII, with the end of the last
+ * one at the end</li>
+ * <li>2048 shorts: the displacement of each bucket</li>
+ * <li>padding up to a multiple of 8, then 8192 longs: the packed numeral in each slot</li>
+ * <li>8192 shorts: the value of the numeral in each slot</li>
+ * <li>the numerals as ASCII, one after another</li>
+ * </ul>
+ * <p>
+ * A dictionary gives the same answers as {@link RomanArabicConverter}, and is safe to use from
+ * any number of threads. Input that isn't a canonical Roman numeral is handed to the regular
+ * parser, which builds the converter's own tables the first time it's needed.
+ * </p>
+ * <p>
+ * Reads from a mapped buffer are checked in ways reads from an array aren't, so encoding out of a
+ * dictionary costs a few times what it does out of the converter's table, about 16 ns against 4.
+ * Decoding costs the same as {@link PerfectHashDecoder}. What a dictionary saves is the startup
+ * and the heap, which matter more the more JVMs a host runs.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class NumeralDictionary implements NumeralParser
+{
+    /** The first four bytes of a dictionary, "RNUM" */
+    public static final int MAGIC = 0x4D554E52;
+    /** The layout described above */
+    public static final int VERSION = 1;
+    
+    private static final int VALUES = 4000;
+    private static final int OFFSETS_AT = 4 * Integer.BYTES;
+    private static final int DISPLACEMENTS_AT = OFFSETS_AT + (VALUES + 1) * Integer.BYTES;
+    private static final int KEYS_AT = (DISPLACEMENTS_AT + (1 << PerfectHashDecoder.BUCKET_BITS) * Short.BYTES + 7) & ~7;
+    private static final int SLOT_VALUES_AT = KEYS_AT + (1 << PerfectHashDecoder.SLOT_BITS) * Long.BYTES;
+    private static final int ASCII_AT = SLOT_VALUES_AT + (1 << PerfectHashDecoder.SLOT_BITS) * Short.BYTES;
+    
+    /** The whole file, read with absolute gets only so threads can share it */
+    private final ByteBuffer table;
+    
+    /**
+     * @param table the whole file, already checked
+     */
+    private NumeralDictionary(ByteBuffer table) {
+        this.table = table;
+    }
+    
+    /**
+     * Writes a dictionary. It's written to a temporary file next to file first and then moved into
+     * place, so a process mapping file at the same time sees either the old one or the new one,
+     * never half of one.
+     * 
+     * @param file where to write it
+     * @throws IOException if it can't be written
+     */
+    public static void write(Path file) throws IOException {
+        final Path dir = file.toAbsolutePath().getParent();
+        final Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                final ByteBuffer contents = contents();
+                while (contents.hasRemaining()) {
+                    channel.write(contents);
+                }
+                channel.force(false);
+            }
+            try {
+                // Temporary files are private to their owner, and every process needs to read this one
+                Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-r--r--"));
+            } catch (UnsupportedOperationException e) {
+                // Not a POSIX file system, so it has the directory's permissions anyway
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    /**
+     * Maps a dictionary written by {@link #write(Path)}.
+     * 
+     * @param file the dictionary
+     * @return the mapped dictionary
+     * @throws IOException if it can't be read or isn't a dictionary
+     */
+    public static NumeralDictionary map(Path file) throws IOException {
+        final MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < ASCII_AT || channel.size() > ASCII_AT + VALUES * RomanArabicConverter.MAX_ROMAN_LENGTH) {
+                throw new IOException(file + " is not a numeral dictionary");
+            }
+            // The mapping stays valid after the channel is closed
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        final ByteBuffer table = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        check(file, table);
+        return new NumeralDictionary(table);
+    }
+    
+    /**
+     * Maps a dictionary, writing it first if there isn't one yet.
+     * 
+     * @param file the dictionary
+     * @return the mapped dictionary
+     * @throws IOException if it can't be written or read, or file isn't a dictionary
+     */
+    public static NumeralDictionary open(Path file) throws IOException {
+        try {
+            return map(file);
+        } catch (NoSuchFileException e) {
+            write(file);
+            return map(file);
+        }
+    }
+    
+    /**
+     * Makes sure a mapped file is a dictionary this class can read, so no lookup can go out of
+     * bounds or come back with a numeral that's too long.
+     * 
+     * @param file the file, for the message
+     * @param table its contents
+     * @throws IOException if it isn't a dictionary
+     */
+    private static void check(Path file, ByteBuffer table) throws IOException {
+        if (table.getInt(0) != MAGIC) throw new IOException(file + " is not a numeral dictionary");
+        if (table.getInt(4) != VERSION || table.getInt(8) != PerfectHashDecoder.SLOT_BITS || table.getInt(12) != PerfectHashDecoder.BUCKET_BITS) {
+            throw new IOException(file + " is a numeral dictionary of an unsupported version");
+        }
+        int previous = 0;
+        for (int value = 1; value <= VALUES; value++) {
+            final int offset = table.getInt(OFFSETS_AT + value * Integer.BYTES);
+            if (offset < previous || offset - previous > RomanArabicConverter.MAX_ROMAN_LENGTH) {
+                throw new IOException(file + " is a corrupt numeral dictionary");
+            }
+            previous = offset;
+        }
+        if (table.getInt(OFFSETS_AT) != 0 || ASCII_AT + previous != table.capacity()) {
+            throw new IOException(file + " is a corrupt numeral dictionary");
+        }
+    }
+    
+    /**
+     * @return the contents of a dictionary, built from the converter's tables
+     */
+    private static ByteBuffer contents() {
+        final ByteBuffer ascii = ByteBuffer.allocate(VALUES * RomanArabicConverter.MAX_ROMAN_LENGTH);
+        final ByteBuffer contents = ByteBuffer.allocate(ASCII_AT + ascii.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+        contents.putInt(MAGIC).putInt(VERSION).putInt(PerfectHashDecoder.SLOT_BITS).putInt(PerfectHashDecoder.BUCKET_BITS);
+        // Value 0 has no numeral, so it's empty
+        contents.putInt(OFFSETS_AT, 0);
+        for (int value = 1; value < VALUES; value++) {
+            contents.putInt(OFFSETS_AT + value * Integer.BYTES, ascii.position());
+            RomanArabicConverter.copy(value, ascii);
+        }
+        contents.putInt(OFFSETS_AT + VALUES * Integer.BYTES, ascii.position());
+        for (int bucket = 0; bucket < PerfectHashDecoder.DISPLACEMENTS.length; bucket++) {
+            contents.putShort(DISPLACEMENTS_AT + bucket * Short.BYTES, PerfectHashDecoder.DISPLACEMENTS[bucket]);
+        }
+        for (int slot = 0; slot < PerfectHashDecoder.KEYS.length; slot++) {
+            contents.putLong(KEYS_AT + slot * Long.BYTES, PerfectHashDecoder.KEYS[slot]);
+            contents.putShort(SLOT_VALUES_AT + slot * Short.BYTES, PerfectHashDecoder.VALUES[slot]);
+        }
+        contents.put(ASCII_AT, ascii.flip(), 0, ascii.limit());
+        return contents.limit(ASCII_AT + ascii.limit()).position(0);
+    }
+    
+    /**
+     * @return the size of the file, all of which is mapped
+     */
+    public int sizeInBytes() {
+        return table.capacity();
+    }
+    
+    /**
+     * Same as {@link RomanArabicConverter#encode(int, byte[], int)}, out of the mapped table.
+     * 
+     * @param value the value to write
+     * @param dst where to write it
+     * @param offset where to write the first byte
+     * @return the number of bytes written, or -1 if value is out of range, in which case nothing is written
+     * @throws IndexOutOfBoundsException if the numeral doesn't fit in dst
+     */
+    public int encode(int value, byte[] dst, int offset) {
+        final long start = ConverterMetrics.ENABLED ? System.nanoTime() : 0L;
+        int length = -1;
+        if (value < VALUES && value > 0) {
+            final int from = table.getInt(OFFSETS_AT + value * Integer.BYTES);
+            length = table.getInt(OFFSETS_AT + (value + 1) * Integer.BYTES) - from;
+            table.get(ASCII_AT + from, dst, offset, length);
+        }
+        if (ConverterMetrics.ENABLED) ConverterMetrics.formatted(length >= 0, start);
+        return length;
+    }
+    
+    /**
+     * Same as {@link RomanArabicConverter#encode(int, ByteBuffer)}, out of the mapped table.
+     * 
+     * @param value the value to write
+     * @param dst where to write it
+     * @return the number of bytes written, or -1 if value is out of range, in which case nothing is written
+     * @throws BufferOverflowException if the numeral doesn't fit in dst
+     */
+    public int encode(int value, ByteBuffer dst) {
+        final long start = ConverterMetrics.ENABLED ? System.nanoTime() : 0L;
+        int length = -1;
+        if (value < VALUES && value > 0) {
+            final int from = table.getInt(OFFSETS_AT + value * Integer.BYTES);
+            length = table.getInt(OFFSETS_AT + (value + 1) * Integer.BYTES) - from;
+            if (dst.remaining() < length) throw new BufferOverflowException();
+            dst.put(dst.position(), table, ASCII_AT + from, length);
+            dst.position(dst.position() + length);
+        }
+        if (ConverterMetrics.ENABLED) ConverterMetrics.formatted(length >= 0, start);
+        return length;
+    }
+    
+    /**
+     * Looks up the Roman numeral for a value. Unlike the converter, which hands out shared
+     * strings, this creates one per call; {@link #encode(int, byte[], int)} doesn't.
+     * 
+     * @param value the value
+     * @return the numeral for it, or null if it's out of range
+     */
+    public String toRoman(int value) {
+        final byte[] numeral = new byte[RomanArabicConverter.MAX_ROMAN_LENGTH];
+        final int length = encode(value, numeral, 0);
+        return length < 0 ? null : new String(numeral, 0, length, StandardCharsets.US_ASCII);
+    }
+    
+    /**
+     * Same as {@link PerfectHashDecoder#decodeCanonical(CharSequence, int, int)}, out of the mapped
+     * table.
+     * 
+     * @param value the characters holding the numeral
+     * @param from index of the first character of the numeral
+     * @param to index after the last character of the numeral
+     * @return the value of the numeral, or -1 if it isn't one that toRoman() would produce
+     * @throws IndexOutOfBoundsException if the range is not within value
+     */
+    public int decodeCanonical(CharSequence value, int from, int to) {
+        if (from < 0 || from > to || to > value.length()) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + value.length());
+        }
+        while (from < to && value.charAt(from) <= ' ') from++;
+        while (to > from && value.charAt(to - 1) <= ' ') to--;
+        final long key = PerfectHashDecoder.Hash.pack(value, from, to);
+        if (key == 0) return -1;
+        final int displacement = table.getShort(DISPLACEMENTS_AT + PerfectHashDecoder.Hash.bucket(key) * Short.BYTES);
+        final int slot = PerfectHashDecoder.Hash.slot(key, displacement);
+        return table.getLong(KEYS_AT + slot * Long.BYTES) == key ? table.getShort(SLOT_VALUES_AT + slot * Short.BYTES) : -1;
+    }
+    
+    /**
+     * Same as {@link PerfectHashDecoder#tryParse(CharSequence, int, int)}, out of the mapped table.
+     * 
+     * @param value the characters holding the number
+     * @param from index of the first character of the number
+     * @param to index after the last character of the number
+     * @return the integer value of the number if {@link RomanArabicConverter#isValid(long)} says so,
+     *         otherwise a failure that {@link NumeralError#of(long)} can read
+     * @throws IndexOutOfBoundsException if the range is not within value
+     */
+    @Override
+    public long tryParse(CharSequence value, int from, int to) {
+        final long start = ConverterMetrics.ENABLED ? System.nanoTime() : 0L;
+        final int canonical = decodeCanonical(value, from, to);
+        if (canonical <= 0) return RomanArabicConverter.tryParse(value, from, to);
+        if (ConverterMetrics.ENABLED) ConverterMetrics.parsed(value, from, to, canonical, start);
+        return canonical;
+    }
+    
+    @Override
+    public String toString() {
+        return "NumeralDictionary[" + sizeInBytes() + " bytes]";
+    }
+    
+    /**
+     * Writes a dictionary, for setting up a host before the JVMs on it start.
+     * 
+     * @param args the file to write
+     * @throws IOException if it can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java tdd.NumeralDictionary <file>");
+            System.exit(2);
+        }
+        final Path file = Paths.get(args[0]);
+        write(file);
+        System.out.println("Wrote " + Files.size(file) + " bytes to " + file);
+    }
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+/**
+ * <p>
+ * The reasons a number can fail to convert. These are the same conditions that
+ * {@link MalformedNumberException} and {@link ValueOutOfBoundsException} are thrown for, but they can
+ * be reported without building an exception.
+ * </p>
+ * <p>
+ * {@link RomanArabicConverter#tryParse(CharSequence, int, int)} packs a failure into the long it
+ * returns along with the offset of the character that caused it. {@link #of(long)} and
+ * {@link #offsetOf(long)} take that apart again.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public enum NumeralError
+{
+    /** Nothing but spaces */
+    EMPTY {
+        @Override
+        public String message(char offending) {
+            return "Value must not be empty!";
+        }
+    },
+    /** Doesn't start like an Arabic number or a Roman numeral, or an Arabic number that doesn't fit in an int */
+    NOT_A_NUMBER {
+        @Override
+        public String message(char offending) {
+            return "Given input was neither an Arabic Numeral nor a Roman Numeral!";
+        }
+    },
+    /** A character that doesn't belong in the place it showed up in */
+    UNEXPECTED_CHARACTER {
+        @Override
+        public String message(char offending) {
+            return "Unexpected character '" + offending + "'!";
+        }
+    },
+    /** Four of the same unit in a row, like IIII or VIIII */
+    TOO_MANY_REPEATS {
+        @Override
+        public String message(char offending) {
+            return "Too many '" + offending + "'s in a row!";
+        }
+    },
+    /** A half or next unit with the wrong thing in front of it, like IIV or VX */
+    BAD_SUBTRACTIVE_PAIR {
+        @Override
+        public String message(char offending) {
+            return "Invalid characters before '" + offending + "'!";
+        }
+    },
+    /** A value that can't be written as a Roman numeral */
+    OUT_OF_RANGE {
+        @Override
+        public String message(char offending) {
+            return "Roman numerals must be between 1 and 3999, inclusive";
+        }
+    };
+    
+    /** Cached so of() doesn't copy values() every time */
+    private static final NumeralError[] ERRORS = values();
+    
+    /**
+     * @param offending the character at the offset of the failure
+     * @return the same message the exceptions would have been thrown with
+     */
+    public abstract String message(char offending);
+    
+    /**
+     * @param result a result returned by tryParse
+     * @return the reason it failed, or null if it didn't
+     */
+    public static NumeralError of(long result) {
+        return RomanArabicConverter.isValid(result) ? null : ERRORS[(int) (result >>> 32) & 0xFF];
+    }
+    
+    /**
+     * @param result a failed result returned by tryParse
+     * @return the index of the character that caused it
+     */
+    public static int offsetOf(long result) {
+        return (int) result;
+    }
+    
+    /**
+     * Packs a failure into a long that can never be mistaken for an int value.
+     * @param offset index of the character that caused it
+     * @return the failure
+     */
+    long at(int offset) {
+        return Long.MIN_VALUE | ((long) ordinal() << 32) | (offset & 0xFFFFFFFFL);
+    }
+}
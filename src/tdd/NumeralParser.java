@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+package tdd;
+
+/**
+ * A way of reading numbers with the same rules as the {@link RomanArabicConverter} constructor,
+ * reporting the result the way {@link RomanArabicConverter#tryParse(CharSequence, int, int)} does.
+ * Every implementation must accept and reject exactly the same inputs; they only differ in how
+ * fast they are on different kinds of input.
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public interface NumeralParser
+{
+    /** The automaton behind RomanArabicConverter, good at anything */
+    NumeralParser STANDARD = RomanArabicConverter::tryParse;
+    
+    /** Canonical Roman numerals are looked up in a perfect hash table first */
+    NumeralParser PERFECT_HASH = PerfectHashDecoder::tryParse;
+    
+    /**
+     * @param value the characters holding the number
+     * @param from index of the first character of the number
+     * @param to index after the last character of the number
+     * @return the integer value of the number if {@link RomanArabicConverter#isValid(long)} says so,
+     *         otherwise a failure that {@link NumeralError#of(long)} can read
+     */
+    long tryParse(CharSequence value, int from, int to);
+}
@@ -0,0 +1,367 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * <p>
+ * Orders Roman and Arabic numbers by value, following the same rules as the
+ * {@link RomanArabicConverter} constructor. Text that isn't a valid number sorts after every
+ * number, in String order, so the order is total and consistent with {@link #compare}.
+ * </p>
+ * <p>
+ * {@link #BY_VALUE} parses both sides of every comparison in place, which is fine for a few
+ * comparisons but wasteful for a sort, which makes O(n log n) of them. The sorts here parse each
+ * element once instead, into a packed long holding its value (less the smallest one) in the top
+ * half and its index in the bottom half, and sort those with a stable LSD radix sort, as few
+ * passes as the values need, up to 16 bits a pass. Numbers between 1 and 3999 span 12 bits, so for
+ * them it's a single counting sort. The elements are then moved into place, so the sort is
+ * stable: elements of the same value keep their order.
+ * </p>
+ * <p>
+ * {@link #parallelSort} does the parsing, counting, scattering and moving in chunks on the common
+ * {@link ForkJoinPool}, each chunk with its own counts so the result is the same.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class NumeralSorter
+{
+    /** Compares numbers by value, without allocating, with the same order as the sorts */
+    public static final Comparator<CharSequence> BY_VALUE = NumeralSorter::compare;
+    
+    /** Number of elements below which parallelSort doesn't split */
+    public static final int PARALLEL_THRESHOLD = 1 << 14;
+    
+    /** Most bits sorted in one pass, which makes 65536 counts per chunk */
+    private static final int MAX_DIGIT_BITS = 16;
+    
+    private NumeralSorter() {
+        // Only static methods
+    }
+    
+    /**
+     * Compares two numbers by value. Text that isn't a valid number comes after every number, and
+     * is compared with the rest of the invalid text character by character.
+     * 
+     * @param a the first number
+     * @param b the second number
+     * @return a negative number, zero or a positive number as a is less than, equal to or greater than b
+     */
+    public static int compare(CharSequence a, CharSequence b) {
+        final long x = RomanArabicConverter.tryParse(a, 0, a.length());
+        final long y = RomanArabicConverter.tryParse(b, 0, b.length());
+        final boolean validX = RomanArabicConverter.isValid(x);
+        final boolean validY = RomanArabicConverter.isValid(y);
+        if (validX && validY) return Integer.compare((int) x, (int) y);
+        if (validX != validY) return validX ? -1 : 1;
+        return CharSequence.compare(a, b);
+    }
+    
+    /**
+     * Sorts numbers by value.
+     * 
+     * @param <T> the type of the numbers
+     * @param numbers the numbers
+     */
+    public static <T extends CharSequence> void sort(T[] numbers) {
+        sort(numbers, 0, numbers.length);
+    }
+    
+    /**
+     * Sorts numbers[from..to) by value.
+     * 
+     * @param <T> the type of the numbers
+     * @param numbers the numbers
+     * @param from index of the first number
+     * @param to index after the last number
+     */
+    public static <T extends CharSequence> void sort(T[] numbers, int from, int to) {
+        BulkConverter.checkRange(numbers.length, from, to);
+        new Sort<>(numbers, from, to, null, 1).run();
+    }
+    
+    /**
+     * Sorts numbers by value, in parallel if there are enough of them.
+     * 
+     * @param <T> the type of the numbers
+     * @param numbers the numbers
+     */
+    public static <T extends CharSequence> void parallelSort(T[] numbers) {
+        parallelSort(numbers, 0, numbers.length);
+    }
+    
+    /**
+     * Sorts numbers[from..to) by value, in parallel if there are more than
+     * {@link #PARALLEL_THRESHOLD} of them. The result is the same as sort()'s.
+     * 
+     * @param <T> the type of the numbers
+     * @param numbers the numbers
+     * @param from index of the first number
+     * @param to index after the last number
+     */
+    public static <T extends CharSequence> void parallelSort(T[] numbers, int from, int to) {
+        BulkConverter.checkRange(numbers.length, from, to);
+        final ForkJoinPool pool = ForkJoinPool.commonPool();
+        final int chunks = Math.max(1, Math.min((to - from) / PARALLEL_THRESHOLD, 4 * pool.getParallelism()));
+        new Sort<>(numbers, from, to, chunks > 1 ? pool : null, chunks).run();
+    }
+    
+    /**
+     * Removes numbers of the same value from sorted numbers[from..to), keeping the first of each,
+     * and moves the rest down so they're numbers[from..end). Invalid text is only removed if it's
+     * the same text. What's left past the end is set to null.
+     * 
+     * @param numbers numbers sorted by value
+     * @param from index of the first number
+     * @param to index after the last number
+     * @return the end of the numbers that are left
+     */
+    public static int distinct(CharSequence[] numbers, int from, int to) {
+        BulkConverter.checkRange(numbers.length, from, to);
+        if (from == to) return to;
+        int end = from + 1;
+        long previous = RomanArabicConverter.tryParse(numbers[from], 0, numbers[from].length());
+        for (int i = from + 1; i < to; i++) {
+            final CharSequence number = numbers[i];
+            final long result = RomanArabicConverter.tryParse(number, 0, number.length());
+            final boolean same = RomanArabicConverter.isValid(result)
+                    ? RomanArabicConverter.isValid(previous) && (int) result == (int) previous
+                    : !RomanArabicConverter.isValid(previous) && CharSequence.compare(number, numbers[end - 1]) == 0;
+            if (!same) numbers[end++] = number;
+            previous = result;
+        }
+        Arrays.fill(numbers, end, to, null);
+        return end;
+    }
+    
+    /**
+     * One sort, split into chunks that each go through a slice of the elements.
+     * 
+     * @param <T> the type of the numbers
+     */
+    private static final class Sort<T extends CharSequence>
+    {
+        private final T[] numbers;
+        private final int from;
+        private final int size;
+        /** Where chunks run, or null to run them one after another on this thread */
+        private final ForkJoinPool pool;
+        private final int chunks;
+        
+        /** The value of each element, with the sign bit flipped so they compare unsigned */
+        private final int[] keys;
+        /** Which elements aren't valid numbers */
+        private final boolean[] rejected;
+        /** The smallest and largest key of each chunk, unsigned, and how many invalid elements it has */
+        private final long[] minKeys;
+        private final long[] maxKeys;
+        private final int[] invalid;
+        
+        Sort(T[] numbers, int from, int to, ForkJoinPool pool, int chunks) {
+            this.numbers = numbers;
+            this.from = from;
+            this.size = to - from;
+            this.pool = pool;
+            this.chunks = chunks;
+            this.keys = new int[size];
+            this.rejected = new boolean[size];
+            this.minKeys = new long[chunks];
+            this.maxKeys = new long[chunks];
+            this.invalid = new int[chunks];
+        }
+        
+        /**
+         * @param chunk a chunk
+         * @return index of its first element, counted from from
+         */
+        private int start(int chunk) {
+            return (int) ((long) size * chunk / chunks);
+        }
+        
+        /**
+         * Runs body for every chunk, in parallel if there's a pool.
+         * @param body what to do with a chunk
+         */
+        private void forEachChunk(IntConsumer body) {
+            if (pool == null) {
+                for (int c = 0; c < chunks; c++) body.accept(c);
+            } else {
+                pool.invoke(new Chunks(0, chunks, body));
+            }
+        }
+        
+        void run() {
+            if (size < 2) return;
+            
+            // Parse everything once
+            forEachChunk(c -> {
+                long min = 0xFFFFFFFFL;
+                long max = 0;
+                int bad = 0;
+                for (int i = start(c), end = start(c + 1); i < end; i++) {
+                    final T number = numbers[from + i];
+                    final long result = RomanArabicConverter.tryParse(number, 0, number.length());
+                    if (!RomanArabicConverter.isValid(result)) {
+                        rejected[i] = true;
+                        bad++;
+                        continue;
+                    }
+                    final int key = (int) result ^ Integer.MIN_VALUE;
+                    keys[i] = key;
+                    min = Math.min(min, key & 0xFFFFFFFFL);
+                    max = Math.max(max, key & 0xFFFFFFFFL);
+                }
+                minKeys[c] = min;
+                maxKeys[c] = max;
+                invalid[c] = bad;
+            });
+            long min = 0xFFFFFFFFL;
+            long max = 0;
+            final int[] validStarts = new int[chunks + 1];
+            final int[] invalidStarts = new int[chunks + 1];
+            for (int c = 0; c < chunks; c++) {
+                final int bad = invalid[c];
+                if (bad < start(c + 1) - start(c)) {
+                    min = Math.min(min, minKeys[c]);
+                    max = Math.max(max, maxKeys[c]);
+                }
+                validStarts[c + 1] = validStarts[c] + (start(c + 1) - start(c) - bad);
+                invalidStarts[c + 1] = invalidStarts[c] + bad;
+            }
+            final int valid = validStarts[chunks];
+            
+            // Pack the valid ones in order, and gather the invalid ones
+            final long base = min;
+            final long[] packed = new long[valid];
+            final Object[] rejects = new Object[invalidStarts[chunks]];
+            forEachChunk(c -> {
+                int v = validStarts[c];
+                int r = invalidStarts[c];
+                for (int i = start(c), end = start(c + 1); i < end; i++) {
+                    if (rejected[i]) {
+                        rejects[r++] = numbers[from + i];
+                    } else {
+                        packed[v++] = ((keys[i] & 0xFFFFFFFFL) - base) << 32 | i;
+                    }
+                }
+            });
+            
+            final long[] sorted = valid > 1 ? radixSort(packed, max - min) : packed;
+            Arrays.sort(rejects, 0, rejects.length, (a, b) -> CharSequence.compare((CharSequence) a, (CharSequence) b));
+            
+            // Move the elements into place
+            final Object[] original = Arrays.copyOfRange(numbers, from, from + size, Object[].class);
+            forEachChunk(c -> {
+                for (int k = (int) ((long) valid * c / chunks), end = (int) ((long) valid * (c + 1) / chunks); k < end; k++) {
+                    numbers[from + k] = cast(original[(int) sorted[k]]);
+                }
+            });
+            for (int r = 0; r < rejects.length; r++) {
+                numbers[from + valid + r] = cast(rejects[r]);
+            }
+        }
+        
+        /**
+         * @param o an element taken out of numbers
+         * @return it, with its type back
+         */
+        @SuppressWarnings("unchecked")
+        private T cast(Object o) {
+            return (T) o;
+        }
+        
+        /**
+         * Sorts packed elements by their top half with as many stable counting passes as range
+         * needs.
+         * @param packed the elements, each (key - smallest key) << 32 | index
+         * @param range largest key - smallest key
+         * @return the sorted elements, in packed or in another array
+         */
+        private long[] radixSort(long[] packed, long range) {
+            final int bits = 64 - Long.numberOfLeadingZeros(range);
+            if (bits == 0) return packed;
+            final int passes = (bits + MAX_DIGIT_BITS - 1) / MAX_DIGIT_BITS;
+            final int digitBits = (bits + passes - 1) / passes;
+            final int buckets = 1 << digitBits;
+            final int mask = buckets - 1;
+            final int n = packed.length;
+            final int[][] counts = new int[chunks][buckets];
+            long[] src = packed;
+            long[] dst = new long[n];
+            for (int pass = 0; pass < passes; pass++) {
+                final int shift = 32 + pass * digitBits;
+                final long[] in = src;
+                final long[] out = dst;
+                forEachChunk(c -> {
+                    final int[] count = counts[c];
+                    Arrays.fill(count, 0);
+                    for (int k = (int) ((long) n * c / chunks), end = (int) ((long) n * (c + 1) / chunks); k < end; k++) {
+                        count[(int) (in[k] >>> shift) & mask]++;
+                    }
+                });
+                // Bucket by bucket, chunk by chunk, so equal digits keep their order
+                int offset = 0;
+                for (int b = 0; b < buckets; b++) {
+                    for (int c = 0; c < chunks; c++) {
+                        final int count = counts[c][b];
+                        counts[c][b] = offset;
+                        offset += count;
+                    }
+                }
+                forEachChunk(c -> {
+                    final int[] next = counts[c];
+                    for (int k = (int) ((long) n * c / chunks), end = (int) ((long) n * (c + 1) / chunks); k < end; k++) {
+                        out[next[(int) (in[k] >>> shift) & mask]++] = in[k];
+                    }
+                });
+                src = out;
+                dst = in;
+            }
+            return src;
+        }
+    }
+    
+    /**
+     * Runs a range of chunks, splitting it in half until there's one chunk per task.
+     */
+    @SuppressWarnings("serial")
+    private static final class Chunks extends RecursiveAction
+    {
+        private final int lo;
+        private final int hi;
+        private final IntConsumer body;
+        
+        Chunks(int lo, int hi, IntConsumer body) {
+            this.lo = lo;
+            this.hi = hi;
+            this.body = body;
+        }
+        
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                body.accept(lo);
+                return;
+            }
+            final int mid = (lo + hi) >>> 1;
+            invokeAll(new Chunks(lo, mid, body), new Chunks(mid, hi, body));
+        }
+    }
+}
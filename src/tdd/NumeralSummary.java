@@ -0,0 +1,391 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Count, sum, minimum, maximum and a histogram of a column of numbers, Roman or Arabic, worked out
+ * as they are read, like {@link java.util.IntSummaryStatistics}. Numbers are parsed in place with
+ * {@link RomanArabicConverter#tryParse(CharSequence, int, int)} and folded straight into primitive
+ * fields, so nothing is allocated per row: no String, no converter and, unless the policy is
+ * {@link MalformedPolicy#FAIL}, no exception.
+ * </p>
+ * <p>
+ * The histogram has {@link #BUCKETS} buckets of {@link #BUCKET_WIDTH} values each, covering the
+ * values a Roman numeral can have; values outside 1..3999 are counted in {@link #outOfRange()}
+ * instead. Every other figure covers every valid value.
+ * </p>
+ * <p>
+ * Summaries of separate parts of a column can be put together with {@link #combine(NumeralSummary)},
+ * so a big input can be summarized in parallel, one summary per part. A single summary is not
+ * thread-safe. Row numbers in exceptions count from the start of whatever that summary has seen.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class NumeralSummary
+{
+    /** How many values go in each histogram bucket */
+    public static final int BUCKET_WIDTH = 100;
+    /** How many histogram buckets there are: enough for 1..3999 */
+    public static final int BUCKETS = 4000 / BUCKET_WIDTH;
+    
+    /** How much of a file to map at a time */
+    private static final int WINDOW_SIZE = FileConverter.WINDOW_SIZE;
+    /** How much of a stream to read at a time */
+    private static final int READ_SIZE = 64 << 10;
+    /** The biggest a stream's buffer can grow, and so the longest line a stream can have */
+    private static final int MAX_BUFFER = Integer.MAX_VALUE - 8;
+    
+    private final MalformedPolicy policy;
+    private long rows;
+    private long count;
+    private long sum;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+    private long malformed;
+    private long outOfRange;
+    private final long[] histogram = new long[BUCKETS];
+    
+    /** Reused for every buffer read, created when first needed */
+    private AsciiSequence chars;
+    private int[] ends;
+    
+    /**
+     * @param policy what to do with rows that aren't valid numbers
+     */
+    public NumeralSummary(MalformedPolicy policy) {
+        if (policy == null) throw new NullPointerException("policy");
+        this.policy = policy;
+    }
+    
+    /**
+     * Summarizes a buffer of ASCII text holding one number per line, from its position to its
+     * limit. The last line doesn't need a newline. The position is left alone.
+     * @param lines the text
+     * @param policy what to do with rows that aren't valid numbers
+     * @return the summary
+     * @throws MalformedNumberException if a row is malformed and the policy is FAIL
+     */
+    public static NumeralSummary of(ByteBuffer lines, MalformedPolicy policy) throws MalformedNumberException {
+        final NumeralSummary summary = new NumeralSummary(policy);
+        summary.acceptLines(lines, lines.position(), lines.limit(), true);
+        return summary;
+    }
+    
+    /**
+     * Summarizes a file holding one number per line, memory-mapped a window at a time like
+     * {@link FileConverter} does.
+     * @param file the file
+     * @param policy what to do with rows that aren't valid numbers
+     * @return the summary
+     * @throws IOException if the file can't be read
+     * @throws MalformedNumberException if a row is malformed and the policy is FAIL, or a line is
+     *             too long to map whatever the policy
+     */
+    public static NumeralSummary of(Path file, MalformedPolicy policy) throws IOException, MalformedNumberException {
+        return of(file, policy, WINDOW_SIZE);
+    }
+    
+    /**
+     * Summarizes a file, mapping windowSize bytes at a time. A window grows if one line doesn't
+     * fit, up to {@link FileConverter#MAX_WINDOW}.
+     * @param file the file
+     * @param policy what to do with rows that aren't valid numbers
+     * @param windowSize how much of the file to map at a time
+     * @return the summary
+     * @throws IOException if the file can't be read
+     * @throws MalformedNumberException if a row is malformed and the policy is FAIL, or a line is
+     *             too long to map whatever the policy
+     */
+    static NumeralSummary of(Path file, MalformedPolicy policy, int windowSize) throws IOException, MalformedNumberException {
+        return of(file, policy, windowSize, FileConverter.MAX_WINDOW);
+    }
+    
+    /**
+     * Summarizes a file, with a window that grows no bigger than maxWindow.
+     * @param file the file
+     * @param policy what to do with rows that aren't valid numbers
+     * @param windowSize how much of the file to map at a time
+     * @param maxWindow the most of the file to map at a time
+     * @return the summary
+     * @throws IOException if the file can't be read
+     * @throws MalformedNumberException if a row is malformed and the policy is FAIL, or a line is
+     *             longer than maxWindow whatever the policy
+     */
+    static NumeralSummary of(Path file, MalformedPolicy policy, int windowSize, int maxWindow) throws IOException, MalformedNumberException {
+        final NumeralSummary summary = new NumeralSummary(policy);
+        try (FileChannel reader = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = reader.size();
+            long position = 0;
+            int window = windowSize;
+            while (position < size) {
+                final int length = (int) Math.min(window, size - position);
+                final boolean last = position + length == size;
+                final MappedByteBuffer mapped = reader.map(FileChannel.MapMode.READ_ONLY, position, length);
+                final int used = summary.acceptLines(mapped, 0, length, last);
+                if (used == 0 && !last) {
+                    // One line is bigger than the whole window, which can only grow so far
+                    if (window >= maxWindow) throw summary.tooLong(maxWindow);
+                    window = (int) Math.min(maxWindow, 2L * window);
+                } else {
+                    position += used;
+                    window = windowSize;
+                }
+            }
+        }
+        return summary;
+    }
+    
+    /**
+     * Summarizes a stream of ASCII text holding one number per line, read into one reusable buffer.
+     * The stream is read to its end, but not closed.
+     * @param in the stream
+     * @param policy what to do with rows that aren't valid numbers
+     * @return the summary
+     * @throws IOException if the stream can't be read
+     * @throws MalformedNumberException if a row is malformed and the policy is FAIL, or a line is
+     *             too long for an array whatever the policy
+     */
+    public static NumeralSummary of(InputStream in, MalformedPolicy policy) throws IOException, MalformedNumberException {
+        return of(in, policy, READ_SIZE, MAX_BUFFER);
+    }
+    
+    /**
+     * Summarizes a stream, with a buffer that starts at readSize bytes and grows no bigger than
+     * maxBuffer.
+     * @param in the stream
+     * @param policy what to do with rows that aren't valid numbers
+     * @param readSize how big the buffer starts out
+     * @param maxBuffer the biggest the buffer can grow
+     * @return the summary
+     * @throws IOException if the stream can't be read
+     * @throws MalformedNumberException if a row is malformed and the policy is FAIL, or a line is
+     *             longer than maxBuffer whatever the policy
+     */
+    static NumeralSummary of(InputStream in, MalformedPolicy policy, int readSize, int maxBuffer) throws IOException, MalformedNumberException {
+        final NumeralSummary summary = new NumeralSummary(policy);
+        ByteBuffer buffer = ByteBuffer.allocate(readSize);
+        int read;
+        while ((read = in.read(buffer.array(), buffer.position(), buffer.remaining())) >= 0) {
+            buffer.position(buffer.position() + read);
+            buffer.flip();
+            buffer.position(summary.acceptLines(buffer, 0, buffer.limit(), false));
+            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                // One line is bigger than the whole buffer, which can only grow so far
+                if (buffer.capacity() >= maxBuffer) throw summary.tooLong(maxBuffer);
+                buffer = ByteBuffer.allocate((int) Math.min(maxBuffer, 2L * buffer.capacity())).put(buffer.flip());
+            }
+        }
+        buffer.flip();
+        summary.acceptLines(buffer, 0, buffer.limit(), true);
+        return summary;
+    }
+    
+    /**
+     * @param max the most bytes a line could have
+     * @return the exception for the next line, which has more
+     */
+    private MalformedNumberException tooLong(int max) {
+        return new MalformedNumberException("Line " + (rows + 1) + ": Lines must not be longer than " + max + " bytes!");
+    }
+    
+    /**
+     * Adds the numbers in lines[from..to), one per line.
+     * @param lines the text
+     * @param from absolute index of the start of a line
+     * @param to absolute index after the last byte
+     * @param last true if what follows the last newline is a line of its own, false if it's the
+     *            start of a line still to come and should be left
+     * @return the index after the last line added
+     * @throws MalformedNumberException if a row is malformed and the policy is FAIL
+     */
+    private int acceptLines(ByteBuffer lines, int from, int to, boolean last) throws MalformedNumberException {
+        if (chars == null) {
+            chars = new AsciiSequence();
+            ends = new int[BulkConverter.SCAN_CHUNK];
+        }
+        chars.wrap(lines);
+        int start = from;
+        int found;
+        while ((found = RecordScanner.INSTANCE.scan(lines, start, to, ends, ends.length)) > 0) {
+            for (int e = 0; e < found; e++) {
+                final int end = ends[e];
+                if (end < 0 && policy != MalformedPolicy.FAIL) {
+                    // Can't be a number, no need to parse it
+                    rows++;
+                    reject();
+                    start = ~end + 1;
+                } else {
+                    accept(chars, start, end < 0 ? ~end : end);
+                    start = (end < 0 ? ~end : end) + 1;
+                }
+            }
+        }
+        if (last && start < to) {
+            accept(chars, start, to);
+            start = to;
+        }
+        return start;
+    }
+    
+    /**
+     * Adds a number, Roman or Arabic, as the next row.
+     * @param number the characters holding the number
+     * @param from index of the first character of the number
+     * @param to index after the last character of the number
+     * @throws MalformedNumberException if it's malformed and the policy is FAIL
+     */
+    public void accept(CharSequence number, int from, int to) throws MalformedNumberException {
+        rows++;
+        final long result = RomanArabicConverter.tryParse(number, from, to);
+        if (RomanArabicConverter.isValid(result)) {
+            accept((int) result);
+        } else if (policy == MalformedPolicy.FAIL) {
+            throw new MalformedNumberException("Line " + rows + ": " + RomanArabicConverter.malformed(number, result).getMessage());
+        } else {
+            reject();
+        }
+    }
+    
+    /**
+     * Adds a value that has already been parsed. It isn't counted as a row.
+     * @param value the value
+     */
+    public void accept(int value) {
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (value >= 4000 || value <= 0) {
+            outOfRange++;
+        } else {
+            histogram[value / BUCKET_WIDTH]++;
+        }
+    }
+    
+    /**
+     * Keeps track of a malformed row, if the policy says to.
+     */
+    private void reject() {
+        if (policy == MalformedPolicy.COUNT) malformed++;
+    }
+    
+    /**
+     * Adds everything other has seen to this summary, as if this had seen it too. Rows still count
+     * from the start of this one.
+     * @param other another summary
+     * @return this
+     */
+    public NumeralSummary combine(NumeralSummary other) {
+        rows += other.rows;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        malformed += other.malformed;
+        outOfRange += other.outOfRange;
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] += other.histogram[i];
+        }
+        return this;
+    }
+    
+    /**
+     * @return what happens to rows that aren't valid numbers
+     */
+    public MalformedPolicy policy() {
+        return policy;
+    }
+    
+    /**
+     * @return how many rows were seen, valid or not
+     */
+    public long rows() {
+        return rows;
+    }
+    
+    /**
+     * @return how many valid values were seen
+     */
+    public long count() {
+        return count;
+    }
+    
+    /**
+     * @return the sum of the valid values, or 0 if there were none
+     */
+    public long sum() {
+        return sum;
+    }
+    
+    /**
+     * @return the smallest valid value, or Integer.MAX_VALUE if there were none
+     */
+    public int min() {
+        return min;
+    }
+    
+    /**
+     * @return the largest valid value, or Integer.MIN_VALUE if there were none
+     */
+    public int max() {
+        return max;
+    }
+    
+    /**
+     * @return the average of the valid values, or 0 if there were none
+     */
+    public double average() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+    
+    /**
+     * @return how many rows were malformed, when the policy is COUNT, and 0 otherwise
+     */
+    public long malformed() {
+        return malformed;
+    }
+    
+    /**
+     * @return how many valid values couldn't be written as Roman numerals, and so aren't in the histogram
+     */
+    public long outOfRange() {
+        return outOfRange;
+    }
+    
+    /**
+     * @return a copy of the histogram, where bucket i counts the values from i * BUCKET_WIDTH to
+     *         (i + 1) * BUCKET_WIDTH - 1 (bucket 0 starts at 1)
+     */
+    public long[] histogram() {
+        return Arrays.copyOf(histogram, BUCKETS);
+    }
+    
+    @Override
+    public String toString() {
+        return "NumeralSummary{rows=" + rows + ", count=" + count + ", sum=" + sum + ", min=" + min + ", max=" + max
+                + ", average=" + average() + ", malformed=" + malformed + ", outOfRange=" + outOfRange + "}";
+    }
+}
@@ -0,0 +1,351 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <p>
+ * Does the same conversions as {@link BulkConverter} and {@link FileConverter}, but splits big
+ * inputs into chunks and converts them on a {@link ForkJoinPool}. Arrays are split anywhere, and
+ * newline-separated bytes are only split right after a newline, so every chunk holds whole lines.
+ * The output always comes back in the same order as the input.
+ * </p>
+ * <p>
+ * Inputs no bigger than the threshold are converted on the calling thread, since handing them to
+ * the pool would cost more than it saves.
+ * </p>
+ * <p>
+ * A converter made with {@link #ParallelConverter(int, int)} owns its pool, and {@link #close()}
+ * shuts it down. One given a pool, or using the common pool, leaves it alone.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class ParallelConverter implements AutoCloseable
+{
+    /** Default number of elements, or bytes, below which a chunk isn't split any further */
+    public static final int DEFAULT_THRESHOLD = 1 << 14;
+    
+    /** Where the chunks run */
+    private final ForkJoinPool pool;
+    /** Size below which chunks aren't split */
+    private final int threshold;
+    /** Whether the pool was made here, so close() shuts it down */
+    private final boolean ownsPool;
+    
+    /**
+     * Constructor that uses the common pool and the default threshold.
+     */
+    public ParallelConverter() {
+        this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+    
+    /**
+     * Constructor that uses its own pool, which {@link #close()} shuts down.
+     * @param parallelism the number of threads converting at once
+     * @param threshold number of elements, or bytes, below which a chunk isn't split any further
+     */
+    public ParallelConverter(int parallelism, int threshold) {
+        this(checkThreshold(threshold), new ForkJoinPool(parallelism), true);
+    }
+    
+    /**
+     * Constructor that uses the given pool. The caller still owns it, and has to shut it down.
+     * @param pool where to run the chunks
+     * @param threshold number of elements, or bytes, below which a chunk isn't split any further
+     */
+    public ParallelConverter(ForkJoinPool pool, int threshold) {
+        this(checkThreshold(threshold), pool, false);
+    }
+    
+    private ParallelConverter(int threshold, ForkJoinPool pool, boolean ownsPool) {
+        this.pool = pool;
+        this.threshold = threshold;
+        this.ownsPool = ownsPool;
+    }
+    
+    /**
+     * Checked before a pool is made, so a bad threshold doesn't leave one behind.
+     * @param threshold the threshold asked for
+     * @return threshold
+     */
+    private static int checkThreshold(int threshold) {
+        if (threshold < 1) throw new IllegalArgumentException("Threshold must be positive");
+        return threshold;
+    }
+    
+    /**
+     * Shuts down the pool if this converter made it, letting conversions already running finish.
+     * Conversions after that fail with {@link java.util.concurrent.RejectedExecutionException},
+     * unless they're small enough to run on the calling thread.
+     */
+    @Override
+    public void close() {
+        if (ownsPool) pool.shutdown();
+    }
+    
+    /**
+     * Same as {@link BulkConverter#toRoman(int[], int, int, String[], int)}.
+     * @param values the values to convert
+     * @param from index of the first value
+     * @param to index after the last value
+     * @param dst where to put the numerals
+     * @param dstOffset where to put the first numeral
+     * @return the number of values that were out of range
+     */
+    public int toRoman(final int[] values, int from, int to, final String[] dst, final int dstOffset) {
+        if (to - from <= threshold) return BulkConverter.toRoman(values, from, to, dst, dstOffset);
+        checkRange(values.length, from, to);
+        checkRange(dst.length, dstOffset, dstOffset + (to - from));
+        final int start = from;
+        return pool.invoke(new Split(from, to, (lo, hi) -> BulkConverter.toRoman(values, lo, hi, dst, dstOffset + (lo - start))));
+    }
+    
+    /**
+     * Same as {@link BulkConverter#toArabic(CharSequence[], int, int, int[], int, byte[], int)}.
+     * @param numbers the numbers to read
+     * @param from index of the first number
+     * @param to index after the last number
+     * @param dst where to put the values
+     * @param dstOffset where to put the first value
+     * @param status where to put the status of each number
+     * @param statusOffset where to put the first status
+     * @return the number of numbers that weren't {@link BulkConverter#OK}
+     */
+    public int toArabic(final CharSequence[] numbers, int from, int to, final int[] dst, final int dstOffset, final byte[] status, final int statusOffset) {
+        if (to - from <= threshold) return BulkConverter.toArabic(numbers, from, to, dst, dstOffset, status, statusOffset);
+        checkRange(numbers.length, from, to);
+        checkRange(dst.length, dstOffset, dstOffset + (to - from));
+        checkRange(status.length, statusOffset, statusOffset + (to - from));
+        final int start = from;
+        return pool.invoke(new Split(from, to,
+                (lo, hi) -> BulkConverter.toArabic(numbers, lo, hi, dst, dstOffset + (lo - start), status, statusOffset + (lo - start))));
+    }
+    
+    /**
+     * Converts the newline-separated numbers between the position and the limit of lines into
+     * Roman numerals, one per line. Lines follow the same rules as {@link FileConverter}.
+     * @param lines the numbers, as ASCII. Its position and limit aren't changed.
+     * @return the numerals, as ASCII
+     * @throws MalformedNumberException if a line isn't a valid Roman or Arabic number
+     * @throws ValueOutOfBoundsException if a line's value can't be written as a Roman numeral
+     */
+    public byte[] toRoman(ByteBuffer lines) throws MalformedNumberException, ValueOutOfBoundsException {
+        return convertLines(lines, true);
+    }
+    
+    /**
+     * Converts the newline-separated numbers between the position and the limit of lines into
+     * Arabic numbers, one per line. Lines follow the same rules as {@link FileConverter}.
+     * @param lines the numbers, as ASCII. Its position and limit aren't changed.
+     * @return the numbers, as ASCII
+     * @throws MalformedNumberException if a line isn't a valid Roman or Arabic number
+     */
+    public byte[] toArabic(ByteBuffer lines) throws MalformedNumberException {
+        try {
+            return convertLines(lines, false);
+        } catch (ValueOutOfBoundsException e) {
+            throw new AssertionError(e); // Arabic numbers don't have bounds
+        }
+    }
+    
+    /**
+     * Converts the lines chunk by chunk, then glues the chunks back together in order. If more than
+     * one line is bad, the first one is reported.
+     * @param lines the numbers, as ASCII
+     * @param toRoman true to write Roman numerals, false to write Arabic numbers
+     * @return the converted lines
+     * @throws MalformedNumberException if a line isn't a valid Roman or Arabic number
+     * @throws ValueOutOfBoundsException if a line's value can't be written as a Roman numeral
+     */
+    private byte[] convertLines(ByteBuffer lines, boolean toRoman) throws MalformedNumberException, ValueOutOfBoundsException {
+        final Lines root = new Lines(lines, lines.position(), lines.limit(), toRoman);
+        if (lines.remaining() <= threshold) root.compute();
+        else pool.invoke(root);
+        
+        final List<Lines> chunks = new ArrayList<>();
+        root.addChunks(chunks);
+        int size = 0;
+        long lineCount = 0;
+        for (Lines chunk : chunks) {
+            if (chunk.error != null) {
+                final String message = "Line " + (lineCount + chunk.lines) + ": " + chunk.error;
+                if (chunk.outOfRange) throw new ValueOutOfBoundsException(message);
+                throw new MalformedNumberException(message);
+            }
+            size += chunk.output.position();
+            lineCount += chunk.lines;
+        }
+        
+        final byte[] converted = new byte[size];
+        int pos = 0;
+        for (Lines chunk : chunks) {
+            final int length = chunk.output.position();
+            System.arraycopy(chunk.output.array(), 0, converted, pos, length);
+            pos += length;
+        }
+        return converted;
+    }
+    
+    /**
+     * Makes sure [from, to) fits in an array before any chunk starts on it.
+     * @param length length of the array
+     * @param from start of the range
+     * @param to end of the range
+     */
+    private static void checkRange(int length, int from, int to) {
+        if (from < 0 || from > to || to > length) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + length);
+        }
+    }
+    
+    /**
+     * Converts one chunk of an array.
+     */
+    private interface Chunk
+    {
+        /**
+         * @param from index of the first element
+         * @param to index after the last element
+         * @return how many elements failed
+         */
+        int convert(int from, int to);
+    }
+    
+    /**
+     * Splits an array range in half until it's small enough, and adds up how many elements failed.
+     */
+    @SuppressWarnings("serial")
+    private final class Split extends RecursiveTask<Integer>
+    {
+        private final int from;
+        private final int to;
+        private final Chunk chunk;
+        
+        Split(int from, int to, Chunk chunk) {
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+        
+        @Override
+        protected Integer compute() {
+            if (to - from <= threshold) return chunk.convert(from, to);
+            final int middle = (from + to) >>> 1;
+            final Split right = new Split(middle, to, chunk);
+            right.fork();
+            final int left = new Split(from, middle, chunk).compute();
+            return left + right.join();
+        }
+    }
+    
+    /**
+     * Converts a range of lines. If the range is too big, it's split right after the first newline
+     * past the middle, and the two halves are kept so the chunks can be read back in order.
+     */
+    @SuppressWarnings("serial")
+    private final class Lines extends RecursiveTask<Void>
+    {
+        private final ByteBuffer input;
+        private final int from;
+        private final int to;
+        private final boolean toRoman;
+        
+        /** First half, if this was split */
+        private Lines left;
+        /** Second half, if this was split */
+        private Lines right;
+        
+        /** The converted lines */
+        private ByteBuffer output;
+        /** Number of lines converted, or the number of the bad line if there is one */
+        private long lines;
+        /** Message for the first bad line, if there is one */
+        private String error;
+        /** Whether the bad line was out of range rather than malformed */
+        private boolean outOfRange;
+        
+        Lines(ByteBuffer input, int from, int to, boolean toRoman) {
+            this.input = input;
+            this.from = from;
+            this.to = to;
+            this.toRoman = toRoman;
+        }
+        
+        /**
+         * Adds the chunks that were actually converted, in order.
+         * @param chunks where to add them
+         */
+        void addChunks(List<Lines> chunks) {
+            if (left == null) {
+                chunks.add(this);
+            } else {
+                left.addChunks(chunks);
+                right.addChunks(chunks);
+            }
+        }
+        
+        @Override
+        protected Void compute() {
+            if (to - from > threshold) {
+                int middle = (from + to) >>> 1;
+                while (middle < to && input.get(middle) != '\n') middle++;
+                if (middle + 1 < to) {
+                    left = new Lines(input, from, middle + 1, toRoman);
+                    right = new Lines(input, middle + 1, to, toRoman);
+                    right.fork();
+                    left.compute();
+                    right.join();
+                    return null;
+                }
+            }
+            convert();
+            return null;
+        }
+        
+        /**
+         * Converts every line in the range, stopping at the first bad one.
+         */
+        private void convert() {
+            final AsciiSequence chars = new AsciiSequence().wrap(input);
+            output = ByteBuffer.allocate(2 * (to - from) + FileConverter.MAX_LINE);
+            int lineStart = from;
+            for (int i = from; i <= to; i++) {
+                if (i < to ? input.get(i) != '\n' : i == lineStart) continue;
+                lines++;
+                final long result = RomanArabicConverter.tryParse(chars, lineStart, i);
+                if (!RomanArabicConverter.isValid(result)) {
+                    error = RomanArabicConverter.malformed(chars, result).getMessage();
+                    return;
+                }
+                if (output.remaining() < FileConverter.MAX_LINE) {
+                    final ByteBuffer bigger = ByteBuffer.allocate(2 * output.capacity());
+                    output.flip();
+                    output = bigger.put(output);
+                }
+                if (!FileConverter.putLine((int) result, toRoman, output)) {
+                    error = NumeralError.OUT_OF_RANGE.message(' ');
+                    outOfRange = true;
+                    return;
+                }
+                lineStart = i + 1;
+            }
+        }
+    }
+}
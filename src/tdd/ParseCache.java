@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * A bounded cache of parse results, keyed by the exact text parsed, padding and all, for inputs
+ * that repeat a small set of spellings. Both values and errors are cached; a hit hands back
+ * exactly what {@link RomanArabicConverter#tryParse(CharSequence, int, int)} returned for that
+ * text, with the error offset moved to where the text is now, so cached and uncached results are
+ * always the same.
+ * </p>
+ * <p>
+ * The cache is set-associative, like a CPU cache: a key's hash picks a set of {@link #WAYS}
+ * entries, and when the set is full the entry to replace is picked with the CLOCK algorithm, so
+ * an entry that has been hit since the hand last passed it gets a second chance. That keeps the
+ * spellings in use and drops the ones that aren't, much like LRU, while a hit only sets a flag.
+ * Lookups take no lock at all: entries are immutable apart from that flag, and are read straight
+ * out of the table. Only a miss locks, and then only one of many stripes, so threads contend only
+ * when they insert into the same stripe at the same moment.
+ * </p>
+ * <p>
+ * Only Roman numerals are cached. Arabic numbers go straight to the parser and aren't counted,
+ * since the parser reads a digit in a nanosecond or so, and no lookup is that cheap. Text longer
+ * than {@link #MAX_KEY_LENGTH} is parsed without being cached, and counted as a miss.
+ * </p>
+ * <p>
+ * A hit costs a hash, a scan of one cache line of tags, each the hash and length of a key, and a
+ * comparison with the one key whose tag matches. A whole String is hashed with the hash it keeps
+ * for itself, becomes the key itself on a miss, and is compared with equals(), so a hit allocates
+ * nothing and usually reads only its own hash. That makes a hit on a Roman numeral a quarter to a
+ * third cheaper than parsing it again; ParseBenchmark.cachedTryParse has the numbers. It's opt-in
+ * all the same, as it only pays where a small set of spellings repeats.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class ParseCache implements NumeralParser
+{
+    /** Entries per set */
+    public static final int WAYS = 8;
+    /** Longest text that's cached; anything longer is unlikely to repeat */
+    public static final int MAX_KEY_LENGTH = 32;
+    /** Number of locks that inserts are spread over */
+    private static final int STRIPES = 64;
+    
+    /**
+     * A cached result. Everything but the flag is final, so an entry read without a lock is
+     * always complete.
+     */
+    private static final class Entry
+    {
+        final String key;
+        /** The result, with the error offset counted from the start of the key */
+        final long result;
+        /** Set by every hit, cleared by the clock hand */
+        boolean referenced;
+        
+        Entry(String key, long result) {
+            this.key = key;
+            this.result = result;
+        }
+    }
+    
+    /** The hash and length of each entry's key, side by side so a set is one cache line to scan */
+    private final long[] tags;
+    private final Entry[] entries;
+    private final int[] hands;
+    private final int setMask;
+    private final Object[] locks = new Object[STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    
+    /**
+     * @param capacity how many results to keep at most, rounded up to a power of two, and at least WAYS
+     */
+    public ParseCache(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) throw new IllegalArgumentException("Capacity out of range: " + capacity);
+        final int sets = Math.max(1, Integer.highestOneBit(Math.max(WAYS, capacity) - 1) * 2 / WAYS);
+        tags = new long[sets * WAYS];
+        entries = new Entry[sets * WAYS];
+        hands = new int[sets];
+        setMask = sets - 1;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+    
+    /**
+     * Same as {@link RomanArabicConverter#tryParse(CharSequence, int, int)}, answered from the
+     * cache when the same text has been parsed before.
+     */
+    @Override
+    public long tryParse(CharSequence value, int from, int to) {
+        if (from < 0 || from > to || to > value.length()) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + value.length());
+        }
+        if (to - from > MAX_KEY_LENGTH) {
+            misses.increment();
+            return RomanArabicConverter.tryParse(value, from, to);
+        }
+        if (isArabic(value, from, to)) return RomanArabicConverter.tryParse(value, from, to);
+        
+        // A whole String is its own key, with the hash it has already worked out and kept
+        final String whole = from == 0 && to == value.length() && value instanceof String ? (String) value : null;
+        final int hash = spread(whole != null ? whole.hashCode() : hash(value, from, to));
+        final long tag = tag(hash, to - from);
+        final int set = (hash & setMask) * WAYS;
+        for (int way = set; way < set + WAYS; way++) {
+            // The tag only rules entries out; the key in the entry is what says it's a match
+            if (tags[way] != tag) continue;
+            final Entry entry = entries[way];
+            if (entry != null && (whole != null ? entry.key.equals(whole) : matches(entry.key, value, from, to))) {
+                if (!entry.referenced) entry.referenced = true;
+                hits.increment();
+                return at(entry.result, from);
+            }
+        }
+        
+        misses.increment();
+        final long result = RomanArabicConverter.tryParse(value, from, to);
+        insert(whole != null ? whole : value.subSequence(from, to).toString(), tag, at(result, -from), set);
+        return result;
+    }
+    
+    /**
+     * Parses a number the same way as the {@link RomanArabicConverter} constructor.
+     * @param value the string representing the Roman or Arabic number
+     * @return the converter for it, shared as by {@link RomanArabicConverter#valueOf(int)}
+     * @throws MalformedNumberException if the string does not represent a valid Roman or Arabic
+     *             number, with the same message the constructor would have used
+     */
+    public RomanArabicConverter converter(String value) throws MalformedNumberException {
+        final long result = tryParse(value, 0, value.length());
+        if (!RomanArabicConverter.isValid(result)) throw RomanArabicConverter.malformed(value, result);
+        return RomanArabicConverter.valueOf((int) result);
+    }
+    
+    /**
+     * Puts a result in a set, replacing the first entry the clock hand finds that hasn't been hit
+     * since the hand last went by.
+     * @param key the text
+     * @param tag its hash and length
+     * @param result the result for it, with the offset counted from the start of the key
+     * @param set index of the first entry of the set
+     */
+    private void insert(String key, long tag, long result, int set) {
+        synchronized (locks[(set / WAYS) & (STRIPES - 1)]) {
+            int free = -1;
+            for (int way = set; way < set + WAYS; way++) {
+                final Entry entry = entries[way];
+                if (entry == null) {
+                    if (free < 0) free = way;
+                } else if (tags[way] == tag && entry.key.equals(key)) {
+                    // Another thread got here first
+                    return;
+                }
+            }
+            if (free < 0) {
+                int hand = hands[set / WAYS];
+                // One turn clears every flag; the bound only matters if hits keep setting them again
+                for (int turns = 0; turns < 2 * WAYS && entries[set + hand].referenced; turns++) {
+                    entries[set + hand].referenced = false;
+                    hand = (hand + 1) % WAYS;
+                }
+                free = set + hand;
+                hands[set / WAYS] = (hand + 1) % WAYS;
+                evictions.increment();
+            }
+            // A reader can see the tag and the entry out of step, but then the key doesn't match
+            entries[free] = new Entry(key, result);
+            tags[free] = tag;
+        }
+    }
+    
+    /**
+     * @param value the characters
+     * @param from index of the first character of the text
+     * @param to index after the last character of the text
+     * @return true if the text starts like an Arabic number once leading spaces are skipped
+     */
+    private static boolean isArabic(CharSequence value, int from, int to) {
+        int i = from;
+        while (i < to && value.charAt(i) <= ' ') i++;
+        if (i == to) return false;
+        final char c = value.charAt(i);
+        return (c >= '0' && c <= '9') || c == '-' || c == '+';
+    }
+    
+    /**
+     * @param result a result from tryParse
+     * @param shift how far to move the error offset
+     * @return the result, with the offset moved if it's an error
+     */
+    private static long at(long result, int shift) {
+        if (RomanArabicConverter.isValid(result)) return result;
+        return (result & ~0xFFFFFFFFL) | ((NumeralError.offsetOf(result) + shift) & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * @param value the characters
+     * @param from index of the first character of the text
+     * @param to index after the last character of the text
+     * @return the hash String.hashCode would give the text
+     */
+    private static int hash(CharSequence value, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+        return hash;
+    }
+    
+    /**
+     * @param hash a String hash
+     * @return the hash spread so the low bits, which pick the set, depend on all of it
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16) ^ (hash >>> 7);
+    }
+    
+    /**
+     * @param hash the key's hash
+     * @param length the key's length
+     * @return both in one long, never 0, so an empty slot's tag matches nothing
+     */
+    private static long tag(int hash, int length) {
+        return (long) hash << 32 | (length + 1);
+    }
+    
+    /**
+     * @param key the text of an entry, the same length as the text being looked up
+     * @param value the characters being looked up
+     * @param from index of the first character of the text
+     * @param to index after the last character of the text
+     * @return true if the text is the key
+     */
+    private static boolean matches(String key, CharSequence value, int from, int to) {
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != value.charAt(from + i)) return false;
+        }
+        return true;
+    }
+    
+    /**
+     * @return how many results the cache can hold
+     */
+    public int capacity() {
+        return entries.length;
+    }
+    
+    /**
+     * @return how many results the cache holds right now
+     */
+    public int size() {
+        int size = 0;
+        for (Entry entry : entries) {
+            if (entry != null) size++;
+        }
+        return size;
+    }
+    
+    /**
+     * @return how many lookups were answered from the cache
+     */
+    public long hits() {
+        return hits.sum();
+    }
+    
+    /**
+     * @return how many lookups had to parse, including text too long to cache
+     */
+    public long misses() {
+        return misses.sum();
+    }
+    
+    /**
+     * @return how many results were dropped to make room for others
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+    
+    /**
+     * @return the fraction of lookups answered from the cache, or 0 if there were none
+     */
+    public double hitRate() {
+        final long hits = hits();
+        final long total = hits + misses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+    
+    @Override
+    public String toString() {
+        return "ParseCache{capacity=" + capacity() + ", hits=" + hits() + ", misses=" + misses() + ", evictions=" + evictions() + "}";
+    }
+}
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+package tdd;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Decodes canonical Roman numerals, the 3999 that toRoman() produces, with one lookup in a
+ * perfect hash table instead of a walk over the characters.
+ * </p>
+ * <p>
+ * A numeral is at most 15 characters and there are only 7 letters, so it packs into a single long
+ * at 3 bits a letter. The keys are spread over 8192 slots with "hash and displace": each key's
+ * first hash picks one of 2048 buckets, and each bucket has a displacement, found when the class
+ * is initialized, that sends its keys to slots no other key uses. Every slot keeps its key, so a
+ * numeral that isn't canonical (IIII, IVI, XM...) never matches anything. Letters are packed by
+ * their class in {@link RomanAutomaton}, so "xiv", or XIV in Unicode letters, packs the same as
+ * XIV and is found too. The tables take
+ * 8192 longs, 8192 shorts and 2048 shorts, about 84 KB, and finding the displacements costs
+ * about as much as filling RomanArabicConverter's table.
+ * </p>
+ * <p>
+ * {@link #tryParse(CharSequence, int, int)} falls back to the regular parser for anything that
+ * isn't in the table, so it accepts and rejects exactly what {@link RomanArabicConverter} does.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class PerfectHashDecoder
+{
+    static final int SLOT_BITS = 13;
+    static final int BUCKET_BITS = 11;
+    
+    /** The canonical numeral in each slot, packed, or 0 if it's empty */
+    static final long[] KEYS = new long[1 << SLOT_BITS];
+    /** The value of the numeral in each slot */
+    static final short[] VALUES = new short[1 << SLOT_BITS];
+    /** The displacement for each bucket */
+    static final short[] DISPLACEMENTS = new short[1 << BUCKET_BITS];
+    
+    static {
+        final long[] keys = new long[4000];
+        final AsciiSequence chars = new AsciiSequence();
+        final ByteBuffer numeral = ByteBuffer.allocate(RomanArabicConverter.MAX_ROMAN_LENGTH);
+        final int[] bucketStarts = new int[(1 << BUCKET_BITS) + 1];
+        for (int value = 1; value < keys.length; value++) {
+            numeral.clear();
+            numeral.limit(RomanArabicConverter.copy(value, numeral));
+            keys[value] = Hash.pack(chars.wrap(numeral), 0, numeral.limit());
+            bucketStarts[Hash.bucket(keys[value]) + 1]++;
+        }
+        
+        // Group the values by bucket
+        for (int i = 1; i < bucketStarts.length; i++) bucketStarts[i] += bucketStarts[i - 1];
+        final int[] members = new int[keys.length - 1];
+        final int[] filled = Arrays.copyOf(bucketStarts, bucketStarts.length - 1);
+        for (int value = 1; value < keys.length; value++) {
+            members[filled[Hash.bucket(keys[value])]++] = value;
+        }
+        
+        // Place the biggest buckets first, while there's the most room
+        final int[] order = new int[1 << BUCKET_BITS];
+        int placed = 0;
+        for (int size = 16; size > 0; size--) {
+            for (int bucket = 0; bucket < order.length; bucket++) {
+                if (bucketStarts[bucket + 1] - bucketStarts[bucket] == size) order[placed++] = bucket;
+            }
+        }
+        
+        final int[] slots = new int[16];
+        for (int i = 0; i < placed; i++) {
+            final int bucket = order[i];
+            final int start = bucketStarts[bucket];
+            final int size = bucketStarts[bucket + 1] - start;
+            for (int displacement = 0; ; displacement++) {
+                if (displacement > Short.MAX_VALUE) throw new IllegalStateException("No displacement for bucket " + bucket);
+                if (fits(keys, members, start, size, displacement, slots)) {
+                    DISPLACEMENTS[bucket] = (short) displacement;
+                    for (int j = 0; j < size; j++) {
+                        KEYS[slots[j]] = keys[members[start + j]];
+                        VALUES[slots[j]] = (short) members[start + j];
+                    }
+                    break;
+                }
+            }
+        }
+    }
+    
+    /**
+     * The hash functions, kept apart from the tables so {@link NumeralDictionary} can look numerals
+     * up in its own copy of them without this class building anything.
+     */
+    static final class Hash
+    {
+        private Hash() {
+            // Only static methods
+        }
+        
+        /**
+         * Scrambles the bits of a key (the MurmurHash3 finalizer).
+         * @param key the key
+         * @return the scrambled key
+         */
+        static long mix(long key) {
+            key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+            key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+            return key ^ (key >>> 33);
+        }
+        
+        /**
+         * @param key a packed numeral
+         * @return its bucket
+         */
+        static int bucket(long key) {
+            return (int) (mix(key) >>> (64 - BUCKET_BITS));
+        }
+        
+        /**
+         * @param key a packed numeral
+         * @param displacement the displacement of its bucket
+         * @return its slot
+         */
+        static int slot(long key, int displacement) {
+            return (int) (mix(key + displacement * 0x9E3779B97F4A7C15L) >>> (64 - SLOT_BITS));
+        }
+        
+        /**
+         * Packs a numeral into a long, 3 bits per letter.
+         * @param value the characters holding the numeral
+         * @param from index of the first character
+         * @param to index after the last character
+         * @return the packed numeral, or 0 if it's too long or has something other than a Roman letter
+         */
+        static long pack(CharSequence value, int from, int to) {
+            if (to - from > RomanArabicConverter.MAX_ROMAN_LENGTH) return 0;
+            long key = 0;
+            for (int i = from; i < to; i++) {
+                final int cls = RomanAutomaton.classOf(value.charAt(i));
+                if (cls == RomanAutomaton.OTHER) return 0;
+                key = key << 3 | (cls + 1);
+            }
+            return key;
+        }
+    }
+    
+    private PerfectHashDecoder() {
+        // Only static methods
+    }
+    
+    /**
+     * Checks whether every key in a bucket lands in its own empty slot with a displacement.
+     * @param keys all the keys, by value
+     * @param members values of the keys, grouped by bucket
+     * @param start where the bucket starts in members
+     * @param size how many keys are in the bucket
+     * @param displacement the displacement to try
+     * @param slots where to put the slot of each key
+     * @return true if they all fit
+     */
+    private static boolean fits(long[] keys, int[] members, int start, int size, int displacement, int[] slots) {
+        for (int i = 0; i < size; i++) {
+            slots[i] = Hash.slot(keys[members[start + i]], displacement);
+            if (KEYS[slots[i]] != 0) return false;
+            for (int j = 0; j < i; j++) {
+                if (slots[j] == slots[i]) return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Decodes a canonical Roman numeral. Leading and trailing spaces are skipped, like everywhere
+     * else.
+     * @param value the characters holding the numeral
+     * @param from index of the first character of the numeral
+     * @param to index after the last character of the numeral
+     * @return the value of the numeral, or -1 if it isn't one that toRoman() would produce
+     * @throws IndexOutOfBoundsException if the range is not within value
+     */
+    public static int decodeCanonical(CharSequence value, int from, int to) {
+        if (from < 0 || from > to || to > value.length()) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + value.length());
+        }
+        while (from < to && value.charAt(from) <= ' ') from++;
+        while (to > from && value.charAt(to - 1) <= ' ') to--;
+        final long key = Hash.pack(value, from, to);
+        if (key == 0) return -1;
+        final int slot = Hash.slot(key, DISPLACEMENTS[Hash.bucket(key)]);
+        return KEYS[slot] == key ? VALUES[slot] : -1;
+    }
+    
+    /**
+     * Same as {@link RomanArabicConverter#tryParse(CharSequence, int, int)}, but canonical Roman
+     * numerals are looked up in the table, and only everything else is parsed.
+     * @param value the characters holding the number
+     * @param from index of the first character of the number
+     * @param to index after the last character of the number
+     * @return the integer value of the number if {@link RomanArabicConverter#isValid(long)} says so,
+     *         otherwise a failure that {@link NumeralError#of(long)} can read
+     * @throws IndexOutOfBoundsException if the range is not within value
+     */
+    public static long tryParse(CharSequence value, int from, int to) {
+        final long start = ConverterMetrics.ENABLED ? System.nanoTime() : 0L;
+        final int canonical = decodeCanonical(value, from, to);
+        if (canonical <= 0) return RomanArabicConverter.tryParse(value, from, to);
+        if (ConverterMetrics.ENABLED) ConverterMetrics.parsed(value, from, to, canonical, start);
+        return canonical;
+    }
+}
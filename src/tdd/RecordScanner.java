@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * Finds the lines in a block of ASCII text and flags the ones holding a byte that can't appear in
+ * any number, so they can be rejected without parsing. A number only ever holds the Roman letters,
+ * digits, signs and, around it, characters up to ' ' that get trimmed; anything else anywhere in a
+ * line makes it malformed. A line that passes still has to be parsed to know whether it's valid.
+ * Roman letters can be either case; the Unicode Roman numerals are never in a single byte.
+ * </p>
+ * <p>
+ * This class does it a byte at a time. {@link #INSTANCE} is a {@link VectorRecordScanner}, which
+ * checks a whole vector of bytes at once, when the JVM was started with
+ * <code>--add-modules jdk.incubator.vector</code>, and this otherwise. Setting the tdd.vector
+ * system property to false always picks this one.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+class RecordScanner
+{
+    /** The byte at a time scanner */
+    static final RecordScanner SCALAR = new RecordScanner();
+    
+    /** The fastest scanner this JVM can run */
+    static final RecordScanner INSTANCE = load();
+    
+    /** Bytes that may appear in a number, indexed by the byte as unsigned */
+    private static final boolean[] LEGAL = new boolean[256];
+    
+    static {
+        for (int c = 0; c <= ' '; c++) {
+            LEGAL[c] = true;
+        }
+        for (char c : "0123456789+-IVXLCDMivxlcdm".toCharArray()) {
+            LEGAL[c] = true;
+        }
+    }
+    
+    RecordScanner() {
+        // SCALAR, or a subclass
+    }
+    
+    /**
+     * @return the vector scanner if the incubator module is there and not switched off, otherwise SCALAR
+     */
+    private static RecordScanner load() {
+        if (!Boolean.parseBoolean(System.getProperty("tdd.vector", "true"))) return SCALAR;
+        try {
+            // Only linked here, so this class loads fine without the module
+            return (RecordScanner) Class.forName("tdd.VectorRecordScanner").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return SCALAR;
+        }
+    }
+    
+    /**
+     * @param b a byte of text
+     * @return true if it can appear in a line holding a number
+     */
+    static boolean isLegal(byte b) {
+        return LEGAL[b & 0xFF];
+    }
+    
+    /**
+     * Finds up to max newlines in bytes[from..to). A line starts at
+     * from or after the previous newline. Text after the last newline found isn't reported, so the
+     * next call should start right after it.
+     * 
+     * @param bytes the text
+     * @param from absolute index of the start of a line
+     * @param to absolute index after the last byte to look at
+     * @param ends where to put the index of each newline, or its complement (~index, which is
+     *            negative) if the line before it holds a byte that can't be in a number
+     * @param max how many newlines to find at most, no more than the length of ends
+     * @return how many newlines were found
+     */
+    int scan(ByteBuffer bytes, int from, int to, int[] ends, int max) {
+        int count = 0;
+        boolean illegal = false;
+        for (int i = from; i < to && count < max; i++) {
+            final byte b = bytes.get(i);
+            if (b == '\n') {
+                ends[count++] = illegal ? ~i : i;
+                illegal = false;
+            } else if (!LEGAL[b & 0xFF]) {
+                illegal = true;
+            }
+        }
+        return count;
+    }
+}
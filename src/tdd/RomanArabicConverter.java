@@ -12,6 +12,7 @@
 
 package tdd;
 
+import java.nio.ByteBuffer;
 
 /**
  * <p>
@@ -34,8 +35,70 @@ package tdd;
  */
 public class RomanArabicConverter
 {
-    /** The value held by this converter */
-    private int value;
+    /** The longest Roman numeral, MMMDCCCLXXXVIII, is this many characters long */
+    public static final int MAX_ROMAN_LENGTH = 15;
+
+    /*
+     * Per-place fragments, indexed by the digit of that place. The thousands place only goes up to
+     * 3 since MMM is as high as we can go.
+     */
+    private static final String[] THOUSANDS = generatePlaces('M', 'M', 'M', 4);
+    private static final String[] HUNDREDS = generatePlaces('C', 'D', 'M', 10);
+    private static final String[] TENS = generatePlaces('X', 'L', 'C', 10);
+    private static final String[] UNITS = generatePlaces('I', 'V', 'X', 10);
+
+    /**
+     * Every legal Roman numeral, indexed by its value (index 0 is unused). There are only 3999 of
+     * them, so toRoman() can hand back a shared, immutable string instead of building one per call.
+     * <p>
+     * Footprint: the numerals add up to 30000 characters (15 at most, MMMDCCCLXXXVIII). With compact
+     * strings and compressed oops that is about 200 KB of String and byte[] objects, plus 16 KB for
+     * the array itself. It is filled once when the class is initialized, which is 3999
+     * concatenations of the fragments above. That runs in the interpreter, so it costs up to a few
+     * tens of milliseconds on a slow machine, once.
+     * </p>
+     */
+    private static final String[] ROMAN = new String[4000];
+    
+    /**
+     * The same numerals as ASCII bytes, packed one after another so encode() is a single copy. The
+     * numeral for i runs from ASCII_OFFSETS[i] to ASCII_OFFSETS[i + 1]. That's another 30 KB of
+     * bytes and 16 KB of offsets.
+     */
+    private static final byte[] ASCII = new byte[30000];
+    private static final int[] ASCII_OFFSETS = new int[4001];
+    
+    static {
+        int offset = 0;
+        for (int i = 1; i < ROMAN.length; i++) {
+            // A StringBuilder rather than +, which would bootstrap invokedynamic string concatenation just for this
+            ROMAN[i] = new StringBuilder(MAX_ROMAN_LENGTH).append(THOUSANDS[i / 1000]).append(HUNDREDS[(i / 100) % 10])
+                    .append(TENS[(i / 10) % 10]).append(UNITS[i % 10]).toString();
+            ASCII_OFFSETS[i] = offset;
+            for (int c = 0; c < ROMAN[i].length(); c++) {
+                ASCII[offset++] = (byte) ROMAN[i].charAt(c);
+            }
+        }
+        ASCII_OFFSETS[ROMAN.length] = offset;
+    }
+
+    /**
+     * Shared instances for 1..3999, created the first time valueOf() is called so the constructor
+     * alone doesn't pay for them. That's 3999 small objects, about 64 KB.
+     */
+    private static final class Cache
+    {
+        static final RomanArabicConverter[] INSTANCES = new RomanArabicConverter[ROMAN.length];
+        
+        static {
+            for (int i = 1; i < INSTANCES.length; i++) {
+                INSTANCES[i] = new RomanArabicConverter(i);
+            }
+        }
+    }
+
+    /** The value held by this converter. It never changes, so instances can be shared freely. */
+    private final int value;
     
 	/**
 	 * Constructor that takes in a string. The string should contain either a valid Roman numeral or
@@ -52,76 +115,154 @@ public class RomanArabicConverter
 	 */
 	public RomanArabicConverter(String value) throws MalformedNumberException
 	{
-	    value = value.trim();
-	    if (value.isEmpty()) throw new MalformedNumberException("Value must not be empty!");
-		
-		try {
-		    this.value = Integer.parseInt(value);
-		} catch (NumberFormatException e) {
-		    this.value = 0;
-		    // Try to split the string on "places"
-            final int onesIndex = getFirstOrIndex('I', 'V', value, value.length());
-		    final int tensIndex = getFirstOrIndex('X', 'L', value, onesIndex);
-		    final int hundsIndex = getFirstOrIndex('C', 'D', value, tensIndex);
-		    final int thousIndex = getFirstOrIndex('M', 'M', value, hundsIndex);
-
-		    if (thousIndex == value.length()) throw new MalformedNumberException("Given input was neither an Arabic Numeral nor a Roman Numeral!"); // Fixes spacesInWeirdPlaces
-		    if (thousIndex != 0) throw new MalformedNumberException("Given input was neither an Arabic Numeral nor a Roman Numeral!"); // This works because if any previous index is 0, thousIndex will be 0. If thousIndex isn't 0, we have some weird nonsense in front of our numeral.
-		    
-            this.value += parsePlace('I', 'V', 'X', value.substring(onesIndex));
-            if (tensIndex < onesIndex) this.value += 10 * parsePlace('X', 'L', 'C', value.substring(tensIndex, onesIndex));
-            if (hundsIndex < tensIndex) this.value += 100 * parsePlace('C', 'D', 'M', value.substring(hundsIndex, tensIndex));
-            if (thousIndex < hundsIndex) this.value += 1000 * parsePlace('M', 'M', 'M', value.substring(thousIndex, hundsIndex)); // This works because it short will always look at the 'unit' place first :)
-		}
-	}
-	
-	/**
-	 * Gets the first case of either character appearing
-	 * @param either First char to look for
-	 * @param or the other char to look for
-	 * @param str String to look in
-	 * @param default value to return if you can't find either;
-	 * @return the first appearance of 'either' or 'or', or 'def' if both are -1. 
-	 */
-	private int getFirstOrIndex(char either, char or, String str, int def) {
-	    int eIdx = str.indexOf(either);
-	    int oIdx = str.indexOf(or);
-        if (oIdx == -1) oIdx = def;
-	    if (eIdx == -1) eIdx = def;
-	    return Math.min(eIdx, oIdx);
-	}
-	
-	/**
-	 * Parses the given 'place' in the roman numeral
-	 * @param unit expected unit for the place (e.g. I for ones place)
-	 * @param half half for place (e.g. V for once place)
-	 * @param next next place unit (e.g. X for ones place)
-	 * @param num the string you want to parse, with no extra
-	 * @return the number represented by it.
-	 * @throws MalformedNumberException If your string is bad.
-	 */
-	private int parsePlace(char unit, char half, char next, String num) throws MalformedNumberException {
-	    int val = 0;
-	    
-	    for (int i = 0; i < num.length(); i++) {
-	        if (num.charAt(i) == unit) {
-	            val++;
-	            if (val % 5 == 4) throw new MalformedNumberException("Too many '" + unit + "'s in a row!"); // IIII or VIIII
-	        } else if (num.charAt(i) == half) {
-	            if (val == 1) val += 3; // IV
-	            else if (val == 0) val += 5; // V
-	            else throw new MalformedNumberException("Invalid characters before '" + half + "'!"); // IIV etc.
-	        } else if (num.charAt(i) == next) {
-	            if (val == 1) val += 8;
-	            else throw new MalformedNumberException("Invalid characters before '" + next + "'!"); // VX IIX etc.
-	        } else {
-	            throw new MalformedNumberException("Unexpected character '" + num.charAt(i) + "'!");
-	        }
+	    this.value = parse(value, 0, value.length());
+	}
+	
+	/**
+	 * Constructor for a value that has already been parsed.
+	 * 
+	 * @param value the value to hold
+	 */
+	private RomanArabicConverter(int value)
+	{
+	    this.value = value;
+	}
+	
+	/**
+	 * Returns a converter holding value. Values from 1 to 3999 come from a cache of shared
+	 * instances, like Integer.valueOf(), so wrapping the same numbers over and over creates no
+	 * garbage. Anything else, which can't be shown as a Roman numeral anyway, gets a new instance.
+	 * 
+	 * @param value the value to hold
+	 * @return a converter holding value
+	 */
+	public static RomanArabicConverter valueOf(int value)
+	{
+	    if (value >= 4000 || value <= 0) return new RomanArabicConverter(value);
+	    return Cache.INSTANCES[value];
+	}
+	
+	/**
+	 * Parses value following the same rules as the constructor, and returns a converter for it the
+	 * same way valueOf(int) does.
+	 * 
+	 * @param value the string representing the Roman or Arabic number.
+	 * @return a converter holding the value of the number
+	 * @throws MalformedNumberException if the string does not represent a valid Roman or Arabic number
+	 */
+	public static RomanArabicConverter valueOf(CharSequence value) throws MalformedNumberException
+	{
+	    return valueOf(parse(value, 0, value.length()));
+	}
+	
+	/**
+	 * Parses the characters of value between from (inclusive) and to (exclusive), following the same
+	 * rules as the constructor. Leading and trailing spaces are skipped in place, and nothing is
+	 * allocated unless the number turns out to be malformed, so this can be used on slices of larger
+	 * buffers.
+	 * 
+	 * @param value the characters holding the number
+	 * @param from index of the first character of the number
+	 * @param to index after the last character of the number
+	 * @return the integer value of the number
+	 * @throws MalformedNumberException if the range does not represent a valid Roman or Arabic number
+	 * @throws IndexOutOfBoundsException if the range is not within value
+	 */
+	public static int parse(CharSequence value, int from, int to) throws MalformedNumberException {
+	    final long result = tryParse(value, from, to);
+	    if (!isValid(result)) throw malformed(value, result);
+	    return (int) result;
+	}
+	
+	/**
+	 * Same as {@link #parse(CharSequence, int, int)}, except that a malformed number is reported
+	 * through the return value instead of an exception, so bad input costs no more than good input.
+	 * 
+	 * @param value the characters holding the number
+	 * @param from index of the first character of the number
+	 * @param to index after the last character of the number
+	 * @return the integer value of the number if {@link #isValid(long)} says so, otherwise a failure
+	 *         that {@link NumeralError#of(long)} and {@link NumeralError#offsetOf(long)} can read
+	 * @throws IndexOutOfBoundsException if the range is not within value
+	 */
+	public static long tryParse(CharSequence value, int from, int to) {
+	    if (from < 0 || from > to || to > value.length()) {
+	        throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + value.length());
 	    }
+	    if (!ConverterMetrics.ENABLED) return parseInRange(value, from, to);
+	    final long start = System.nanoTime();
+	    final long result = parseInRange(value, from, to);
+	    ConverterMetrics.parsed(value, from, to, result, start);
+	    return result;
+	}
+	
+	/**
+	 * tryParse() once the range has been checked.
+	 * @param value the characters holding the number
+	 * @param from index of the first character of the number
+	 * @param to index after the last character of the number
+	 * @return the value or a failure
+	 */
+	private static long parseInRange(CharSequence value, int from, int to) {
+	    // Same as String.trim()
+	    while (from < to && value.charAt(from) <= ' ') from++;
+	    while (to > from && value.charAt(to - 1) <= ' ') to--;
+	    if (from == to) return NumeralError.EMPTY.at(from);
 	    
-	    return val;
+	    // A Roman numeral has to start with one of its letters, so the first character tells us which one we have
+	    final char first = value.charAt(from);
+	    if (first == '-' || first == '+' || Character.digit(first, 10) >= 0) return parseArabic(value, from, to);
+	    return RomanAutomaton.parse(value, from, to);
 	}
-
+	
+	/**
+	 * @param result a result returned by tryParse
+	 * @return true if it holds a value, false if it holds a failure
+	 */
+	public static boolean isValid(long result) {
+	    return result == (int) result;
+	}
+	
+	/**
+	 * Builds the exception the constructor would have thrown for a failed result. It doesn't fill in
+	 * a stack trace, since it only ever points back here anyway.
+	 * @param value the characters that were parsed
+	 * @param result the failed result
+	 * @return the exception
+	 */
+	static MalformedNumberException malformed(CharSequence value, long result) {
+	    final int offset = NumeralError.offsetOf(result);
+	    final char offending = offset < value.length() ? value.charAt(offset) : ' ';
+	    return new MalformedNumberException(NumeralError.of(result).message(offending), false);
+	}
+	
+	/**
+	 * Parses an Arabic number the same way Integer.parseInt does, without needing a String.
+	 * @param value the characters holding the number
+	 * @param from index of the first character, with no spaces
+	 * @param to index after the last character, with no spaces
+	 * @return the number, or a failure if it's not a number or doesn't fit in an int
+	 */
+	private static long parseArabic(CharSequence value, int from, int to) {
+	    final boolean negative = value.charAt(from) == '-';
+	    int i = from;
+	    if (negative || value.charAt(from) == '+') i++;
+	    if (i == to) return NumeralError.NOT_A_NUMBER.at(from);
+	    
+	    // Accumulate negatively so Integer.MIN_VALUE fits, like Integer.parseInt
+	    final int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+	    final int multMin = limit / 10;
+	    int result = 0;
+	    for (; i < to; i++) {
+	        final int digit = Character.digit(value.charAt(i), 10);
+	        if (digit < 0 || result < multMin) return NumeralError.NOT_A_NUMBER.at(i);
+	        result *= 10;
+	        if (result < limit + digit) return NumeralError.NOT_A_NUMBER.at(i);
+	        result -= digit;
+	    }
+	    return negative ? result : -result;
+	}
+	
 	/**
 	 * @return the integer value of the number given
 	 */
@@ -147,21 +288,111 @@ public class RomanArabicConverter
 	 */
 	public String toRoman() throws ValueOutOfBoundsException
 	{
-	    if (value >= 4000 || value <= 0) throw new ValueOutOfBoundsException("Roman numerals must be between 1 and 3999, inclusive");
-	    final StringBuilder sb = new StringBuilder();
-	    
-	    final int thou = (value / 1000) % 10; // I mean, this will never be more than 3 because of the limit up there, but for consistency
-	    for (int i = 0; i < thou; i++) {
-	        sb.append('M'); // generatePlace('M','M','M', thou) also works, but it's less clear what it does
+	    final String roman = roman(value);
+	    if (roman == null) throw new ValueOutOfBoundsException("Roman numerals must be between 1 and 3999, inclusive", false);
+	    return roman;
+	}
+	
+	/**
+	 * Writes the Roman numeral for value into dst as ASCII, without creating a String. A numeral is
+	 * never longer than {@link #MAX_ROMAN_LENGTH} bytes, so reserving that much is always enough.
+	 * 
+	 * @param value the value to write
+	 * @param dst where to write it
+	 * @param offset where to write the first byte
+	 * @return the number of bytes written, or -1 if value is out of range, in which case nothing is written
+	 * @throws IndexOutOfBoundsException if the numeral doesn't fit in dst
+	 */
+	public static int encode(int value, byte[] dst, int offset) {
+	    if (!ConverterMetrics.ENABLED) return copy(value, dst, offset);
+	    final long start = System.nanoTime();
+	    final int length = copy(value, dst, offset);
+	    ConverterMetrics.formatted(length >= 0, start);
+	    return length;
+	}
+	
+	/**
+	 * encode() without the metrics.
+	 * @param value the value to write
+	 * @param dst where to write it
+	 * @param offset where to write the first byte
+	 * @return the number of bytes written, or -1 if value is out of range
+	 */
+	private static int copy(int value, byte[] dst, int offset) {
+	    if (value >= 4000 || value <= 0) return -1;
+	    final int start = ASCII_OFFSETS[value];
+	    final int length = ASCII_OFFSETS[value + 1] - start;
+	    System.arraycopy(ASCII, start, dst, offset, length);
+	    return length;
+	}
+	
+	/**
+	 * @param value the value
+	 * @return how many bytes encode() writes for it, or 0 if it's out of range
+	 */
+	static int length(int value) {
+	    if (value >= 4000 || value <= 0) return 0;
+	    return ASCII_OFFSETS[value + 1] - ASCII_OFFSETS[value];
+	}
+	
+	/**
+	 * Writes the Roman numeral for value into dst as ASCII at its position, and moves the position
+	 * past it.
+	 * 
+	 * @param value the value to write
+	 * @param dst where to write it
+	 * @return the number of bytes written, or -1 if value is out of range, in which case nothing is written
+	 * @throws java.nio.BufferOverflowException if the numeral doesn't fit in dst
+	 */
+	public static int encode(int value, ByteBuffer dst) {
+	    if (!ConverterMetrics.ENABLED) return copy(value, dst);
+	    final long start = System.nanoTime();
+	    final int length = copy(value, dst);
+	    ConverterMetrics.formatted(length >= 0, start);
+	    return length;
+	}
+	
+	/**
+	 * encode() without the metrics, for building tables that shouldn't count as formatting.
+	 * @param value the value to write
+	 * @param dst where to write it
+	 * @return the number of bytes written, or -1 if value is out of range
+	 */
+	static int copy(int value, ByteBuffer dst) {
+	    if (value >= 4000 || value <= 0) return -1;
+	    final int start = ASCII_OFFSETS[value];
+	    final int length = ASCII_OFFSETS[value + 1] - start;
+	    dst.put(ASCII, start, length);
+	    return length;
+	}
+	
+	/**
+	 * Looks up the Roman numeral for a value without going through an instance.
+	 * @param value the value
+	 * @return the shared numeral for it, or null if it's out of range
+	 */
+	static String roman(int value) {
+	    if (!ConverterMetrics.ENABLED) return value >= 4000 || value <= 0 ? null : ROMAN[value];
+	    final long start = System.nanoTime();
+	    final String roman = value >= 4000 || value <= 0 ? null : ROMAN[value];
+	    ConverterMetrics.formatted(roman != null, start);
+	    return roman;
+	}
+	
+	/**
+	 * Generates the Roman representation of every digit for one place.
+	 * @param placeUnit The unit for this place (e.g. I for the ones place)
+	 * @param placeHalf The half unit (e.g. V)
+	 * @param nextPlace Then next unit above (e.g. X) used for the "9" (IX)
+	 * @param digits How many digits to generate, starting from 0
+	 * @return the fragments, indexed by digit
+	 */
+	private static String[] generatePlaces(char placeUnit, char placeHalf, char nextPlace, int digits) {
+	    final String[] places = new String[digits];
+	    for (int i = 0; i < digits; i++) {
+	        places[i] = generatePlace(placeUnit, placeHalf, nextPlace, i);
 	    }
-	    final int hunds = (value / 100) % 10;
-	    sb.append(generatePlace('C', 'D', 'M', hunds));
-	    final int tens = (value / 10) % 10;
-	    sb.append(generatePlace('X', 'L', 'C', tens));
-	    final int units = value % 10;
-	    sb.append(generatePlace('I', 'V', 'X', units));
-
-	    return sb.toString();
+	    return places;
 	}
 	
 	/**
@@ -172,7 +403,7 @@ public class RomanArabicConverter
 	 * @param placeNum The number for this place. Should be less than 10, we're using base ten here
 	 * @return The roman representation of this place
 	 */
-	private String generatePlace(char placeUnit, char placeHalf, char nextPlace, int placeNum) {
+	private static String generatePlace(char placeUnit, char placeHalf, char nextPlace, int placeNum) {
 	    final StringBuilder sb = new StringBuilder();
 	    if (placeNum < 4) {
 	        for (int i = 0; i < placeNum; i++) {
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+package tdd;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Parses Roman numerals in a single pass, left to right, with a deterministic automaton. It
+ * accepts exactly what splitting the numeral on "places" and parsing each place did, but without
+ * looking at any character twice.
+ * </p>
+ * <p>
+ * A numeral is read one place at a time, from the thousands down. The place only ever goes down:
+ * the first I or V starts the ones place, the first X or L before that starts the tens, and the
+ * first C or D before that starts the hundreds. Within a place the automaton tracks the same count
+ * parsePlace did, which never gets past 13 (IXIII). So a state is a place and a count, and there
+ * are 4 * 14 of them. The thousands place with a count of 0 can only happen before the first
+ * character, so that's the start state.
+ * </p>
+ * <p>
+ * Every transition is one int in a table indexed by state and character class. A transition
+ * holds the next state in its low byte and how much the value goes up in the rest, or is negative
+ * if the character is rejected, in which case it holds which {@link NumeralError} it was.
+ * </p>
+ * <p>
+ * Lowercase letters are in the same classes as uppercase ones, so "xiv" goes through the same
+ * transitions as "XIV". So are the Unicode Roman numerals, U+2160 to U+2188: the ones standing
+ * for one letter (U+2160 for I, U+2170 for i, U+216D for C...) have that letter's class, and the
+ * ones standing for several (U+216B is XII) take the transitions of each of those letters in turn,
+ * so they're accepted exactly where the letters would be: U+2162 (III) then U+2160 (I) is
+ * rejected just like IIII.
+ * A rejection points at the character, whichever of its letters was rejected. Both come out of
+ * tables, so nothing is ever copied or case-folded first, and ASCII takes the same single lookup
+ * it always did.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+final class RomanAutomaton
+{
+    /*
+     * Character classes. Each place has a unit and a half, and the unit of the place above is its
+     * "next" (IX, XC, CM).
+     */
+    static final int I = 0, V = 1, X = 2, L = 3, C = 4, D = 5, M = 6, OTHER = 7;
+    private static final int CLASSES = 8;
+    
+    /** Places, and how much a count in each one is worth */
+    private static final int ONES = 0, TENS = 1, HUNDS = 2, THOUS = 3;
+    private static final int[] WORTH = {1, 10, 100, 1000};
+    
+    /** Highest count a place can get to, plus one */
+    private static final int COUNTS = 14;
+    
+    /** The state before any character has been read */
+    static final int START = THOUS * COUNTS;
+    
+    /** Class of every ASCII character */
+    private static final byte[] CLASS = new byte[128];
+    
+    /** The block of Unicode Roman numerals */
+    private static final char FIRST_NUMERAL = '\u2160', LAST_NUMERAL = '\u2188';
+    /**
+     * The letters each Unicode numeral stands for, as classes, 3 bits each with the first one
+     * lowest, and how many there are above bit 24. One that's no numeral we can read, like U+2181
+     * (5000) or U+2183 (a reversed C), is a single OTHER.
+     */
+    private static final int[] LETTERS = new int[LAST_NUMERAL - FIRST_NUMERAL + 1];
+    /** The class of each Unicode numeral that stands for one letter, OTHER for the rest */
+    private static final byte[] NUMERAL_CLASS = new byte[LETTERS.length];
+    
+    /** Cached so rejecting doesn't copy values() */
+    private static final NumeralError[] ERRORS = NumeralError.values();
+    
+    /** Transitions, indexed by state * CLASSES + class */
+    private static final int[] TRANSITIONS = new int[4 * COUNTS * CLASSES];
+    
+    static {
+        Arrays.fill(CLASS, (byte) OTHER);
+        CLASS['I'] = I;
+        CLASS['V'] = V;
+        CLASS['X'] = X;
+        CLASS['L'] = L;
+        CLASS['C'] = C;
+        CLASS['D'] = D;
+        CLASS['M'] = M;
+        CLASS['i'] = I;
+        CLASS['v'] = V;
+        CLASS['x'] = X;
+        CLASS['l'] = L;
+        CLASS['c'] = C;
+        CLASS['d'] = D;
+        CLASS['m'] = M;
+        
+        // Uppercase and lowercase forms of 1 to 12, 50, 100, 500 and 1000, then the rest of the block
+        final String[] forms = {"I", "II", "III", "IV", "V", "VI", "VII", "VIII", "IX", "X", "XI", "XII", "L", "C", "D", "M"};
+        for (int i = 0; i < LETTERS.length; i++) {
+            LETTERS[i] = letters("?");
+        }
+        for (int i = 0; i < forms.length; i++) {
+            LETTERS[i] = letters(forms[i]);
+            LETTERS[i + 0x10] = letters(forms[i]);
+        }
+        LETTERS['\u2180' - FIRST_NUMERAL] = letters("M"); // CD ligature, 1000
+        LETTERS['\u2185' - FIRST_NUMERAL] = letters("VI"); // 6, late form
+        LETTERS['\u2186' - FIRST_NUMERAL] = letters("L"); // 50, early form
+        for (int i = 0; i < LETTERS.length; i++) {
+            NUMERAL_CLASS[i] = LETTERS[i] >>> 24 == 1 ? (byte) (LETTERS[i] & 7) : OTHER;
+        }
+        
+        for (int place = ONES; place <= THOUS; place++) {
+            for (int count = 0; count < COUNTS; count++) {
+                for (int cls = 0; cls < CLASSES; cls++) {
+                    TRANSITIONS[(place * COUNTS + count) * CLASSES + cls] = transition(place, count, cls);
+                }
+            }
+        }
+        TRANSITIONS[START * CLASSES + OTHER] = error(NumeralError.NOT_A_NUMBER); // Not even a Roman numeral
+    }
+    
+    private RomanAutomaton() {
+        // Only static methods
+    }
+    
+    /**
+     * Works out one transition, the same way parsePlace would have.
+     * @param place the place being read
+     * @param count the count for that place so far
+     * @param cls class of the next character
+     * @return the transition
+     */
+    private static int transition(int place, int count, int cls) {
+        if (cls == OTHER) return error(NumeralError.UNEXPECTED_CHARACTER);
+        
+        // I and V belong to the ones place, X and L to the tens, and so on. M is the unit of the thousands.
+        final int letterPlace = cls / 2;
+        if (letterPlace < place) {
+            // First character of a lower place
+            return transition(letterPlace, 0, cls);
+        }
+        
+        final boolean unit = cls == 2 * place;
+        final boolean half = cls == 2 * place + 1 && place != THOUS;
+        final boolean next = cls == 2 * place + 2;
+        int newCount;
+        if (unit) {
+            newCount = count + 1;
+            if (newCount % 5 == 4) return error(NumeralError.TOO_MANY_REPEATS); // IIII or VIIII
+        } else if (half) {
+            if (count == 1) newCount = 4; // IV
+            else if (count == 0) newCount = 5; // V
+            else return error(NumeralError.BAD_SUBTRACTIVE_PAIR); // IIV etc.
+        } else if (next) {
+            if (count == 1) newCount = 9; // IX
+            else return error(NumeralError.BAD_SUBTRACTIVE_PAIR); // VX IIX etc.
+        } else {
+            return error(NumeralError.UNEXPECTED_CHARACTER); // L in the ones place etc.
+        }
+        return (WORTH[place] * (newCount - count)) << 8 | (place * COUNTS + newCount);
+    }
+    
+    /**
+     * @param letters Roman letters, in ASCII
+     * @return their classes packed the way LETTERS has them
+     */
+    private static int letters(String letters) {
+        int packed = letters.length() << 24;
+        for (int i = 0; i < letters.length(); i++) {
+            packed |= CLASS[letters.charAt(i)] << (3 * i);
+        }
+        return packed;
+    }
+    
+    /**
+     * @param error why a character is rejected
+     * @return the transition that rejects it
+     */
+    private static int error(NumeralError error) {
+        return -1 - error.ordinal();
+    }
+    
+    /**
+     * @param c a character
+     * @return its class, which is OTHER for a Unicode numeral that stands for more than one letter
+     */
+    static int classOf(char c) {
+        if (c < 128) return CLASS[c];
+        return c >= FIRST_NUMERAL && c <= LAST_NUMERAL ? NUMERAL_CLASS[c - FIRST_NUMERAL] : OTHER;
+    }
+    
+    /**
+     * Follows one transition.
+     * @param state the current state
+     * @param cls class of the next character
+     * @return the transition: the next state and how much the value goes up, or a rejection
+     */
+    static int step(int state, int cls) {
+        return TRANSITIONS[state * CLASSES + cls];
+    }
+    
+    /**
+     * @param transition a transition that wasn't rejected
+     * @return the state it goes to
+     */
+    static int stateOf(int transition) {
+        return transition & 0xFF;
+    }
+    
+    /**
+     * @param transition a transition that wasn't rejected
+     * @return how much it adds to the value
+     */
+    static int valueOf(int transition) {
+        return transition >> 8;
+    }
+    
+    /**
+     * @param transition a transition that was rejected
+     * @return why it was rejected
+     */
+    static NumeralError errorOf(int transition) {
+        return ERRORS[-1 - transition];
+    }
+    
+    /**
+     * Parses a Roman numeral.
+     * @param value the characters holding the numeral
+     * @param from index of the first character, with no spaces
+     * @param to index after the last character, with no spaces
+     * @return the value of the numeral, or a failure pointing at the first character that made it invalid
+     */
+    static long parse(CharSequence value, int from, int to) {
+        int state = START;
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            final char c = value.charAt(i);
+            if (c < 128) {
+                final int transition = TRANSITIONS[state * CLASSES + CLASS[c]];
+                if (transition < 0) return errorOf(transition).at(i);
+                result += transition >> 8;
+                state = transition & 0xFF;
+                continue;
+            }
+            
+            // Anything else is one or more letters, or OTHER
+            final int letters = c >= FIRST_NUMERAL && c <= LAST_NUMERAL ? LETTERS[c - FIRST_NUMERAL] : 1 << 24 | OTHER;
+            for (int k = 0, n = letters >>> 24; k < n; k++) {
+                final int transition = TRANSITIONS[state * CLASSES + (letters >>> (3 * k) & 7)];
+                if (transition < 0) return errorOf(transition).at(i);
+                result += transition >> 8;
+                state = transition & 0xFF;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * <p>
+ * Validates rows of numbers for an audit: which rows wouldn't convert, and why. A failure is kept
+ * as a few primitives, its row, the offset of the character that caused it, the
+ * {@link NumeralError} and that character, so millions of them cost no more than the arrays
+ * holding them. No exception is built, and a message is only put together when
+ * {@link #message(int)} asks for one. A row passes if it's a Roman numeral or an Arabic number from
+ * 1 to 3999, so it converts both ways.
+ * </p>
+ * <p>
+ * Rows are numbered from 0 in the order they're checked, across however many calls. Past
+ * {@link #maxFailures()} failures only the counts go on growing, which keeps the memory a report
+ * needs bounded when nearly every row is bad.
+ * </p>
+ * <p>
+ * A report isn't thread-safe. To validate in parallel, give each part its own and
+ * {@link #merge(ValidationReport)} them in order.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public final class ValidationReport
+{
+    private static final NumeralError[] ERRORS = NumeralError.values();
+    
+    private final int maxFailures;
+    
+    /** The failures kept, by entry: row, offset, and ordinal << 16 | offending character */
+    private long[] rows = new long[16];
+    private int[] offsets = new int[16];
+    private int[] codes = new int[16];
+    private int size;
+    
+    /** Failures by the ordinal of their error */
+    private final long[] counts = new long[ERRORS.length];
+    private long checked;
+    
+    /** Decodes lines for {@link #checkLines(ByteBuffer)}, made the first time it's called */
+    private NumeralDecoder decoder;
+    private LongConsumer sink;
+    
+    /**
+     * Constructor for a report that keeps every failure, up to the largest array there can be.
+     */
+    public ValidationReport() {
+        this(Integer.MAX_VALUE - 8);
+    }
+    
+    /**
+     * @param maxFailures how many failures to keep, after which they're only counted
+     * @throws IllegalArgumentException if maxFailures is negative
+     */
+    public ValidationReport(int maxFailures) {
+        if (maxFailures < 0) throw new IllegalArgumentException("maxFailures must not be negative: " + maxFailures);
+        this.maxFailures = maxFailures;
+    }
+    
+    /**
+     * Checks the next row.
+     * 
+     * @param value the row
+     * @return the row's value, or its failure as tryParse would have returned it, or
+     *         {@link NumeralError#OUT_OF_RANGE} at offset -1
+     */
+    public long check(CharSequence value) {
+        final long result = RomanArabicConverter.tryParse(value, 0, value.length());
+        if (RomanArabicConverter.isValid(result)) return add(result, ' ');
+        final int offset = NumeralError.offsetOf(result);
+        return add(result, offset < value.length() ? value.charAt(offset) : ' ');
+    }
+    
+    /**
+     * Checks a row for each element of values from from to to, in order.
+     * 
+     * @param values the rows
+     * @param from index of the first one
+     * @param to index after the last one
+     * @throws IndexOutOfBoundsException if the range isn't in values
+     */
+    public void checkAll(CharSequence[] values, int from, int to) {
+        BulkConverter.checkRange(values.length, from, to);
+        for (int i = from; i < to; i++) {
+            check(values[i]);
+        }
+    }
+    
+    /**
+     * Checks a row for each line of text from the position to the limit of lines, with a last line
+     * that has no '\n' counting as one. The position ends up at the limit. Streams that come a
+     * chunk at a time can go through a {@link NumeralDecoder} and {@link #add(long, char)} instead.
+     * 
+     * @param lines the text
+     */
+    public void checkLines(ByteBuffer lines) {
+        if (decoder == null) {
+            decoder = new NumeralDecoder();
+            sink = result -> add(result, decoder.offending());
+        }
+        decoder.feed(lines, sink);
+        decoder.finish(sink);
+    }
+    
+    /**
+     * Records the next row from the result of parsing it.
+     * 
+     * @param result what tryParse or a {@link NumeralDecoder} made of the row
+     * @param offending the character at the offset of a failure, or anything if there wasn't one
+     * @return result, or {@link NumeralError#OUT_OF_RANGE} at offset -1 if it's a value that can't
+     *         be written as a Roman numeral
+     */
+    public long add(long result, char offending) {
+        final long row = checked++;
+        if (RomanArabicConverter.isValid(result)) {
+            if (result > 0 && result < 4000) return result;
+            result = NumeralError.OUT_OF_RANGE.at(-1);
+            offending = ' ';
+        }
+        final int ordinal = NumeralError.of(result).ordinal();
+        counts[ordinal]++;
+        if (size < maxFailures) {
+            if (size == rows.length) grow();
+            rows[size] = row;
+            offsets[size] = NumeralError.offsetOf(result);
+            codes[size] = ordinal << 16 | offending;
+            size++;
+        }
+        return result;
+    }
+    
+    private void grow() {
+        final int length = (int) Math.min(Math.max(16, rows.length * 2L), maxFailures);
+        rows = Arrays.copyOf(rows, length);
+        offsets = Arrays.copyOf(offsets, length);
+        codes = Arrays.copyOf(codes, length);
+    }
+    
+    /**
+     * Adds other's rows after this report's, as if they'd been checked here. Its failures are kept
+     * as far as there's room.
+     * 
+     * @param other a report on the rows that follow
+     */
+    public void merge(ValidationReport other) {
+        for (int i = 0; i < other.size && size < maxFailures; i++) {
+            if (size == rows.length) grow();
+            rows[size] = checked + other.rows[i];
+            offsets[size] = other.offsets[i];
+            codes[size] = other.codes[i];
+            size++;
+        }
+        for (int e = 0; e < counts.length; e++) {
+            counts[e] += other.counts[e];
+        }
+        checked += other.checked;
+    }
+    
+    /**
+     * @return how many rows have been checked
+     */
+    public long rows() {
+        return checked;
+    }
+    
+    /**
+     * @return how many rows failed
+     */
+    public long failures() {
+        long failures = 0;
+        for (long count : counts) failures += count;
+        return failures;
+    }
+    
+    /**
+     * @return how many rows passed
+     */
+    public long passed() {
+        return checked - failures();
+    }
+    
+    /**
+     * @param error a reason for failing
+     * @return how many rows failed for it
+     */
+    public long count(NumeralError error) {
+        return counts[error.ordinal()];
+    }
+    
+    /**
+     * @return how many failures have been kept, which is less than {@link #failures()} once
+     *         {@link #maxFailures()} is reached
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @return how many failures can be kept
+     */
+    public int maxFailures() {
+        return maxFailures;
+    }
+    
+    /**
+     * @param entry index of a failure kept, from 0 to {@link #size()}
+     * @return the row that failed
+     * @throws IndexOutOfBoundsException if there isn't that entry
+     */
+    public long row(int entry) {
+        return rows[checkEntry(entry)];
+    }
+    
+    /**
+     * @param entry index of a failure kept
+     * @return the offset in the row of the character that caused it, or -1 for
+     *         {@link NumeralError#OUT_OF_RANGE}
+     * @throws IndexOutOfBoundsException if there isn't that entry
+     */
+    public int offset(int entry) {
+        return offsets[checkEntry(entry)];
+    }
+    
+    /**
+     * @param entry index of a failure kept
+     * @return why the row failed
+     * @throws IndexOutOfBoundsException if there isn't that entry
+     */
+    public NumeralError error(int entry) {
+        return ERRORS[codes[checkEntry(entry)] >>> 16];
+    }
+    
+    /**
+     * @param entry index of a failure kept
+     * @return the message converting the row would have thrown, built now
+     * @throws IndexOutOfBoundsException if there isn't that entry
+     */
+    public String message(int entry) {
+        final int code = codes[checkEntry(entry)];
+        final String message = ERRORS[code >>> 16].message((char) code);
+        final int offset = offsets[entry];
+        return "Row " + rows[entry] + (offset < 0 ? ": " : ", offset " + offset + ": ") + message;
+    }
+    
+    private int checkEntry(int entry) {
+        if (entry < 0 || entry >= size) throw new IndexOutOfBoundsException("Entry " + entry + " of " + size);
+        return entry;
+    }
+    
+    /**
+     * Forgets every row, to start a new report.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        checked = 0;
+        size = 0;
+        if (decoder != null) decoder.reset();
+    }
+    
+    /**
+     * @return the counts, with those for each error that came up
+     */
+    @Override
+    public String toString() {
+        final StringBuilder summary = new StringBuilder();
+        summary.append(checked).append(" rows, ").append(passed()).append(" passed");
+        for (NumeralError error : ERRORS) {
+            if (counts[error.ordinal()] > 0) summary.append(", ").append(counts[error.ordinal()]).append(' ').append(error);
+        }
+        return summary.toString();
+    }
+}
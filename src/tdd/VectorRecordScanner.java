@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A {@link RecordScanner} that uses the Vector API to look at a whole vector of bytes at once. One
+ * compare finds the newlines and a handful more check that every byte could be in a number; the
+ * newlines are then taken off the mask one at a time with firstTrue(), so the bytes in between are
+ * never looked at one by one. A vector holding a bad byte, which should be rare, is sorted out a
+ * byte at a time, and so is whatever is left at the end, less than a vector.
+ * <p>
+ * Masks are walked with firstTrue() rather than turned into a long with toLong(), since on Java
+ * 17 toLong() is not compiled to a single instruction and is slower than the scalar loop.
+ * </p>
+ * <p>
+ * This needs <code>--add-modules jdk.incubator.vector</code>; {@link RecordScanner#INSTANCE} only
+ * loads it when the module is there.
+ * </p>
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+final class VectorRecordScanner extends RecordScanner
+{
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    /** The lane numbers, to clear the lanes of a mask up to one that's been handled */
+    private static final ByteVector LANE_NUMBERS = (ByteVector) SPECIES.iotaShuffle(0, 1, false).toVector();
+    
+    VectorRecordScanner() {
+        // Lane numbers have to fit in a byte
+        if (LANES > Byte.MAX_VALUE) throw new UnsupportedOperationException("Too many lanes: " + LANES);
+    }
+    
+    @Override
+    int scan(ByteBuffer bytes, int from, int to, int[] ends, int max) {
+        if (max == 0) return 0;
+        int count = 0;
+        boolean illegal = false;
+        int i = from;
+        for (; i + LANES <= to; i += LANES) {
+            final ByteVector block = bytes.hasArray()
+                    ? ByteVector.fromArray(SPECIES, bytes.array(), bytes.arrayOffset() + i)
+                    : ByteVector.fromByteBuffer(SPECIES, bytes, i, ByteOrder.nativeOrder());
+            if (illegal(block).anyTrue()) {
+                for (int j = i; j < i + LANES; j++) {
+                    final byte b = bytes.get(j);
+                    if (b == '\n') {
+                        ends[count++] = illegal ? ~j : j;
+                        illegal = false;
+                        if (count == max) return count;
+                    } else if (!isLegal(b)) {
+                        illegal = true;
+                    }
+                }
+                continue;
+            }
+            VectorMask<Byte> newlines = block.eq((byte) '\n');
+            int lane;
+            while ((lane = newlines.firstTrue()) < LANES) {
+                ends[count++] = illegal ? ~(i + lane) : i + lane;
+                illegal = false;
+                if (count == max) return count;
+                newlines = newlines.and(LANE_NUMBERS.compare(VectorOperators.GT, (byte) lane));
+            }
+        }
+        // The tail, a byte at a time
+        for (; i < to && count < max; i++) {
+            final byte b = bytes.get(i);
+            if (b == '\n') {
+                ends[count++] = illegal ? ~i : i;
+                illegal = false;
+            } else if (!isLegal(b)) {
+                illegal = true;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * @param block a vector of bytes
+     * @return the lanes holding a byte that can't be in a number
+     */
+    private static VectorMask<Byte> illegal(ByteVector block) {
+        // Spaces and control characters, which are trimmed; as signed bytes everything above 127 is negative
+        VectorMask<Byte> legal = block.compare(VectorOperators.UNSIGNED_LE, (byte) ' ');
+        legal = legal.or(block.compare(VectorOperators.UNSIGNED_LE, (byte) '9').and(block.compare(VectorOperators.GE, (byte) '0')));
+        legal = legal.or(block.eq((byte) '+')).or(block.eq((byte) '-'));
+        // Setting bit 5 makes uppercase letters lowercase, and only 'I' and 'i' end up as 'i'
+        final ByteVector folded = block.or((byte) 0x20);
+        legal = legal.or(folded.eq((byte) 'i')).or(folded.eq((byte) 'v')).or(folded.eq((byte) 'x')).or(folded.eq((byte) 'l'));
+        legal = legal.or(folded.eq((byte) 'c')).or(folded.eq((byte) 'd')).or(folded.eq((byte) 'm'));
+        return legal.not();
+    }
+}
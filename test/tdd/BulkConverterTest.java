@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the BulkConverter class.
+ *
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class BulkConverterTest {
+
+    @Test
+    public void toRomanStrings() {
+        final int[] values = {99, 1, 0, 3999, 4000, 14};
+        final String[] dst = new String[7];
+        assertEquals(2, BulkConverter.toRoman(values, 1, 6, dst, 2));
+        assertArrayEquals(new String[] {null, null, "I", null, "MMMCMXCIX", null, "XIV"}, dst);
+    }
+    
+    @Test
+    public void toRomanBytes() {
+        final int[] values = {4, -3, 1888, 9};
+        final byte[] dst = new byte[3 + 15 * values.length];
+        final int[] offsets = new int[values.length + 1];
+        final int written = BulkConverter.toRoman(values, 0, values.length, dst, 3, offsets, 0);
+        assertEquals(17, written);
+        assertArrayEquals(new int[] {3, 5, 5, 18, 20}, offsets);
+        assertEquals("IVMDCCCLXXXVIIIIX", new String(dst, 3, written, StandardCharsets.US_ASCII));
+    }
+    
+    @Test
+    public void toRomanEverything() throws ValueOutOfBoundsException, MalformedNumberException {
+        final int[] values = new int[3999];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i + 1;
+        }
+        final String[] dst = new String[values.length];
+        assertEquals(0, BulkConverter.toRoman(values, 0, values.length, dst, 0));
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(new RomanArabicConverter(Integer.toString(values[i])).toRoman(), dst[i]);
+        }
+    }
+    
+    @Test
+    public void toArabic() {
+        final CharSequence[] numbers = {"skipped", " XIV ", "IIII", "0", new StringBuilder("MMM"), "", "-12"};
+        final int[] dst = new int[6];
+        final byte[] status = new byte[6];
+        assertEquals(4, BulkConverter.toArabic(numbers, 1, numbers.length, dst, 0, status, 0));
+        assertArrayEquals(new int[] {14, 0, 0, 3000, 0, -12}, dst);
+        assertArrayEquals(new byte[] {BulkConverter.OK, BulkConverter.MALFORMED, BulkConverter.OUT_OF_RANGE,
+                BulkConverter.OK, BulkConverter.MALFORMED, BulkConverter.OUT_OF_RANGE}, status);
+    }
+    
+    @Test
+    public void toRomanBytesShortDestination() {
+        // MMMCMXCIX needs 9 bytes; the check has to come before anything is written
+        final byte[] dst = new byte[10];
+        final int[] offsets = {-1, -1, -1};
+        try {
+            BulkConverter.toRoman(new int[] {1, 3999}, 0, 2, dst, 1, offsets, 0);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException expected) {
+            assertArrayEquals(new byte[10], dst);
+            assertArrayEquals(new int[] {-1, -1, -1}, offsets);
+        }
+        assertEquals(10, BulkConverter.toRoman(new int[] {1, 3999, 0}, 0, 3, dst, 0, new int[4], 0));
+    }
+    
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void toRomanBytesNegativeOffset() {
+        BulkConverter.toRoman(new int[] {1}, 0, 1, new byte[4], -1, new int[2], 0);
+    }
+    
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void toArabicShortDestination() {
+        BulkConverter.toArabic(new CharSequence[] {"I", "II"}, 0, 2, new int[1], 0, new byte[2], 0);
+    }
+    
+    @Test
+    public void toArabicLines() {
+        final ByteBuffer lines = ByteBuffer.wrap(" XIV \nIIII\nMMkIV\n\n-12\r\n0\nMCM".getBytes(StandardCharsets.ISO_8859_1));
+        final int[] dst = new int[8];
+        final byte[] status = new byte[8];
+        assertEquals(6, BulkConverter.toArabic(lines, dst, 1, status, 1));
+        assertArrayEquals(new int[] {0, 14, 0, 0, 0, -12, 0, 0}, dst);
+        assertArrayEquals(new byte[] {BulkConverter.OK, BulkConverter.OK, BulkConverter.MALFORMED, BulkConverter.MALFORMED,
+                BulkConverter.MALFORMED, BulkConverter.OUT_OF_RANGE, BulkConverter.OUT_OF_RANGE, BulkConverter.OK}, status);
+        // The last line has no newline yet
+        assertEquals("MCM", StandardCharsets.US_ASCII.decode(lines).toString());
+    }
+    
+    @Test
+    public void toArabicLinesUntilFull() {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 1; i < 4000; i++) {
+            text.append(i % 3 == 0 ? Integer.toString(i) : RomanArabicConverter.roman(i)).append(i % 7 == 0 ? "\u00e9\n" : "\n");
+        }
+        final ByteBuffer lines = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.ISO_8859_1));
+        final int[] dst = new int[3000];
+        final byte[] status = new byte[3000];
+        int value = 1;
+        while (lines.hasRemaining()) {
+            final int read = BulkConverter.toArabic(lines, dst, 0, status, 0);
+            for (int i = 0; i < read; i++, value++) {
+                assertEquals(value % 7 == 0 ? 0 : value, dst[i]);
+                assertEquals(value % 7 == 0 ? BulkConverter.MALFORMED : BulkConverter.OK, status[i]);
+            }
+        }
+        assertEquals(4000, value);
+    }
+}
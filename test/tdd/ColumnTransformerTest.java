@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test cases for the ColumnTransformer class.
+ *
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class ColumnTransformerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private ColumnTransformer.Stats stats;
+    
+    private String transform(ColumnTransformer transformer, String input) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stats = transformer.transform(Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))), Channels.newChannel(out));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+    
+    @Test
+    public void onlyTargetColumns() throws Exception {
+        final String input = "XIV,XIV,  MCMXCIV \t,naïve,IV\nI,II,III,IV\n";
+        assertEquals("XIV,14,  1994 \t,naïve,IV\nI,2,3,IV\n", transform(ColumnTransformer.toArabic(',', MalformedPolicy.FAIL, 2, 1), input));
+        assertEquals(2, stats.records());
+        assertEquals(4, stats.converted());
+        assertEquals(input.getBytes(StandardCharsets.UTF_8).length, stats.bytesRead());
+        assertEquals(input.getBytes(StandardCharsets.UTF_8).length - 7, stats.bytesWritten());
+    }
+    
+    @Test
+    public void toRoman() throws Exception {
+        assertEquals("a\tXIV\r\nb\tMMMCMXCIX\r\nc\t4000\r\n",
+                transform(ColumnTransformer.toRoman('\t', MalformedPolicy.COUNT, 1), "a\t14\r\nb\t3999\r\nc\t4000\r\n"));
+        assertEquals(2, stats.converted());
+        assertEquals(1, stats.rejected());
+    }
+    
+    @Test
+    public void quotedFields() throws Exception {
+        final String input = "\"a,\nb\",\"XIV\",\"say \"\"IV\"\"\"\n\"x\"\"\",\" IX \",IV\n";
+        assertEquals("\"a,\nb\",\"14\",\"say \"\"IV\"\"\"\n\"x\"\"\",\" 9 \",IV\n",
+                transform(ColumnTransformer.toArabic(',', MalformedPolicy.FAIL, 1), input));
+        assertEquals(2, stats.records());
+    }
+    
+    @Test
+    public void escapedQuoteInTarget() throws Exception {
+        final String input = "\"X\"\"I\",V\n";
+        assertEquals(input, transform(ColumnTransformer.toArabic(',', MalformedPolicy.COUNT, 0), input));
+        assertEquals(1, stats.rejected());
+    }
+    
+    @Test
+    public void missingColumnsAndLastLine() throws Exception {
+        assertEquals("1\n\n2,x\n3", transform(ColumnTransformer.toArabic(',', MalformedPolicy.SKIP, 0, 5), "I\n\nII,x\nIII"));
+        assertEquals(4, stats.records());
+        assertEquals(3, stats.converted());
+        assertEquals(0, stats.rejected());
+    }
+    
+    @Test
+    public void header() throws Exception {
+        assertEquals("name,value\nx,10\n", transform(ColumnTransformer.toArabic(',', MalformedPolicy.FAIL, 1).withHeader(), "name,value\nx,X\n"));
+    }
+    
+    @Test
+    public void failOnMalformed() throws Exception {
+        try {
+            transform(ColumnTransformer.toArabic(',', MalformedPolicy.FAIL, 1), "a,X\nb,VX\n");
+            fail("Expected MalformedNumberException");
+        } catch (MalformedNumberException e) {
+            assertEquals("Record 2, column 1: Invalid characters before 'X'!", e.getMessage());
+        }
+    }
+    
+    @Test
+    public void failOnOutOfRange() throws Exception {
+        try {
+            transform(ColumnTransformer.toRoman(',', MalformedPolicy.FAIL, 0), "4000\n");
+            fail("Expected ValueOutOfBoundsException");
+        } catch (ValueOutOfBoundsException e) {
+            assertEquals("Record 1, column 0: " + NumeralError.OUT_OF_RANGE.message(' '), e.getMessage());
+        }
+    }
+    
+    @Test
+    public void anyBufferSize() throws Exception {
+        final StringBuilder input = new StringBuilder();
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 1; i < 300; i++) {
+            final String roman = RomanArabicConverter.roman(i);
+            input.append("\"row,").append(i).append("\",").append(roman).append(",\"").append(roman).append("\" ,tail\"\"\n");
+            expected.append("\"row,").append(i).append("\",").append(i).append(",\"").append(i).append("\" ,tail\"\"\n");
+        }
+        for (int size = ColumnTransformer.MIN_BUFFER_SIZE; size < 64; size++) {
+            assertEquals("Buffer " + size, expected.toString(),
+                    transform(ColumnTransformer.toArabic(',', MalformedPolicy.FAIL, 1, 2).withBufferSize(size), input.toString()));
+            assertEquals(299, stats.records());
+        }
+    }
+    
+    @Test
+    public void fieldTooLong() throws Exception {
+        final String input = "a," + " ".repeat(40) + "XIV\nb,XIV\n";
+        assertEquals("a," + " ".repeat(40) + "XIV\nb,14\n",
+                transform(ColumnTransformer.toArabic(',', MalformedPolicy.COUNT, 1).withBufferSize(16), input));
+        assertEquals(1, stats.rejected());
+        try {
+            transform(ColumnTransformer.toArabic(',', MalformedPolicy.FAIL, 1).withBufferSize(16), input);
+            fail("Expected MalformedNumberException");
+        } catch (MalformedNumberException e) {
+            assertEquals("Record 1, column 1: longer than 16 bytes", e.getMessage());
+        }
+    }
+    
+    @Test
+    public void files() throws Exception {
+        final Path in = folder.newFile().toPath();
+        final Path out = folder.newFile().toPath();
+        Files.write(in, "id;year\n1;MCMLXXXIV\n2;MMXXIV\n".getBytes(StandardCharsets.US_ASCII));
+        stats = ColumnTransformer.toArabic(';', MalformedPolicy.COUNT, 1).withHeader().transform(in, out);
+        assertEquals("id;year\n1;1984\n2;2024\n", new String(Files.readAllBytes(out), StandardCharsets.US_ASCII));
+        assertEquals(3, stats.records());
+        assertEquals(0, stats.rejected());
+    }
+    
+    @Test
+    public void empty() throws Exception {
+        assertEquals("", transform(ColumnTransformer.toArabic(',', MalformedPolicy.FAIL, 0), ""));
+        assertEquals(0, stats.records());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void quoteDelimiter() {
+        ColumnTransformer.toArabic('"', MalformedPolicy.FAIL, 0);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void noColumns() {
+        ColumnTransformer.toArabic(',', MalformedPolicy.FAIL);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void negativeColumn() {
+        ColumnTransformer.toRoman(',', MalformedPolicy.FAIL, 1, -1);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void tinyBuffer() {
+        ColumnTransformer.toRoman(',', MalformedPolicy.FAIL, 1).withBufferSize(ColumnTransformer.MIN_BUFFER_SIZE - 1);
+    }
+}
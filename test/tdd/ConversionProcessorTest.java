@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the ConversionProcessor class. Delivery runs on the calling thread, so
+ * everything happens in order and the tests don't have to wait.
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class ConversionProcessorTest {
+
+    /**
+     * Hands out the elements of a list as they're requested, and remembers the requests.
+     */
+    private static final class ListPublisher implements Flow.Publisher<CharSequence>, Flow.Subscription
+    {
+        final List<String> items;
+        final List<Long> requests = new ArrayList<>();
+        Flow.Subscriber<? super CharSequence> subscriber;
+        int next;
+        long demand;
+        boolean cancelled;
+        boolean emitting;
+        
+        ListPublisher(String... items) {
+            this.items = Arrays.asList(items);
+        }
+        
+        @Override
+        public void subscribe(Flow.Subscriber<? super CharSequence> subscriber) {
+            this.subscriber = subscriber;
+            subscriber.onSubscribe(this);
+        }
+        
+        @Override
+        public void request(long n) {
+            requests.add(n);
+            demand += n;
+            if (emitting) return;
+            emitting = true;
+            while (demand > 0 && next < items.size() && !cancelled) {
+                demand--;
+                subscriber.onNext(items.get(next++));
+            }
+            emitting = false;
+            if (next == items.size() && !cancelled) {
+                cancelled = true;
+                subscriber.onComplete();
+            }
+        }
+        
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+    
+    /**
+     * Collects whatever it's given, asking for a fixed number up front.
+     */
+    private static final class Collector implements Flow.Subscriber<Conversion>
+    {
+        final List<Conversion> results = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final long initialRequest;
+        Flow.Subscription subscription;
+        Throwable error;
+        
+        Collector(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+        
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+        
+        @Override
+        public void onNext(Conversion item) {
+            results.add(item);
+        }
+        
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+        
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+    
+    @Test
+    public void convertsToArabic() throws InterruptedException {
+        final ConversionProcessor processor = ConversionProcessor.toArabic(Runnable::run, 16, 2);
+        final Collector collector = new Collector(Long.MAX_VALUE);
+        processor.subscribe(collector);
+        new ListPublisher(" XIV ", "12", "IIII", "-5", "").subscribe(processor);
+        assertTrue(collector.done.await(1, TimeUnit.SECONDS));
+        
+        assertEquals(5, collector.results.size());
+        assertEquals(14, collector.results.get(0).value());
+        assertEquals("XIV", collector.results.get(0).roman());
+        assertEquals(12, collector.results.get(1).value());
+        
+        final Conversion malformed = collector.results.get(2);
+        assertFalse(malformed.isOk());
+        assertEquals(NumeralError.TOO_MANY_REPEATS, malformed.error());
+        assertEquals(3, malformed.errorOffset());
+        assertEquals("Too many 'I's in a row!", malformed.message());
+        assertNull(malformed.roman());
+        
+        assertTrue(collector.results.get(3).isOk());
+        assertEquals(-5, collector.results.get(3).value());
+        assertNull(collector.results.get(3).roman());
+        assertEquals(NumeralError.EMPTY, collector.results.get(4).error());
+    }
+    
+    @Test
+    public void outOfRangeForRoman() throws InterruptedException {
+        final ConversionProcessor processor = ConversionProcessor.toRoman(Runnable::run, 16, 4);
+        final Collector collector = new Collector(Long.MAX_VALUE);
+        processor.subscribe(collector);
+        new ListPublisher("3999", "4000", "MMXIV").subscribe(processor);
+        assertTrue(collector.done.await(1, TimeUnit.SECONDS));
+        
+        assertEquals("MMMCMXCIX", collector.results.get(0).roman());
+        assertEquals(NumeralError.OUT_OF_RANGE, collector.results.get(1).error());
+        assertEquals(4000, collector.results.get(1).value());
+        assertEquals(-1, collector.results.get(1).errorOffset());
+        assertEquals("Roman numerals must be between 1 and 3999, inclusive", collector.results.get(1).message());
+        assertEquals("MMXIV", collector.results.get(2).roman());
+        assertEquals(3, collector.results.size());
+    }
+    
+    @Test
+    public void requestsInBatches() throws InterruptedException {
+        final ConversionProcessor processor = ConversionProcessor.toArabic(Runnable::run, 16, 3);
+        final Collector collector = new Collector(Long.MAX_VALUE);
+        processor.subscribe(collector);
+        final ListPublisher publisher = new ListPublisher("I", "II", "III", "IV", "V", "VI", "VII");
+        publisher.subscribe(processor);
+        assertTrue(collector.done.await(1, TimeUnit.SECONDS));
+        
+        assertEquals(Arrays.asList(3L, 3L, 3L), publisher.requests);
+        for (int i = 0; i < 7; i++) {
+            assertEquals(i + 1, collector.results.get(i).value());
+        }
+    }
+    
+    @Test
+    public void slowSubscriberHoldsBackUpstream() throws InterruptedException {
+        final ConversionProcessor processor = ConversionProcessor.toArabic(Runnable::run, 4, 2);
+        final Collector collector = new Collector(3);
+        processor.subscribe(collector);
+        final String[] items = new String[100];
+        Arrays.fill(items, "X");
+        final ListPublisher publisher = new ListPublisher(items);
+        
+        // Only as much as was asked for is requested, so nothing blocks
+        publisher.subscribe(processor);
+        assertEquals(3, collector.results.size());
+        assertEquals(3, publisher.next);
+        assertEquals(Arrays.asList(2L, 1L), publisher.requests);
+        
+        collector.subscription.request(Long.MAX_VALUE);
+        assertTrue(collector.done.await(1, TimeUnit.SECONDS));
+        assertEquals(100, collector.results.size());
+    }
+    
+    @Test
+    public void upstreamBeforeSubscriber() throws InterruptedException {
+        final ConversionProcessor processor = ConversionProcessor.toArabic(Runnable::run, 16, 2);
+        final ListPublisher publisher = new ListPublisher("I", "II", "III", "IV", "V");
+        publisher.subscribe(processor);
+        assertEquals(0, publisher.next);
+        assertTrue(publisher.requests.isEmpty());
+        
+        final Collector collector = new Collector(Long.MAX_VALUE);
+        processor.subscribe(collector);
+        assertTrue(collector.done.await(1, TimeUnit.SECONDS));
+        assertEquals(5, collector.results.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i + 1, collector.results.get(i).value());
+        }
+    }
+    
+    @Test
+    public void slowestSubscriberSetsDemand() throws InterruptedException {
+        final ConversionProcessor processor = ConversionProcessor.toArabic(Runnable::run, 16, 4);
+        final Collector fast = new Collector(Long.MAX_VALUE);
+        final Collector slow = new Collector(1);
+        processor.subscribe(fast);
+        processor.subscribe(slow);
+        final ListPublisher publisher = new ListPublisher("I", "II", "III", "IV", "V");
+        publisher.subscribe(processor);
+        assertEquals(1, publisher.next);
+        assertEquals(1, fast.results.size());
+        
+        // Once the slow one is gone, the fast one gets the rest
+        slow.subscription.cancel();
+        assertTrue(fast.done.await(1, TimeUnit.SECONDS));
+        assertEquals(5, fast.results.size());
+        assertEquals(1, slow.results.size());
+    }
+    
+    @Test
+    public void upstreamErrorAfterPending() throws InterruptedException {
+        final ConversionProcessor processor = ConversionProcessor.toArabic(Runnable::run, 16, 8);
+        final Collector collector = new Collector(Long.MAX_VALUE);
+        processor.subscribe(collector);
+        processor.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                // The test pushes by hand
+            }
+            
+            @Override
+            public void cancel() {
+                // Nothing to stop
+            }
+        });
+        processor.onNext("V");
+        processor.onError(new IllegalStateException("source broke"));
+        assertTrue(collector.done.await(1, TimeUnit.SECONDS));
+        assertEquals(1, collector.results.size());
+        assertEquals("source broke", collector.error.getMessage());
+    }
+    
+    @Test
+    public void closingCancelsUpstream() {
+        final ConversionProcessor processor = ConversionProcessor.toArabic(Runnable::run, 16, 1);
+        final ListPublisher publisher = new ListPublisher("I", "II", "III");
+        processor.close();
+        publisher.subscribe(processor);
+        assertTrue(publisher.cancelled);
+        assertEquals(0, publisher.next);
+    }
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the ConversionServer class, over loopback.
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class ConversionServerTest {
+
+    private ConversionServer server;
+    
+    @Before
+    public void setUp() throws IOException {
+        final InetAddress loopback = InetAddress.getLoopbackAddress();
+        server = ConversionServer.start(new InetSocketAddress(loopback, 0), new InetSocketAddress(loopback, 0));
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+    
+    @Test
+    public void lineProtocol() throws IOException {
+        try (Socket socket = new Socket(server.tcpAddress().getAddress(), server.tcpAddress().getPort())) {
+            final OutputStream out = socket.getOutputStream();
+            final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            out.write("XIV\n".getBytes(StandardCharsets.US_ASCII));
+            assertEquals("14", in.readLine());
+            out.write("2014   MMXIV -3\r\n".getBytes(StandardCharsets.US_ASCII));
+            assertEquals("MMXIV 2014 !OUT_OF_RANGE", in.readLine());
+            out.write("IIII 12a\n\n".getBytes(StandardCharsets.US_ASCII));
+            assertEquals("!TOO_MANY_REPEATS !NOT_A_NUMBER", in.readLine());
+            assertEquals("!EMPTY", in.readLine());
+        }
+    }
+    
+    @Test
+    public void survivesResetClients() throws IOException {
+        // Connections reset straight away, some maybe before they're even set up
+        for (int i = 0; i < 20; i++) {
+            final Socket reset = new Socket(server.tcpAddress().getAddress(), server.tcpAddress().getPort());
+            reset.setSoLinger(true, 0);
+            reset.close();
+        }
+        try (Socket socket = new Socket(server.tcpAddress().getAddress(), server.tcpAddress().getPort())) {
+            socket.getOutputStream().write("XIV\n".getBytes(StandardCharsets.US_ASCII));
+            final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            assertEquals("14", in.readLine());
+        }
+    }
+    
+    @Test
+    public void pipelined() throws IOException {
+        try (Socket socket = new Socket(server.tcpAddress().getAddress(), server.tcpAddress().getPort())) {
+            final StringBuilder requests = new StringBuilder();
+            for (int i = 1; i < 4000; i++) {
+                requests.append(i).append(' ').append(RomanArabicConverter.valueOf(i).toRoman()).append('\n');
+            }
+            // Everything goes out before any answer is read
+            final Thread writer = new Thread(() -> {
+                try {
+                    socket.getOutputStream().write(requests.toString().getBytes(StandardCharsets.US_ASCII));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            writer.start();
+            final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            for (int i = 1; i < 4000; i++) {
+                assertEquals(RomanArabicConverter.valueOf(i).toRoman() + " " + i, in.readLine());
+            }
+        } catch (ValueOutOfBoundsException e) {
+            throw new AssertionError(e);
+        }
+    }
+    
+    @Test
+    public void tooLong() throws IOException {
+        try (Socket socket = new Socket(server.tcpAddress().getAddress(), server.tcpAddress().getPort())) {
+            final byte[] line = new byte[ConversionServer.BUFFER_SIZE + 10];
+            Arrays.fill(line, (byte) 'I');
+            line[line.length - 1] = '\n';
+            final OutputStream out = socket.getOutputStream();
+            out.write(line);
+            out.write("V\n".getBytes(StandardCharsets.US_ASCII));
+            final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            assertEquals("!TOO_LONG", in.readLine());
+            assertEquals("5", in.readLine());
+        }
+    }
+    
+    private String http(String method, String query, String body) throws IOException {
+        final InetSocketAddress address = server.httpAddress();
+        final URL url = new URL("http", address.getHostString(), address.getPort(), "/convert" + query);
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        if (connection.getResponseCode() != 200) return Integer.toString(connection.getResponseCode());
+        return new String(connection.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+    }
+    
+    @Test
+    public void httpGet() throws IOException {
+        assertEquals("14 MMXIV\n", http("GET", "?q=XIV+2014", null));
+        assertEquals("!EMPTY\n", http("GET", "", null));
+        // An escaped '+' is a sign, not a space
+        assertEquals("V 10\n", http("GET", "?q=%2B5+X", null));
+    }
+    
+    @Test
+    public void httpPost() throws IOException {
+        assertEquals("1 II\n!BAD_SUBTRACTIVE_PAIR\n3999\n", http("POST", "", "I 2\nVX\nMMMCMXCIX"));
+        assertEquals("405", http("PUT", "", "I"));
+    }
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the ConverterMetrics class. Recording is off in the tests, so these record into
+ * their own instances directly.
+ * 
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class ConverterMetricsTest {
+
+    private static void parse(ConverterMetrics metrics, String number, long nanos) {
+        metrics.recordParse(number, 0, number.length(), RomanArabicConverter.tryParse(number, 0, number.length()), nanos);
+    }
+    
+    @Test
+    public void countsInputKinds() {
+        final ConverterMetrics metrics = new ConverterMetrics();
+        parse(metrics, "  XIV", 100);
+        parse(metrics, "MMXIV", 100);
+        parse(metrics, "-14", 100);
+        parse(metrics, "\t+7 ", 100);
+        parse(metrics, "9", 100);
+        parse(metrics, "IIII", 100);
+        parse(metrics, "   ", 100);
+        assertEquals(2, metrics.getRomanInputs());
+        assertEquals(3, metrics.getArabicInputs());
+        assertEquals(2, metrics.getMalformedInputs());
+    }
+    
+    @Test
+    public void countsFormats() {
+        final ConverterMetrics metrics = new ConverterMetrics();
+        metrics.recordFormat(true, 10);
+        metrics.recordFormat(false, 10);
+        metrics.recordFormat(true, 10);
+        assertEquals(3, metrics.getFormats());
+        assertEquals(1, metrics.getOutOfRangeFormats());
+    }
+    
+    @Test
+    public void histogram() {
+        final ConverterMetrics metrics = new ConverterMetrics();
+        for (int i = 0; i < 98; i++) {
+            parse(metrics, "X", 100);
+        }
+        parse(metrics, "X", 0);
+        parse(metrics, "X", 5000);
+        final long[] buckets = metrics.getParseHistogram();
+        assertEquals(64, buckets.length);
+        assertEquals(1, buckets[0]);
+        assertEquals(98, buckets[7]);
+        assertEquals(1, buckets[13]);
+        assertEquals(127, metrics.getParseP50Nanos());
+        assertEquals(127, metrics.getParseP99Nanos());
+        assertEquals(148.0, metrics.getParseMeanNanos(), 0.001);
+        assertEquals(0, metrics.getFormatP99Nanos());
+        assertEquals(0.0, metrics.getFormatMeanNanos(), 0.0);
+    }
+    
+    @Test
+    public void reset() {
+        final ConverterMetrics metrics = new ConverterMetrics();
+        parse(metrics, "XIV", 100);
+        metrics.recordFormat(false, 10);
+        metrics.reset();
+        assertEquals(0, metrics.getRomanInputs());
+        assertEquals(0, metrics.getOutOfRangeFormats());
+        assertArrayEquals(new long[64], metrics.getParseHistogram());
+    }
+    
+    @Test
+    public void publishedThroughJmx() throws Exception {
+        final ConverterMetrics metrics = new ConverterMetrics();
+        final MBeanServer server = MBeanServerFactory.newMBeanServer();
+        metrics.register(server);
+        parse(metrics, "XIV", 100);
+        parse(metrics, "XIIII", 100);
+        final ObjectName name = new ObjectName(ConverterMetrics.OBJECT_NAME);
+        assertEquals(1L, server.getAttribute(name, "RomanInputs"));
+        assertEquals(1L, server.getAttribute(name, "MalformedInputs"));
+        assertEquals(false, server.getAttribute(name, "Enabled"));
+        server.invoke(name, "reset", null, null);
+        assertEquals(0L, server.getAttribute(name, "RomanInputs"));
+    }
+}
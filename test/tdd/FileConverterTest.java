@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test cases for the FileConverter class.
+ *
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class FileConverterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private Path write(String contents) throws IOException {
+        final Path in = folder.newFile().toPath();
+        Files.write(in, contents.getBytes(StandardCharsets.US_ASCII));
+        return in;
+    }
+    
+    private String read(Path out) throws IOException {
+        return new String(Files.readAllBytes(out), StandardCharsets.US_ASCII);
+    }
+    
+    @Test
+    public void toRoman() throws Exception {
+        final Path in = write("1\n  XIV  \r\n3999\nCMXCIX");
+        final Path out = folder.newFile().toPath();
+        final FileConverter.Stats stats = FileConverter.toRoman(in, out);
+        assertEquals("I\nXIV\nMMMCMXCIX\nCMXCIX\n", read(out));
+        assertEquals(4, stats.lines());
+        assertEquals(Files.size(in), stats.bytesRead());
+        assertEquals(Files.size(out), stats.bytesWritten());
+    }
+    
+    @Test
+    public void toArabic() throws Exception {
+        final Path in = write("MMMCMXCIX\n-2147483648\n 0 \n+12\n");
+        final Path out = folder.newFile().toPath();
+        FileConverter.toArabic(in, out);
+        assertEquals("3999\n-2147483648\n0\n12\n", read(out));
+    }
+    
+    @Test
+    public void emptyFile() throws Exception {
+        final Path out = folder.newFile().toPath();
+        assertEquals(0, FileConverter.toArabic(write(""), out).lines());
+        assertEquals("", read(out));
+    }
+    
+    /*
+     * Use tiny windows so lines get cut in half, and some lines don't fit at all
+     */
+    @Test
+    public void smallWindows() throws Exception {
+        final StringBuilder input = new StringBuilder();
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 1; i < 4000; i += 7) {
+            input.append(new RomanArabicConverter(Integer.toString(i)).toRoman()).append(i % 3 == 0 ? "   \n" : "\n");
+            expected.append(i).append('\n');
+        }
+        final Path in = write(input.toString());
+        for (int window = 1; window < 20; window++) {
+            final Path out = folder.newFile().toPath();
+            FileConverter.convert(in, out, false, window);
+            assertEquals(expected.toString(), read(out));
+        }
+    }
+    
+    /*
+     * A window that can't grow any more has to give up on the line, not map the same bytes again
+     */
+    @Test(timeout = 10000)
+    public void lineLongerThanMaxWindow() throws Exception {
+        final Path in = write("XIV\n" + " ".repeat(40) + "XIV\nI\n");
+        try {
+            FileConverter.convert(in, folder.newFile().toPath(), false, 3, 24);
+            fail();
+        } catch (MalformedNumberException e) {
+            assertEquals("Line 2: Lines must not be longer than 24 bytes!", e.getMessage());
+        }
+        
+        // The same line fits once the window can grow far enough, from 3 to 6, 12, 24, 48
+        final Path out = folder.newFile().toPath();
+        assertEquals(3, FileConverter.convert(in, out, false, 3, 48).lines());
+        assertEquals("14\n14\n1\n", read(out));
+    }
+    
+    @Test
+    public void malformedLine() throws Exception {
+        try {
+            FileConverter.toArabic(write("I\nII\nIIII\n"), folder.newFile().toPath());
+            fail();
+        } catch (MalformedNumberException e) {
+            assertEquals("Line 3: Too many 'I's in a row!", e.getMessage());
+        }
+    }
+    
+    @Test
+    public void emptyLine() throws Exception {
+        try {
+            FileConverter.toArabic(write("I\n\nII\n"), folder.newFile().toPath());
+            fail();
+        } catch (MalformedNumberException e) {
+            assertEquals("Line 2: Value must not be empty!", e.getMessage());
+        }
+    }
+    
+    @Test(expected=ValueOutOfBoundsException.class)
+    public void outOfBounds() throws Exception {
+        FileConverter.toRoman(write("12\n4000\n"), folder.newFile().toPath());
+    }
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the LazyRomanArabicConverter class.
+ *
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class LazyRomanArabicConverterTest {
+
+    @Test
+    public void parsesOnFirstRead() throws MalformedNumberException, ValueOutOfBoundsException {
+        final LazyRomanArabicConverter converter = new LazyRomanArabicConverter("  MMXIV ");
+        assertFalse(converter.isParsed());
+        assertEquals("  MMXIV ", converter.input());
+        assertEquals("MMXIV", converter.toRoman());
+        assertTrue(converter.isParsed());
+        assertEquals(2014, converter.toArabic());
+    }
+    
+    @Test
+    public void keepsTheSharedInstance() throws MalformedNumberException, ValueOutOfBoundsException {
+        final LazyRomanArabicConverter converter = new LazyRomanArabicConverter("14");
+        assertSame(RomanArabicConverter.valueOf(14), converter.get());
+        assertSame(converter.get(), converter.get());
+        assertSame(converter.toRoman(), converter.toRoman());
+    }
+    
+    @Test
+    public void malformedWhenRead() {
+        final LazyRomanArabicConverter converter = new LazyRomanArabicConverter("IIII");
+        for (int i = 0; i < 2; i++) {
+            try {
+                converter.toArabic();
+                fail("Expected MalformedNumberException");
+            } catch (MalformedNumberException e) {
+                assertEquals("Too many 'I's in a row!", e.getMessage());
+            }
+        }
+        assertFalse(converter.isParsed());
+    }
+    
+    @Test(expected=ValueOutOfBoundsException.class)
+    public void outOfRange() throws MalformedNumberException, ValueOutOfBoundsException {
+        final LazyRomanArabicConverter converter = new LazyRomanArabicConverter("4000");
+        assertEquals(4000, converter.toArabic());
+        converter.toRoman();
+    }
+    
+    @Test
+    public void racingReaders() throws Exception {
+        final ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < 200; round++) {
+                final LazyRomanArabicConverter converter = new LazyRomanArabicConverter("MCMXCIX");
+                final Callable<String> read = converter::toRoman;
+                final Future<?>[] results = new Future<?>[4];
+                for (int i = 0; i < results.length; i++) {
+                    results[i] = threads.submit(read);
+                }
+                for (Future<?> result : results) {
+                    assertEquals("MCMXCIX", result.get());
+                }
+                assertSame(RomanArabicConverter.valueOf(1999), converter.get());
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+}
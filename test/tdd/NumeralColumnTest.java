@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the NumeralColumn class. Every case runs on and off the heap.
+ *
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class NumeralColumnTest {
+
+    private static NumeralColumn[] columns(int capacity) {
+        return new NumeralColumn[] {NumeralColumn.onHeap(capacity), NumeralColumn.offHeap(capacity)};
+    }
+    
+    @Test
+    public void appendAndGet() {
+        for (NumeralColumn column : columns(2)) {
+            assertTrue(column.append(1));
+            assertTrue(column.append(3999));
+            assertFalse(column.append(4000));
+            assertFalse(column.append(-5));
+            assertEquals(4, column.size());
+            assertEquals(1, column.get(0));
+            assertEquals(3999, column.get(1));
+            assertEquals(0, column.get(2));
+            assertTrue(column.isEmpty(3));
+            assertFalse(column.isEmpty(1));
+        }
+    }
+    
+    @Test
+    public void bulk() {
+        final int[] values = new int[5000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        for (NumeralColumn column : columns(0)) {
+            // 0 and 4000..4999
+            assertEquals(1001, column.append(values, 0, values.length));
+            assertEquals(values.length, column.size());
+            assertTrue(column.capacity() >= values.length);
+            final int[] decoded = new int[10];
+            column.get(3995, 4003, decoded, 1);
+            assertArrayEquals(new int[] {0, 3995, 3996, 3997, 3998, 3999, 0, 0, 0, 0}, decoded);
+            assertEquals(3999L * 4000 / 2, column.sum());
+        }
+    }
+    
+    @Test
+    public void appendText() {
+        for (NumeralColumn column : columns(4)) {
+            assertEquals(3, column.append(new CharSequence[] {" XIV", "42 ", "IIII", "0", "4000", "MMMCMXCIX"}, 1, 6));
+            assertEquals(5, column.size());
+            assertEquals(42, column.get(0));
+            assertTrue(column.isEmpty(1));
+            assertTrue(column.isEmpty(2));
+            assertTrue(column.isEmpty(3));
+            assertEquals(3999, column.get(4));
+        }
+    }
+    
+    @Test
+    public void set() {
+        for (NumeralColumn column : columns(4)) {
+            column.append(new int[] {1, 2, 3}, 0, 3);
+            assertTrue(column.set(1, 20));
+            assertFalse(column.set(2, 0));
+            assertEquals(20, column.get(1));
+            assertTrue(column.isEmpty(2));
+        }
+    }
+    
+    @Test
+    public void toRoman() {
+        for (NumeralColumn column : columns(4)) {
+            column.append(new int[] {14, 5000, 1994}, 0, 3);
+            assertEquals("XIV", column.toRoman(0));
+            assertNull(column.toRoman(1));
+            final String[] romans = new String[4];
+            assertEquals(1, column.toRoman(0, 3, romans, 1));
+            assertArrayEquals(new String[] {null, "XIV", null, "MCMXCIV"}, romans);
+            final byte[] bytes = new byte[3 * RomanArabicConverter.MAX_ROMAN_LENGTH];
+            final int[] offsets = new int[4];
+            final int length = column.toRoman(0, 3, bytes, 0, offsets, 0);
+            assertEquals("XIVMCMXCIV", new String(bytes, 0, length, StandardCharsets.US_ASCII));
+            assertArrayEquals(new int[] {0, 3, 3, 10}, offsets);
+        }
+    }
+    
+    @Test
+    public void growsAndKeepsCells() {
+        for (NumeralColumn column : columns(1)) {
+            for (int i = 1; i < 4000; i++) {
+                column.append(i);
+            }
+            for (int i = 1; i < 4000; i++) {
+                assertEquals(i, column.get(i - 1));
+            }
+            assertEquals(2L * column.capacity(), column.sizeInBytes());
+        }
+    }
+    
+    @Test
+    public void clear() {
+        for (NumeralColumn column : columns(4)) {
+            column.append(7);
+            final int capacity = column.capacity();
+            column.clear();
+            assertEquals(0, column.size());
+            assertEquals(capacity, column.capacity());
+            assertEquals(0, column.sum());
+        }
+    }
+    
+    @Test
+    public void kinds() {
+        assertFalse(NumeralColumn.onHeap().isOffHeap());
+        assertTrue(NumeralColumn.offHeap(1).isOffHeap());
+    }
+    
+    @Test
+    public void toRomanBytesShortDestination() {
+        for (NumeralColumn column : columns(4)) {
+            column.append(new int[] {1, 3999, 0}, 0, 3);
+            // MMMCMXCIX needs 9 bytes; the check has to come before anything is written
+            final byte[] dst = new byte[10];
+            final int[] offsets = {-1, -1, -1, -1};
+            try {
+                column.toRoman(0, 3, dst, 1, offsets, 0);
+                fail("Expected IndexOutOfBoundsException");
+            } catch (IndexOutOfBoundsException expected) {
+                assertArrayEquals(new byte[10], dst);
+                assertArrayEquals(new int[] {-1, -1, -1, -1}, offsets);
+            }
+            assertEquals(10, column.toRoman(0, 3, dst, 0, offsets, 0));
+        }
+    }
+    
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void getPastSize() {
+        final NumeralColumn column = NumeralColumn.onHeap(8);
+        column.append(1);
+        column.get(1);
+    }
+    
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void bulkGetPastSize() {
+        final NumeralColumn column = NumeralColumn.offHeap(8);
+        column.append(1);
+        column.get(0, 2, new int[2], 0);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void negativeCapacity() {
+        NumeralColumn.onHeap(-1);
+    }
+}
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+package tdd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the NumeralDecoder class. Whatever the chunks, every record has to come out the
+ * way tryParse reads it on its own.
+ *
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class NumeralDecoderTest {
+
+    /** Records to split, the tricky ones around spaces, signs and limits */
+    private static final String[] RECORDS = {
+        "XIV", "  mmxxiv \r", "MCMXCIV", "MMMCMXCIX", "IIII", "IXI", "X IV", "XIV?", "",
+        "   ", "42", " -17 ", "+0", "-", "+ ", "- 5", "2147483647", "-2147483648",
+        "2147483648", "-2147483649", "99999999999", "1 2", "ÿX", "Xÿ", "\tV\t",
+    };
+    
+    /** Results in the order they were emitted */
+    private long[] results = new long[16];
+    private int count;
+    
+    private void collect(long result) {
+        if (count == results.length) results = Arrays.copyOf(results, count * 2);
+        results[count++] = result;
+    }
+    
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+    
+    /** Feeds text split at the given places, then finishes */
+    private void decode(NumeralDecoder decoder, String text, int... splits) {
+        int from = 0;
+        for (int split : splits) {
+            decoder.feed(bytes(text.substring(from, split)), this::collect);
+            from = split;
+        }
+        decoder.feed(bytes(text.substring(from)), this::collect);
+        decoder.finish(this::collect);
+    }
+    
+    @Test
+    public void everySplit() {
+        final NumeralDecoder decoder = new NumeralDecoder();
+        for (String record : RECORDS) {
+            final long expected = RomanArabicConverter.tryParse(record, 0, record.length());
+            for (int split = 0; split <= record.length(); split++) {
+                count = 0;
+                decoder.reset();
+                decode(decoder, record + "\n", split);
+                assertEquals(record + " split at " + split, 1, count);
+                assertEquals(record + " split at " + split, expected, results[0]);
+            }
+        }
+    }
+    
+    @Test
+    public void byteAtATime() {
+        final String text = String.join("\n", RECORDS) + "\n";
+        final int[] splits = new int[text.length() - 1];
+        for (int i = 0; i < splits.length; i++) splits[i] = i + 1;
+        final NumeralDecoder decoder = new NumeralDecoder();
+        decode(decoder, text, splits);
+        assertEquals(RECORDS.length, count);
+        for (int i = 0; i < RECORDS.length; i++) {
+            assertEquals(RECORDS[i], RomanArabicConverter.tryParse(RECORDS[i], 0, RECORDS[i].length()), results[i]);
+        }
+        assertEquals(RECORDS.length, decoder.records());
+        assertEquals(text.length(), decoder.position());
+    }
+    
+    @Test
+    public void randomChunks() {
+        final Random random = new Random(24);
+        final String letters = "IVXLCDMivx0123456789+- \t?";
+        final NumeralDecoder decoder = new NumeralDecoder((byte) ',');
+        for (int round = 0; round < 200; round++) {
+            final String[] records = new String[1 + random.nextInt(20)];
+            for (int i = 0; i < records.length; i++) {
+                final char[] chars = new char[random.nextInt(12)];
+                for (int j = 0; j < chars.length; j++) chars[j] = letters.charAt(random.nextInt(letters.length()));
+                records[i] = new String(chars);
+            }
+            final String text = String.join(",", records) + ",";
+            final int[] splits = random.ints(random.nextInt(6), 0, text.length() + 1).sorted().toArray();
+            count = 0;
+            decoder.reset();
+            decode(decoder, text, splits);
+            assertEquals(text, records.length, count);
+            for (int i = 0; i < records.length; i++) {
+                assertEquals(records[i], RomanArabicConverter.tryParse(records[i], 0, records[i].length()), results[i]);
+            }
+        }
+    }
+    
+    @Test
+    public void errorOffsets() {
+        final NumeralDecoder decoder = new NumeralDecoder();
+        decode(decoder, "X IV\n  XIV?\n-\n", 2, 8);
+        assertEquals(3, count);
+        assertEquals(NumeralError.UNEXPECTED_CHARACTER, NumeralError.of(results[0]));
+        assertEquals(1, NumeralError.offsetOf(results[0]));
+        assertEquals(5, NumeralError.offsetOf(results[1]));
+        assertEquals(NumeralError.NOT_A_NUMBER, NumeralError.of(results[2]));
+        assertEquals(0, NumeralError.offsetOf(results[2]));
+    }
+    
+    @Test
+    public void offending() {
+        final StringBuilder seen = new StringBuilder();
+        final NumeralDecoder decoder = new NumeralDecoder();
+        decoder.feed(bytes("X\tIV\nXIV?\n-\n  \nIIII\nXIV\n"), result -> seen.append(decoder.offending()));
+        assertEquals("\t?- I ", seen.toString());
+    }
+    
+    @Test
+    public void finish() {
+        final NumeralDecoder decoder = new NumeralDecoder();
+        decoder.feed(bytes("XIV\nMM"), this::collect);
+        assertEquals(1, count);
+        assertTrue(decoder.hasPartialRecord());
+        assertTrue(decoder.finish(this::collect));
+        assertEquals(2000, results[1]);
+        assertFalse(decoder.hasPartialRecord());
+        assertFalse(decoder.finish(this::collect));
+        assertEquals(2, count);
+        assertEquals(2, decoder.records());
+    }
+    
+    @Test
+    public void reset() {
+        final NumeralDecoder decoder = new NumeralDecoder();
+        decoder.feed(bytes("XIV\nMCM"), this::collect);
+        decoder.reset();
+        assertFalse(decoder.hasPartialRecord());
+        assertEquals(0, decoder.records());
+        assertEquals(0, decoder.position());
+        decoder.feed(bytes("XC\n"), this::collect);
+        assertEquals(2, count);
+        assertEquals(90, results[1]);
+    }
+    
+    @Test
+    public void positionMoves() {
+        final ByteBuffer chunk = bytes("..XIV\n..");
+        chunk.position(2).limit(6);
+        final NumeralDecoder decoder = new NumeralDecoder();
+        decoder.feed(chunk, this::collect);
+        assertEquals(6, chunk.position());
+        assertEquals(4, decoder.position());
+        assertEquals(14, results[0]);
+    }
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test cases for the NumeralDictionary class.
+ *
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class NumeralDictionaryTest {
+
+    @ClassRule
+    public static final TemporaryFolder FOLDER = new TemporaryFolder();
+    
+    private static NumeralDictionary dictionary;
+    
+    @BeforeClass
+    public static void map() throws IOException {
+        dictionary = NumeralDictionary.open(FOLDER.getRoot().toPath().resolve("numerals.dict"));
+    }
+    
+    @Test
+    public void encodesLikeTheConverter() throws ValueOutOfBoundsException {
+        final byte[] expected = new byte[RomanArabicConverter.MAX_ROMAN_LENGTH];
+        final byte[] actual = new byte[RomanArabicConverter.MAX_ROMAN_LENGTH + 1];
+        for (int value = 1; value < 4000; value++) {
+            final int length = RomanArabicConverter.encode(value, expected, 0);
+            assertEquals(length, dictionary.encode(value, actual, 1));
+            assertEquals(new String(expected, 0, length, StandardCharsets.US_ASCII), new String(actual, 1, length, StandardCharsets.US_ASCII));
+            assertEquals(RomanArabicConverter.valueOf(value).toRoman(), dictionary.toRoman(value));
+        }
+        assertEquals(-1, dictionary.encode(0, actual, 0));
+        assertEquals(-1, dictionary.encode(4000, actual, 0));
+        assertNull(dictionary.toRoman(-1));
+    }
+    
+    @Test
+    public void encodeIntoBuffer() {
+        final ByteBuffer dst = ByteBuffer.allocate(11);
+        assertEquals(3, dictionary.encode(14, dst));
+        assertEquals(7, dictionary.encode(1994, dst));
+        assertEquals(-1, dictionary.encode(4000, dst));
+        assertEquals("XIVMCMXCIV", new String(dst.array(), 0, dst.position(), StandardCharsets.US_ASCII));
+        try {
+            dictionary.encode(3888, dst);
+            fail("Expected BufferOverflowException");
+        } catch (BufferOverflowException e) {
+            assertEquals(10, dst.position());
+        }
+    }
+    
+    @Test
+    public void decodesLikeTheConverter() {
+        for (int value = 1; value < 4000; value++) {
+            final String roman = " " + RomanArabicConverter.roman(value) + "\t";
+            assertEquals(value, dictionary.decodeCanonical(roman, 0, roman.length()));
+            assertEquals(value, dictionary.tryParse(roman, 0, roman.length()));
+        }
+        for (String other : new String[] {"IIII", "IVI", "XM", "", "42", " -7", "ABC", "MMMM"}) {
+            assertEquals(other, -1, dictionary.decodeCanonical(other, 0, other.length()));
+            assertEquals(other, RomanArabicConverter.tryParse(other, 0, other.length()), dictionary.tryParse(other, 0, other.length()));
+        }
+    }
+    
+    @Test
+    public void sameFile() throws IOException {
+        final Path again = FOLDER.getRoot().toPath().resolve("again.dict");
+        NumeralDictionary.write(again);
+        assertEquals(Files.size(again), NumeralDictionary.map(again).sizeInBytes());
+        assertEquals(dictionary.sizeInBytes(), Files.size(again));
+        NumeralDictionary.write(again);
+        try (Stream<Path> files = Files.list(FOLDER.getRoot().toPath())) {
+            // No temporary files left behind
+            assertEquals(1, files.filter(p -> p.getFileName().toString().startsWith("again")).count());
+        }
+    }
+    
+    @Test
+    public void notADictionary() throws IOException {
+        final Path file = FOLDER.newFile().toPath();
+        Files.write(file, new byte[200000]);
+        try {
+            NumeralDictionary.map(file);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith("is not a numeral dictionary"));
+        }
+    }
+    
+    @Test
+    public void corrupt() throws IOException {
+        final Path file = FOLDER.getRoot().toPath().resolve("corrupt.dict");
+        NumeralDictionary.write(file);
+        final byte[] bytes = Files.readAllBytes(file);
+        // The start of the numeral for 2 moves past the one for 3
+        bytes[16 + 2 * 4] = 100;
+        Files.write(file, bytes);
+        try {
+            NumeralDictionary.map(file);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith("is a corrupt numeral dictionary"));
+        }
+    }
+}
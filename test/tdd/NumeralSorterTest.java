@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the NumeralSorter class.
+ *
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class NumeralSorterTest {
+
+    /**
+     * @param count how many
+     * @param wide whether values go past 3999, so the radix sort needs more than one pass
+     * @return Roman and Arabic numbers, some padded, with the same values often, and some invalid text
+     */
+    private static String[] numbers(int count, boolean wide) {
+        final Random random = new Random(count);
+        final String[] numbers = new String[count];
+        for (int i = 0; i < count; i++) {
+            final int value = 1 + random.nextInt(200);
+            switch (random.nextInt(wide ? 6 : 5)) {
+            case 0: numbers[i] = RomanArabicConverter.roman(value); break;
+            case 1: numbers[i] = " " + RomanArabicConverter.roman(value) + " "; break;
+            case 2: numbers[i] = Integer.toString(value); break;
+            case 3: numbers[i] = random.nextInt(20) == 0 ? "IIII" + (char) ('a' + random.nextInt(3)) : RomanArabicConverter.roman(value); break;
+            case 4: numbers[i] = new String(RomanArabicConverter.roman(value)); break;
+            default: numbers[i] = Integer.toString(random.nextInt()); break;
+            }
+        }
+        return numbers;
+    }
+    
+    /**
+     * Checks that numbers were sorted the way a stable comparison sort with BY_VALUE sorts them,
+     * down to which instance ends up where.
+     */
+    private static void assertSortedLike(String[] expected, String[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            assertSame("Index " + i, expected[i], actual[i]);
+        }
+    }
+    
+    @Test
+    public void compare() {
+        assertTrue(NumeralSorter.compare("IX", "X") < 0);
+        assertTrue(NumeralSorter.compare("MM", "1999") > 0);
+        assertEquals(0, NumeralSorter.compare(" XIV ", "14"));
+        assertTrue(NumeralSorter.compare("-5", "I") < 0);
+        assertTrue(NumeralSorter.compare("2147483647", "IIII") < 0);
+        assertTrue(NumeralSorter.compare("IIII", "VX") < 0);
+        assertEquals(0, NumeralSorter.compare("IIII", "IIII"));
+        assertTrue(NumeralSorter.BY_VALUE.compare("", "I") > 0);
+    }
+    
+    @Test
+    public void sortsLikeStableComparisonSort() {
+        for (boolean wide : new boolean[] {false, true}) {
+            for (int count : new int[] {0, 1, 2, 17, 5000}) {
+                final String[] expected = numbers(count, wide);
+                final String[] actual = expected.clone();
+                Arrays.sort(expected, NumeralSorter.BY_VALUE);
+                NumeralSorter.sort(actual);
+                assertSortedLike(expected, actual);
+            }
+        }
+    }
+    
+    @Test
+    public void parallelSortsLikeSort() {
+        for (boolean wide : new boolean[] {false, true}) {
+            final String[] expected = numbers(5 * NumeralSorter.PARALLEL_THRESHOLD + 3, wide);
+            final String[] actual = expected.clone();
+            NumeralSorter.sort(expected);
+            NumeralSorter.parallelSort(actual);
+            assertSortedLike(expected, actual);
+        }
+    }
+    
+    @Test
+    public void range() {
+        final String[] numbers = {"X", "III", "II", "I", "V"};
+        NumeralSorter.sort(numbers, 1, 4);
+        assertArrayEquals(new String[] {"X", "I", "II", "III", "V"}, numbers);
+    }
+    
+    @Test
+    public void extremes() {
+        final String[] numbers = {"2147483647", "-2147483648", "0", "nope", "I", "-2147483648"};
+        NumeralSorter.sort(numbers);
+        assertArrayEquals(new String[] {"-2147483648", "-2147483648", "0", "I", "2147483647", "nope"}, numbers);
+    }
+    
+    @Test
+    public void allTheSame() {
+        final String[] numbers = {"V", "5", " V", "+5"};
+        final String[] sorted = numbers.clone();
+        NumeralSorter.sort(sorted);
+        assertArrayEquals(numbers, sorted);
+    }
+    
+    @Test
+    public void allInvalid() {
+        final String[] numbers = {"b", "a", "e"};
+        NumeralSorter.parallelSort(numbers);
+        assertArrayEquals(new String[] {"a", "b", "e"}, numbers);
+    }
+    
+    @Test
+    public void distinct() {
+        final CharSequence[] numbers = {"I", "1", " I", "II", "X", "10", "IIII", "IIII", "VX"};
+        assertEquals(5, NumeralSorter.distinct(numbers, 0, numbers.length));
+        assertArrayEquals(new CharSequence[] {"I", "II", "X", "IIII", "VX", null, null, null, null}, numbers);
+    }
+    
+    @Test
+    public void distinctRange() {
+        final CharSequence[] numbers = {"V", "V", "V", "VI"};
+        assertEquals(3, NumeralSorter.distinct(numbers, 1, 4));
+        assertArrayEquals(new CharSequence[] {"V", "V", "VI", null}, numbers);
+        assertEquals(2, NumeralSorter.distinct(numbers, 2, 2));
+    }
+    
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void badRange() {
+        NumeralSorter.sort(new String[2], 1, 3);
+    }
+}
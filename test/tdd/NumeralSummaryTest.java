@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test cases for the NumeralSummary class.
+ *
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class NumeralSummaryTest {
+
+    private static final String COLUMN = " XIV\n12\nIIII\n-7\r\n\nMMM\n4000\nhello\n99";
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+    
+    private static void assertColumn(NumeralSummary summary) {
+        assertEquals(9, summary.rows());
+        assertEquals(6, summary.count());
+        assertEquals(14 + 12 - 7 + 3000 + 4000 + 99, summary.sum());
+        assertEquals(-7, summary.min());
+        assertEquals(4000, summary.max());
+        assertEquals(3, summary.malformed());
+        assertEquals(2, summary.outOfRange());
+        final long[] histogram = new long[NumeralSummary.BUCKETS];
+        histogram[0] = 3;
+        histogram[30] = 1;
+        assertArrayEquals(histogram, summary.histogram());
+    }
+    
+    @Test
+    public void buffer() throws MalformedNumberException {
+        final ByteBuffer column = bytes(COLUMN);
+        assertColumn(NumeralSummary.of(column, MalformedPolicy.COUNT));
+        assertEquals(0, column.position());
+    }
+    
+    @Test
+    public void skip() throws MalformedNumberException {
+        final NumeralSummary summary = NumeralSummary.of(bytes(COLUMN), MalformedPolicy.SKIP);
+        assertEquals(9, summary.rows());
+        assertEquals(6, summary.count());
+        assertEquals(0, summary.malformed());
+    }
+    
+    @Test
+    public void failOnMalformed() {
+        try {
+            NumeralSummary.of(bytes(COLUMN), MalformedPolicy.FAIL);
+            fail("Expected MalformedNumberException");
+        } catch (MalformedNumberException e) {
+            assertEquals("Line 3: Too many 'I's in a row!", e.getMessage());
+        }
+        try {
+            NumeralSummary.of(bytes("I\nII\nIIIé\n"), MalformedPolicy.FAIL);
+            fail("Expected MalformedNumberException");
+        } catch (MalformedNumberException e) {
+            assertEquals("Line 3: Unexpected character 'é'!", e.getMessage());
+        }
+    }
+    
+    @Test
+    public void empty() throws MalformedNumberException {
+        final NumeralSummary summary = NumeralSummary.of(bytes(""), MalformedPolicy.FAIL);
+        assertEquals(0, summary.rows());
+        assertEquals(Integer.MAX_VALUE, summary.min());
+        assertEquals(Integer.MIN_VALUE, summary.max());
+        assertEquals(0.0, summary.average(), 0.0);
+    }
+    
+    @Test
+    public void file() throws IOException, MalformedNumberException {
+        final Path in = folder.newFile().toPath();
+        Files.write(in, COLUMN.getBytes(StandardCharsets.US_ASCII));
+        assertColumn(NumeralSummary.of(in, MalformedPolicy.COUNT));
+        // Windows that split lines, and one line bigger than a window
+        assertColumn(NumeralSummary.of(in, MalformedPolicy.COUNT, 3));
+    }
+    
+    @Test
+    public void stream() throws IOException, MalformedNumberException {
+        assertColumn(NumeralSummary.of(new ByteArrayInputStream(COLUMN.getBytes(StandardCharsets.US_ASCII)), MalformedPolicy.COUNT));
+        
+        // A line longer than the read buffer
+        final StringBuilder longLine = new StringBuilder("I\n");
+        for (int i = 0; i < 100000; i++) {
+            longLine.append(' ');
+        }
+        longLine.append("MM\nX\n");
+        final NumeralSummary summary = NumeralSummary.of(new ByteArrayInputStream(longLine.toString().getBytes(StandardCharsets.US_ASCII)), MalformedPolicy.FAIL);
+        assertEquals(3, summary.count());
+        assertEquals(2011, summary.sum());
+    }
+    
+    /*
+     * Neither a window nor a buffer that can't grow any more can go round again on the same line
+     */
+    @Test(timeout = 10000)
+    public void lineTooLong() throws IOException, MalformedNumberException {
+        final String text = "I\n" + " ".repeat(40) + "MM\nX\n";
+        final Path in = folder.newFile().toPath();
+        Files.write(in, text.getBytes(StandardCharsets.US_ASCII));
+        for (MalformedPolicy policy : MalformedPolicy.values()) {
+            try {
+                NumeralSummary.of(in, policy, 3, 24);
+                fail("Expected MalformedNumberException");
+            } catch (MalformedNumberException e) {
+                assertEquals("Line 2: Lines must not be longer than 24 bytes!", e.getMessage());
+            }
+            try {
+                NumeralSummary.of(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)), policy, 3, 24);
+                fail("Expected MalformedNumberException");
+            } catch (MalformedNumberException e) {
+                assertEquals("Line 2: Lines must not be longer than 24 bytes!", e.getMessage());
+            }
+        }
+        
+        // Both fit once they can grow far enough, from 3 to 6, 12, 24, 48
+        assertEquals(2011, NumeralSummary.of(in, MalformedPolicy.FAIL, 3, 48).sum());
+        assertEquals(2011, NumeralSummary.of(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)), MalformedPolicy.FAIL, 3, 48).sum());
+    }
+    
+    @Test
+    public void combinedPartitions() throws MalformedNumberException {
+        final StringBuilder text = new StringBuilder();
+        for (int i = -50; i < 4100; i++) {
+            text.append(i % 11 == 0 ? "bad" : i % 2 == 0 ? Integer.toString(i) : RomanArabicConverter.roman(i) == null ? "0" : RomanArabicConverter.roman(i)).append('\n');
+        }
+        final ByteBuffer whole = bytes(text.toString());
+        final NumeralSummary expected = NumeralSummary.of(whole, MalformedPolicy.COUNT);
+        
+        // Split after a newline roughly every thousand bytes, like a parallel job would
+        final NumeralSummary combined = new NumeralSummary(MalformedPolicy.COUNT);
+        int start = 0;
+        while (start < whole.limit()) {
+            int end = Math.min(whole.limit(), start + 1000);
+            while (end < whole.limit() && whole.get(end - 1) != '\n') end++;
+            combined.combine(NumeralSummary.of(whole.duplicate().limit(end).position(start), MalformedPolicy.COUNT));
+            start = end;
+        }
+        assertEquals(expected.toString(), combined.toString());
+        assertArrayEquals(expected.histogram(), combined.histogram());
+    }
+    
+    @Test
+    public void acceptDirectly() throws MalformedNumberException {
+        final NumeralSummary summary = new NumeralSummary(MalformedPolicy.COUNT);
+        summary.accept("xx XIV xx", 3, 6);
+        summary.accept(5);
+        summary.accept("IIX", 0, 3);
+        assertEquals(2, summary.rows());
+        assertEquals(2, summary.count());
+        assertEquals(19, summary.sum());
+        assertEquals(1, summary.malformed());
+        assertEquals(9.5, summary.average(), 0.0);
+    }
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test cases for the ParallelConverter class. The thresholds are tiny so the inputs actually get
+ * split, and everything is checked against BulkConverter.
+ *
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class ParallelConverterTest {
+
+    private final ParallelConverter converter = new ParallelConverter(4, 7);
+    
+    @After
+    public void tearDown() {
+        converter.close();
+    }
+    
+    private static int[] randomValues(int count) {
+        final Random random = new Random(42);
+        final int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextInt(4100) - 50;
+        }
+        return values;
+    }
+    
+    @Test
+    public void toRomanArray() {
+        final int[] values = randomValues(10000);
+        final String[] expected = new String[values.length];
+        final String[] actual = new String[values.length + 3];
+        final int failed = BulkConverter.toRoman(values, 5, values.length, expected, 0);
+        assertEquals(failed, converter.toRoman(values, 5, values.length, actual, 3));
+        for (int i = 0; i < values.length - 5; i++) {
+            assertEquals(expected[i], actual[i + 3]);
+        }
+    }
+    
+    @Test
+    public void toArabicArray() {
+        final int[] values = randomValues(10000);
+        final CharSequence[] numbers = new CharSequence[values.length];
+        for (int i = 0; i < values.length; i++) {
+            final String roman = RomanArabicConverter.roman(values[i]);
+            numbers[i] = i % 10 == 0 ? "bad" : roman == null ? Integer.toString(values[i]) : roman;
+        }
+        final int[] expected = new int[values.length];
+        final byte[] expectedStatus = new byte[values.length];
+        final int[] actual = new int[values.length];
+        final byte[] actualStatus = new byte[values.length];
+        final int failed = BulkConverter.toArabic(numbers, 0, numbers.length, expected, 0, expectedStatus, 0);
+        assertEquals(failed, converter.toArabic(numbers, 0, numbers.length, actual, 0, actualStatus, 0));
+        assertArrayEquals(expected, actual);
+        assertArrayEquals(expectedStatus, actualStatus);
+    }
+    
+    @Test
+    public void smallInputsStayOnCaller() {
+        final String[] dst = new String[2];
+        assertEquals(1, new ParallelConverter().toRoman(new int[] {9, 0}, 0, 2, dst, 0));
+        assertArrayEquals(new String[] {"IX", null}, dst);
+    }
+    
+    @Test
+    public void lines() throws MalformedNumberException, ValueOutOfBoundsException {
+        final StringBuilder input = new StringBuilder();
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 1; i < 4000; i++) {
+            input.append(i % 5 == 0 ? " " : "").append(i).append(i % 3 == 0 ? "\r\n" : "\n");
+            expected.append(RomanArabicConverter.roman(i)).append('\n');
+        }
+        input.append("7");
+        expected.append("VII\n");
+        final byte[] bytes = ("ignored\n" + input).getBytes(StandardCharsets.US_ASCII);
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(8);
+        final byte[] roman = converter.toRoman(buffer);
+        assertEquals(expected.toString(), new String(roman, StandardCharsets.US_ASCII));
+        assertEquals(8, buffer.position());
+        
+        final byte[] arabic = converter.toArabic(ByteBuffer.wrap(roman));
+        assertEquals(input.toString().replace(" ", "").replace("\r", "") + "\n", new String(arabic, StandardCharsets.US_ASCII));
+    }
+    
+    @Test
+    public void firstBadLineIsReported() throws ValueOutOfBoundsException {
+        final StringBuilder input = new StringBuilder();
+        for (int i = 1; i < 1000; i++) {
+            input.append(i == 500 || i == 900 ? "IIII" : "XII").append('\n');
+        }
+        try {
+            converter.toArabic(ByteBuffer.wrap(input.toString().getBytes(StandardCharsets.US_ASCII)));
+            fail();
+        } catch (MalformedNumberException e) {
+            assertEquals("Line 500: Too many 'I's in a row!", e.getMessage());
+        }
+    }
+    
+    @Test(expected=ValueOutOfBoundsException.class)
+    public void outOfBoundsLine() throws MalformedNumberException, ValueOutOfBoundsException {
+        converter.toRoman(ByteBuffer.wrap("1\n2\n3\n4\n5\n6\n7\n8\n0\n10\n".getBytes(StandardCharsets.US_ASCII)));
+    }
+    
+    @Test
+    public void closeShutsDownOwnPool() {
+        final ParallelConverter owned = new ParallelConverter(2, 7);
+        owned.close();
+        try {
+            owned.toRoman(randomValues(100), 0, 100, new String[100], 0);
+            fail("Expected RejectedExecutionException");
+        } catch (RejectedExecutionException expected) {
+            // The pool is gone
+        }
+        // Small enough for the calling thread
+        assertEquals(0, owned.toRoman(new int[] {1}, 0, 1, new String[1], 0));
+    }
+    
+    @Test
+    public void closeLeavesGivenPool() {
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            try (ParallelConverter given = new ParallelConverter(pool, 7)) {
+                given.toRoman(randomValues(100), 0, 100, new String[100], 0);
+            }
+            assertFalse(pool.isShutdown());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the ParseCache class.
+ *
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class ParseCacheTest {
+
+    private static final String[] SPELLINGS = {"XIV", " XIV ", "14", "  14", "IIII", "", "   ", "-2147483648", "2147483648",
+            "MMMCMXCIX", "IVgarbage", "x", "0", "+7"};
+    
+    @Test
+    public void sameAsUncached() {
+        final ParseCache cache = new ParseCache(64);
+        for (int round = 0; round < 3; round++) {
+            for (String spelling : SPELLINGS) {
+                // Embedded at different offsets, so cached error offsets have to move
+                final String padded = "#".repeat(round) + spelling + "#";
+                final int from = round;
+                final int to = round + spelling.length();
+                assertEquals(padded, RomanArabicConverter.tryParse(padded, from, to), cache.tryParse(padded, from, to));
+            }
+        }
+        // Six of them are Arabic numbers, which aren't cached
+        assertEquals(SPELLINGS.length - 6, cache.misses());
+        assertEquals(2 * (SPELLINGS.length - 6), cache.hits());
+    }
+    
+    @Test
+    public void converter() throws MalformedNumberException {
+        final ParseCache cache = new ParseCache(16);
+        assertSame(RomanArabicConverter.valueOf(14), cache.converter(" XIV "));
+        assertSame(RomanArabicConverter.valueOf(14), cache.converter(" XIV "));
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.converter("VX");
+                fail("Expected MalformedNumberException");
+            } catch (MalformedNumberException e) {
+                assertEquals("Invalid characters before 'X'!", e.getMessage());
+            }
+        }
+        assertEquals(2, cache.hits());
+    }
+    
+    @Test
+    public void bounded() {
+        final ParseCache cache = new ParseCache(100);
+        assertEquals(128, cache.capacity());
+        for (int i = 1; i < 4000; i++) {
+            final String number = RomanArabicConverter.roman(i);
+            cache.tryParse(number, 0, number.length());
+        }
+        assertTrue(cache.size() <= cache.capacity());
+        assertEquals(3999 - cache.size(), cache.evictions());
+    }
+    
+    @Test
+    public void keepsWhatIsUsed() {
+        final ParseCache cache = new ParseCache(8);
+        cache.tryParse("XIV", 0, 3);
+        for (int i = 1; i < 1000; i++) {
+            // The hot one is hit between every new one, so the hand always gives it a second chance
+            assertEquals(14, cache.tryParse("XIV", 0, 3));
+            final String number = RomanArabicConverter.roman(i).toLowerCase();
+            cache.tryParse(number, 0, number.length());
+        }
+        assertEquals(999, cache.hits());
+    }
+    
+    @Test
+    public void tooLongToCache() {
+        final ParseCache cache = new ParseCache(8);
+        final String padded = " ".repeat(ParseCache.MAX_KEY_LENGTH) + "X";
+        assertEquals(10, cache.tryParse(padded, 0, padded.length()));
+        assertEquals(10, cache.tryParse(padded, 0, padded.length()));
+        assertEquals(2, cache.misses());
+        assertEquals(0, cache.size());
+    }
+    
+    @Test
+    public void arabicNotCached() {
+        final ParseCache cache = new ParseCache(8);
+        for (String number : new String[] {"14", "  -7 ", "+0", "12x", "14"}) {
+            assertEquals(number, RomanArabicConverter.tryParse(number, 0, number.length()), cache.tryParse(number, 0, number.length()));
+        }
+        assertEquals(0, cache.hits() + cache.misses());
+        assertEquals(0, cache.size());
+    }
+    
+    @Test
+    public void notWholeString() {
+        // Keys made from part of a CharSequence have to match whole Strings, and the other way round
+        final ParseCache cache = new ParseCache(8);
+        assertEquals(14, cache.tryParse(new StringBuilder("#XIV#"), 1, 4));
+        assertEquals(14, cache.tryParse("XIV", 0, 3));
+        assertEquals(14, cache.tryParse("<XIV>", 1, 4));
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+    
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void badRange() {
+        new ParseCache(8).tryParse("XIV", 2, 4);
+    }
+    
+    @Test
+    public void concurrent() throws Exception {
+        final ParseCache cache = new ParseCache(256);
+        final ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int seed = t;
+                results.add(threads.submit(() -> {
+                    for (int i = 0; i < 20000; i++) {
+                        final int value = 1 + (i * 7919 + seed) % 500;
+                        final String number = (i & 1) == 0 ? Integer.toString(value) : RomanArabicConverter.roman(value);
+                        assertEquals(value, cache.tryParse(number, 0, number.length()));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            threads.shutdown();
+        }
+        // Only the Roman half is looked up
+        assertEquals(8 * 10000, cache.hits() + cache.misses());
+        assertTrue(cache.size() <= 256);
+    }
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the PerfectHashDecoder class.
+ *
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class PerfectHashDecoderTest {
+
+    @Test
+    public void everyCanonicalNumeral() throws ValueOutOfBoundsException, MalformedNumberException {
+        for (int i = 1; i < 4000; i++) {
+            final String numeral = "  " + new RomanArabicConverter(Integer.toString(i)).toRoman() + "\t";
+            assertEquals(numeral, i, PerfectHashDecoder.decodeCanonical(numeral, 0, numeral.length()));
+        }
+    }
+    
+    @Test
+    public void anyCase() {
+        assertEquals(1994, PerfectHashDecoder.decodeCanonical("mcmxciv", 0, 7));
+        assertEquals(14, PerfectHashDecoder.decodeCanonical(" xIv", 0, 4));
+        assertEquals(4, PerfectHashDecoder.decodeCanonical("\u2160\u2164", 0, 2));
+    }
+    
+    @Test
+    public void notCanonical() {
+        for (String numeral : new String[] {"", " ", "IIII", "IVI", "XCX", "IIV", "MMMM", "iiii", "\u216B", "14", "XIVX", "MMMDCCCLXXXVIIII", "garbage"}) {
+            assertEquals(numeral, -1, PerfectHashDecoder.decodeCanonical(numeral, 0, numeral.length()));
+        }
+    }
+    
+    /*
+     * Anything the table doesn't have goes through the regular parser, so the results are the same
+     */
+    @Test
+    public void sameAsTryParse() {
+        final char[] buffer = new char[6];
+        compareAll(buffer, 0);
+        for (String number : new String[] {" 14 ", "-3", "IVI", "XCX", "2147483648", "\u2163"}) {
+            assertEquals(RomanArabicConverter.tryParse(number, 0, number.length()), PerfectHashDecoder.tryParse(number, 0, number.length()));
+        }
+    }
+    
+    private static void compareAll(char[] buffer, int length) {
+        final String numeral = new String(buffer, 0, length);
+        assertEquals(numeral, RomanArabicConverter.tryParse(numeral, 0, length), PerfectHashDecoder.tryParse(numeral, 0, length));
+        if (length == buffer.length) return;
+        for (char c : "IVXLCDM ".toCharArray()) {
+            buffer[length] = c;
+            compareAll(buffer, length + 1);
+        }
+    }
+    
+    @Test
+    public void selectableInBulk() {
+        final CharSequence[] numbers = {"XIV", "IIII", " MMXIV ", "12", "0"};
+        final int[] standard = new int[numbers.length];
+        final int[] hashed = new int[numbers.length];
+        final byte[] standardStatus = new byte[numbers.length];
+        final byte[] hashedStatus = new byte[numbers.length];
+        assertEquals(2, BulkConverter.toArabic(numbers, 0, numbers.length, standard, 0, standardStatus, 0));
+        assertEquals(2, BulkConverter.toArabic(numbers, 0, numbers.length, hashed, 0, hashedStatus, 0, NumeralParser.PERFECT_HASH));
+        assertArrayEquals(standard, hashed);
+        assertArrayEquals(standardStatus, hashedStatus);
+    }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+
+package tdd;
+
+/**
+ * The Roman numeral parser from before the automaton: split the numeral on "places" with
+ * getFirstOrIndex, then parse each place with parsePlace. It's kept around so the automaton can be
+ * checked against it.
+ *
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+final class PlaceParser {
+
+	/**
+	 * Parses a Roman numeral by splitting it on "places" and parsing each one.
+	 * @param value the characters holding the numeral
+	 * @param from index of the first character, with no spaces
+	 * @param to index after the last character, with no spaces
+	 * @return the value of the numeral, or a failure if it's not a valid numeral
+	 */
+	static long parseRoman(CharSequence value, int from, int to) {
+	    // Try to split the string on "places"
+	    final int onesIndex = getFirstOrIndex('I', 'V', value, from, to);
+	    final int tensIndex = getFirstOrIndex('X', 'L', value, from, onesIndex);
+	    final int hundsIndex = getFirstOrIndex('C', 'D', value, from, tensIndex);
+	    final int thousIndex = getFirstOrIndex('M', 'M', value, from, hundsIndex);
+	    
+	    if (thousIndex == to) return NumeralError.NOT_A_NUMBER.at(from); // Fixes spacesInWeirdPlaces
+	    if (thousIndex != from) return NumeralError.NOT_A_NUMBER.at(from); // This works because if any previous index is 0, thousIndex will be 0. If thousIndex isn't 0, we have some weird nonsense in front of our numeral.
+	    
+	    long place = parsePlace('I', 'V', 'X', value, onesIndex, to);
+	    if (!RomanArabicConverter.isValid(place)) return place;
+	    long result = place;
+	    if (tensIndex < onesIndex) {
+	        place = parsePlace('X', 'L', 'C', value, tensIndex, onesIndex);
+	        if (!RomanArabicConverter.isValid(place)) return place;
+	        result += 10 * place;
+	    }
+	    if (hundsIndex < tensIndex) {
+	        place = parsePlace('C', 'D', 'M', value, hundsIndex, tensIndex);
+	        if (!RomanArabicConverter.isValid(place)) return place;
+	        result += 100 * place;
+	    }
+	    if (thousIndex < hundsIndex) {
+	        place = parsePlace('M', 'M', 'M', value, thousIndex, hundsIndex); // This works because it short will always look at the 'unit' place first :)
+	        if (!RomanArabicConverter.isValid(place)) return place;
+	        result += 1000 * place;
+	    }
+	    return result;
+	}
+	
+	/**
+	 * Gets the first case of either character appearing before def. Each place starts before
+	 * the place below it, so there's no need to look any further than that.
+	 * @param either First char to look for
+	 * @param or the other char to look for
+	 * @param str characters to look in
+	 * @param from index to start looking at
+	 * @param def index to stop looking at, and the value to return if you can't find either
+	 * @return the first appearance of 'either' or 'or', or 'def' if neither shows up before it.
+	 */
+	private static int getFirstOrIndex(char either, char or, CharSequence str, int from, int def) {
+	    for (int i = from; i < def; i++) {
+	        final char c = str.charAt(i);
+	        if (c == either || c == or) return i;
+	    }
+	    return def;
+	}
+	
+	/**
+	 * Parses the given 'place' in the roman numeral
+	 * @param unit expected unit for the place (e.g. I for ones place)
+	 * @param half half for place (e.g. V for once place)
+	 * @param next next place unit (e.g. X for ones place)
+	 * @param num the characters you want to parse
+	 * @param from index of the first character of the place
+	 * @param to index after the last character of the place
+	 * @return the number represented by it, or a failure if your string is bad.
+	 */
+	private static long parsePlace(char unit, char half, char next, CharSequence num, int from, int to) {
+	    int val = 0;
+	    
+	    for (int i = from; i < to; i++) {
+	        final char c = num.charAt(i);
+	        if (c == unit) {
+	            val++;
+	            if (val % 5 == 4) return NumeralError.TOO_MANY_REPEATS.at(i); // IIII or VIIII
+	        } else if (c == half) {
+	            if (val == 1) val += 3; // IV
+	            else if (val == 0) val += 5; // V
+	            else return NumeralError.BAD_SUBTRACTIVE_PAIR.at(i); // IIV etc.
+	        } else if (c == next) {
+	            if (val == 1) val += 8;
+	            else return NumeralError.BAD_SUBTRACTIVE_PAIR.at(i); // VX IIX etc.
+	        } else {
+	            return NumeralError.UNEXPECTED_CHARACTER.at(i);
+	        }
+	    }
+	    
+	    return val;
+	}
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the RecordScanner and VectorRecordScanner classes. The build adds the incubator
+ * module for tests, so the vector one is checked against the scalar one.
+ *
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class RecordScannerTest {
+
+    private static int[] scan(RecordScanner scanner, String text, int from, int max) {
+        final ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1));
+        final int[] ends = new int[max];
+        return Arrays.copyOf(ends, scanner.scan(bytes, from, bytes.limit(), ends, max));
+    }
+    
+    @Test
+    public void scalar() {
+        assertArrayEquals(new int[] {4, ~9, ~11, 15}, scan(RecordScanner.SCALAR, " XIV\nMM!I\nÿ\n12 \nIV", 0, 10));
+        assertArrayEquals(new int[] {4, ~9}, scan(RecordScanner.SCALAR, " XIV\nMM!I\nÿ\n12 \nIV", 0, 2));
+        assertArrayEquals(new int[] {~11, 15}, scan(RecordScanner.SCALAR, " XIV\nMM!I\nÿ\n12 \nIV", 10, 10));
+        assertArrayEquals(new int[0], scan(RecordScanner.SCALAR, "\t+-0123456789IVXLCDMivxlcdm\r", 0, 10));
+    }
+    
+    @Test
+    public void legalBytes() {
+        for (int b = 0; b < 256; b++) {
+            final boolean legal = b <= ' ' || (b >= '0' && b <= '9') || "+-IVXLCDMivxlcdm".indexOf(b) >= 0;
+            assertEquals(Integer.toString(b), legal, RecordScanner.isLegal((byte) b));
+        }
+    }
+    
+    @Test
+    public void vectorSameAsScalar() {
+        assumeTrue(RecordScanner.INSTANCE instanceof VectorRecordScanner);
+        final Random random = new Random(15);
+        final String alphabet = "\n\n\n\nIVXLCDM0123456789 \r+-ivxlcdm!ÉÿKk@`";
+        for (int round = 0; round < 2000; round++) {
+            final char[] text = new char[random.nextInt(300)];
+            for (int i = 0; i < text.length; i++) {
+                // Mostly short lines, sometimes long ones that span vectors
+                text[i] = random.nextInt(20) == 0 ? 'I' : alphabet.charAt(random.nextInt(alphabet.length()));
+            }
+            final String string = new String(text);
+            final int from = text.length == 0 ? 0 : random.nextInt(text.length);
+            final int max = 1 + random.nextInt(40);
+            assertArrayEquals(string, scan(RecordScanner.SCALAR, string, from, max), scan(RecordScanner.INSTANCE, string, from, max));
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+
+package tdd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the RomanAutomaton class, mostly checking it against PlaceParser.
+ *
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class RomanAutomatonTest {
+
+    /*
+     * Every string up to 7 characters long made of Roman letters, and every string up to 5
+     * characters long made of Roman letters and a couple of things that aren't.
+     */
+    @Test
+    public void sameAsPlaceParser() {
+        final char[] buffer = new char[7];
+        assertEquals(960799, compareAll(buffer, 0, "IVXLCDM", 7));
+        assertEquals(66429, compareAll(buffer, 0, "IVXLCDM a", 5));
+    }
+    
+    private static int compareAll(char[] buffer, int length, String alphabet, int maxLength) {
+        int compared = 0;
+        if (length > 0) {
+            final String numeral = new String(buffer, 0, length);
+            final long expected = PlaceParser.parseRoman(numeral, 0, length);
+            final long actual = RomanAutomaton.parse(numeral, 0, length);
+            assertEquals(numeral, RomanArabicConverter.isValid(expected), RomanArabicConverter.isValid(actual));
+            if (RomanArabicConverter.isValid(expected)) assertEquals(numeral, expected, actual);
+            compared++;
+        }
+        if (length == maxLength) return compared;
+        for (int i = 0; i < alphabet.length(); i++) {
+            buffer[length] = alphabet.charAt(i);
+            compared += compareAll(buffer, length + 1, alphabet, maxLength);
+        }
+        return compared;
+    }
+    
+    @Test
+    public void canonicalNumerals() throws ValueOutOfBoundsException, MalformedNumberException {
+        for (int i = 1; i < 4000; i++) {
+            final String numeral = new RomanArabicConverter(Integer.toString(i)).toRoman();
+            assertEquals(i, RomanAutomaton.parse(numeral, 0, numeral.length()));
+        }
+    }
+    
+    /*
+     * Failures point at the first character that can't be right
+     */
+    @Test
+    public void firstBadCharacter() {
+        assertRejected(NumeralError.NOT_A_NUMBER, 0, "aXIV");
+        assertRejected(NumeralError.UNEXPECTED_CHARACTER, 2, "XIaV");
+        assertRejected(NumeralError.TOO_MANY_REPEATS, 3, "MMMMCCCC");
+        assertRejected(NumeralError.BAD_SUBTRACTIVE_PAIR, 2, "XXC");
+        assertRejected(NumeralError.BAD_SUBTRACTIVE_PAIR, 3, "MDVX");
+        assertRejected(NumeralError.UNEXPECTED_CHARACTER, 1, "IL");
+        assertRejected(NumeralError.UNEXPECTED_CHARACTER, 2, "XCM");
+    }
+    
+    private static void assertRejected(NumeralError error, int offset, String numeral) {
+        final long result = RomanAutomaton.parse(numeral, 0, numeral.length());
+        assertFalse(numeral, RomanArabicConverter.isValid(result));
+        assertEquals(numeral, error, NumeralError.of(result));
+        assertEquals(numeral, offset, NumeralError.offsetOf(result));
+    }
+    
+    /*
+     * The odd ones parsePlace always let through
+     */
+    @Test
+    public void oddButAccepted() {
+        assertTrue(RomanArabicConverter.isValid(RomanAutomaton.parse("IVI", 0, 3)));
+        assertEquals(5, RomanAutomaton.parse("IVI", 0, 3));
+        assertEquals(100, RomanAutomaton.parse("XCX", 0, 3));
+        assertEquals(20, RomanAutomaton.parse("XIXI", 0, 4));
+    }
+    
+    /*
+     * Lowercase and mixed case go through exactly the same transitions, failures included
+     */
+    @Test
+    public void anyCase() {
+        final char[] buffer = new char[5];
+        assertEquals(19607, compareCases(buffer, 0));
+    }
+    
+    private static int compareCases(char[] buffer, int length) {
+        int compared = 0;
+        if (length > 0) {
+            final String numeral = new String(buffer, 0, length);
+            final long expected = RomanAutomaton.parse(numeral, 0, length);
+            assertEquals(numeral, expected, RomanAutomaton.parse(numeral.toLowerCase(), 0, length));
+            // Every other letter lowercase
+            final char[] mixed = numeral.toCharArray();
+            for (int i = 0; i < length; i += 2) mixed[i] = Character.toLowerCase(mixed[i]);
+            assertEquals(numeral, expected, RomanAutomaton.parse(new String(mixed), 0, length));
+            compared++;
+        }
+        if (length == buffer.length) return compared;
+        for (char c : "IVXLCDM".toCharArray()) {
+            buffer[length] = c;
+            compared += compareCases(buffer, length + 1);
+        }
+        return compared;
+    }
+    
+    /*
+     * U+2160 to U+216F are uppercase I to XII, L, C, D and M, and U+2170 to U+217F the same in lowercase
+     */
+    @Test
+    public void unicodeLetters() throws ValueOutOfBoundsException {
+        final String letters = "IVXLCDM";
+        final String unicode = "\u2160\u2164\u2169\u216C\u216D\u216E\u216F";
+        for (int i = 1; i < 4000; i++) {
+            final String numeral = RomanArabicConverter.valueOf(i).toRoman();
+            final char[] upper = new char[numeral.length()];
+            final char[] lower = new char[numeral.length()];
+            for (int c = 0; c < upper.length; c++) {
+                upper[c] = unicode.charAt(letters.indexOf(numeral.charAt(c)));
+                lower[c] = (char) (upper[c] + 0x10);
+            }
+            assertEquals(numeral, i, RomanAutomaton.parse(new String(upper), 0, upper.length));
+            assertEquals(numeral, i, RomanAutomaton.parse(new String(lower), 0, lower.length));
+        }
+    }
+    
+    @Test
+    public void unicodeLigatures() {
+        final String[] forms = {"I", "II", "III", "IV", "V", "VI", "VII", "VIII", "IX", "X", "XI", "XII"};
+        for (int i = 0; i < forms.length; i++) {
+            assertEquals(forms[i], i + 1, RomanAutomaton.parse(String.valueOf((char) ('\u2160' + i)), 0, 1));
+            assertEquals(forms[i], i + 1, RomanAutomaton.parse(String.valueOf((char) ('\u2170' + i)), 0, 1));
+        }
+        assertEquals(2022, RomanAutomaton.parse("\u216F\u216F\u2169\u216B", 0, 4));
+        assertEquals(14, RomanAutomaton.parse("\u2169iv", 0, 3));
+        assertEquals(13, RomanAutomaton.parse("\u216B\u2160", 0, 2));
+        assertEquals(1006, RomanAutomaton.parse("\u2180\u2185", 0, 2));
+        assertEquals(50, RomanAutomaton.parse("\u2186", 0, 1));
+    }
+    
+    @Test
+    public void unicodeRejected() {
+        // IIII, rejected at the character holding the fourth I
+        assertRejected(NumeralError.TOO_MANY_REPEATS, 1, "\u2162\u2160");
+        // XIIX, rejected at the X
+        assertRejected(NumeralError.BAD_SUBTRACTIVE_PAIR, 1, "\u216Bx");
+        // IL
+        assertRejected(NumeralError.UNEXPECTED_CHARACTER, 1, "\u2160\u216C");
+        // 5000, 10000, reversed C, and a letter from outside the block
+        assertRejected(NumeralError.NOT_A_NUMBER, 0, "\u2181");
+        assertRejected(NumeralError.UNEXPECTED_CHARACTER, 1, "M\u2182");
+        assertRejected(NumeralError.UNEXPECTED_CHARACTER, 1, "C\u2183");
+        assertRejected(NumeralError.UNEXPECTED_CHARACTER, 2, "XI\u00CF");
+        assertRejected(NumeralError.NOT_A_NUMBER, 0, "\u215F");
+        assertRejected(NumeralError.NOT_A_NUMBER, 0, "\u2189");
+    }
+    
+    @Test
+    public void classes() {
+        assertEquals(RomanAutomaton.X, RomanAutomaton.classOf('x'));
+        assertEquals(RomanAutomaton.M, RomanAutomaton.classOf('\u217F'));
+        assertEquals(RomanAutomaton.M, RomanAutomaton.classOf('\u2180'));
+        assertEquals(RomanAutomaton.OTHER, RomanAutomaton.classOf('\u216B'));
+        assertEquals(RomanAutomaton.OTHER, RomanAutomaton.classOf('\u00E9'));
+    }
+}
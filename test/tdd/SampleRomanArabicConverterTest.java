@@ -15,6 +15,15 @@
 package tdd;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import org.junit.Test;
 
@@ -438,9 +447,23 @@ public class SampleRomanArabicConverterTest {
         new RomanArabicConverter("IVgarbageIV");
     }
     
-    @Test(expected=MalformedNumberException.class)
+    @Test
     public void lowerCase() throws MalformedNumberException {
-        new RomanArabicConverter("iv"); // The Wikipedia article makes it seem like lowercase isn't allowed, so it isn't allowed :)
+        // Lowercase is how numerals often turn up in feeds, so it means the same as uppercase
+        assertEquals(4, new RomanArabicConverter("iv").toArabic());
+        assertEquals(1994, new RomanArabicConverter(" mcmXciv ").toArabic());
+    }
+    
+    @Test
+    public void unicodeNumerals() throws MalformedNumberException {
+        assertEquals(12, new RomanArabicConverter("\u216B").toArabic());
+        assertEquals(12, new RomanArabicConverter("\u217B").toArabic());
+        assertEquals(1994, new RomanArabicConverter("\u216F\u216D\u216F\u2169\u216D\u2173").toArabic());
+    }
+    
+    @Test(expected=MalformedNumberException.class)
+    public void unicodeNumeralsStillChecked() throws MalformedNumberException {
+        new RomanArabicConverter("\u2162\u2160"); // III then I is IIII
     }
     
     @Test(expected=MalformedNumberException.class)
@@ -452,4 +475,205 @@ public class SampleRomanArabicConverterTest {
     public void mixedInput2() throws MalformedNumberException {
         new RomanArabicConverter("IX15");
     }
+    
+    /*
+     * toRoman() now comes out of a table, so check every entry against the usual greedy algorithm.
+     */
+    @Test
+    public void fullRangeToRoman() throws ValueOutOfBoundsException, MalformedNumberException {
+        final int[] values = {1000, 900, 500, 400, 100, 90, 50, 40, 10, 9, 5, 4, 1};
+        final String[] numerals = {"M", "CM", "D", "CD", "C", "XC", "L", "XL", "X", "IX", "V", "IV", "I"};
+        for (int i = 1; i < 4000; i++) {
+            final StringBuilder expected = new StringBuilder();
+            int left = i;
+            for (int j = 0; j < values.length; j++) {
+                while (left >= values[j]) {
+                    expected.append(numerals[j]);
+                    left -= values[j];
+                }
+            }
+            assertEquals(expected.toString(), new RomanArabicConverter(Integer.toString(i)).toRoman());
+        }
+    }
+    
+    @Test
+    public void toRomanReturnsSharedString() throws ValueOutOfBoundsException, MalformedNumberException {
+        assertSame(new RomanArabicConverter("1888").toRoman(), new RomanArabicConverter("MDCCCLXXXVIII").toRoman());
+    }
+    
+    /*
+     * CM used to be rejected unless there was an M in front of it
+     */
+    @Test
+    public void input_CMXCIX_() throws ValueOutOfBoundsException, MalformedNumberException {
+        final RomanArabicConverter rac = new RomanArabicConverter("CMXCIX");
+        assertEquals(999, rac.toArabic());
+        assertEquals("CMXCIX", rac.toRoman());
+    }
+    
+    @Test
+    public void fullRangeRoundTrip() throws ValueOutOfBoundsException, MalformedNumberException {
+        for (int i = 1; i < 4000; i++) {
+            final String roman = new RomanArabicConverter(Integer.toString(i)).toRoman();
+            assertEquals(i, new RomanArabicConverter(roman).toArabic());
+        }
+    }
+    
+    /*
+     * Parsing slices of a bigger buffer
+     */
+    @Test
+    public void parseSlices() throws MalformedNumberException {
+        final StringBuilder buffer = new StringBuilder("12,  XIV ,-7,MMMCMXCIX");
+        assertEquals(12, RomanArabicConverter.parse(buffer, 0, 2));
+        assertEquals(14, RomanArabicConverter.parse(buffer, 3, 9));
+        assertEquals(-7, RomanArabicConverter.parse(buffer, 10, 12));
+        assertEquals(3999, RomanArabicConverter.parse(buffer, 13, buffer.length()));
+        assertEquals(4, RomanArabicConverter.parse(buffer, 6, 8));
+    }
+    
+    @Test
+    public void parseIntLimits() throws MalformedNumberException {
+        assertEquals(Integer.MAX_VALUE, RomanArabicConverter.parse("2147483647", 0, 10));
+        assertEquals(Integer.MIN_VALUE, RomanArabicConverter.parse("-2147483648", 0, 11));
+        assertEquals(5, RomanArabicConverter.parse("+5", 0, 2));
+    }
+    
+    @Test(expected=MalformedNumberException.class)
+    public void parseOverflow() throws MalformedNumberException {
+        RomanArabicConverter.parse("2147483648", 0, 10);
+    }
+    
+    @Test(expected=MalformedNumberException.class)
+    public void parseSignOnly() throws MalformedNumberException {
+        RomanArabicConverter.parse(" - ", 0, 3);
+    }
+    
+    @Test(expected=MalformedNumberException.class)
+    public void parseEmptySlice() throws MalformedNumberException {
+        RomanArabicConverter.parse("XIV", 1, 1);
+    }
+    
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void parseBadRange() throws MalformedNumberException {
+        RomanArabicConverter.parse("XIV", 2, 4);
+    }
+    
+    /*
+     * Reporting failures without exceptions
+     */
+    @Test
+    public void tryParseValid() {
+        final long result = RomanArabicConverter.tryParse(" XIV ", 0, 5);
+        assertTrue(RomanArabicConverter.isValid(result));
+        assertEquals(14, result);
+        assertNull(NumeralError.of(result));
+        assertTrue(RomanArabicConverter.isValid(RomanArabicConverter.tryParse("-2147483648", 0, 11)));
+    }
+    
+    @Test
+    public void tryParseFailures() {
+        assertFailure(NumeralError.EMPTY, 3, "   ");
+        assertFailure(NumeralError.NOT_A_NUMBER, 0, "garbage");
+        assertFailure(NumeralError.NOT_A_NUMBER, 1, "1 4");
+        assertFailure(NumeralError.TOO_MANY_REPEATS, 4, " IIII");
+        assertFailure(NumeralError.BAD_SUBTRACTIVE_PAIR, 2, "IIV");
+        assertFailure(NumeralError.UNEXPECTED_CHARACTER, 2, "IVgarbageIV");
+    }
+    
+    private static void assertFailure(NumeralError error, int offset, String input) {
+        final long result = RomanArabicConverter.tryParse(input, 0, input.length());
+        assertFalse(RomanArabicConverter.isValid(result));
+        assertEquals(error, NumeralError.of(result));
+        assertEquals(offset, NumeralError.offsetOf(result));
+    }
+    
+    @Test
+    public void exceptionsSkipStackTrace() throws ValueOutOfBoundsException {
+        try {
+            new RomanArabicConverter("IIV");
+            fail();
+        } catch (MalformedNumberException e) {
+            assertEquals("Invalid characters before 'V'!", e.getMessage());
+            assertEquals(0, e.getStackTrace().length);
+        }
+    }
+    
+    /*
+     * Encoding straight into bytes
+     */
+    @Test
+    public void encodeIntoArray() throws ValueOutOfBoundsException, MalformedNumberException {
+        final byte[] dst = new byte[2 + RomanArabicConverter.MAX_ROMAN_LENGTH];
+        for (int i = 1; i < 4000; i++) {
+            final int written = RomanArabicConverter.encode(i, dst, 2);
+            assertEquals(new RomanArabicConverter(Integer.toString(i)).toRoman(), new String(dst, 2, written, StandardCharsets.US_ASCII));
+        }
+        assertEquals(15, RomanArabicConverter.encode(3888, dst, 2));
+    }
+    
+    @Test
+    public void encodeIntoBuffer() {
+        final ByteBuffer dst = ByteBuffer.allocate(32);
+        dst.put((byte) '[');
+        assertEquals(7, RomanArabicConverter.encode(1666, dst));
+        assertEquals(-1, RomanArabicConverter.encode(0, dst));
+        assertEquals(2, RomanArabicConverter.encode(9, dst));
+        dst.put((byte) ']');
+        assertEquals("[MDCLXVIIX]", new String(dst.array(), 0, dst.position(), StandardCharsets.US_ASCII));
+    }
+    
+    @Test
+    public void encodeOutOfRange() {
+        final byte[] dst = {1, 2, 3};
+        assertEquals(-1, RomanArabicConverter.encode(4000, dst, 0));
+        assertEquals(-1, RomanArabicConverter.encode(-5, dst, 0));
+        assertEquals(1, dst[0]);
+    }
+    
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void encodeTooSmall() {
+        RomanArabicConverter.encode(8, new byte[4], 1);
+    }
+    
+    @Test
+    public void valueOfIsShared() throws ValueOutOfBoundsException, MalformedNumberException {
+        for (int i = 1; i < 4000; i++) {
+            final RomanArabicConverter converter = RomanArabicConverter.valueOf(i);
+            assertSame(converter, RomanArabicConverter.valueOf(i));
+            assertEquals(i, converter.toArabic());
+            assertEquals(new RomanArabicConverter(Integer.toString(i)).toRoman(), converter.toRoman());
+        }
+        assertSame(RomanArabicConverter.valueOf(14), RomanArabicConverter.valueOf(" XIV "));
+    }
+    
+    @Test
+    public void valueOfOutOfRange() throws MalformedNumberException {
+        assertEquals(0, RomanArabicConverter.valueOf(0).toArabic());
+        assertEquals(-4000, RomanArabicConverter.valueOf("-4000").toArabic());
+        assertNotSame(RomanArabicConverter.valueOf(4000), RomanArabicConverter.valueOf(4000));
+    }
+    
+    @Test(expected=MalformedNumberException.class)
+    public void valueOfMalformed() throws MalformedNumberException {
+        RomanArabicConverter.valueOf("IIII");
+    }
+    
+    @Test
+    public void suppressionFollowsStackTrace() {
+        final IllegalStateException closing = new IllegalStateException("close failed");
+        final Exception[] withTraces = {new MalformedNumberException("bad"), new MalformedNumberException("bad", true),
+                new ValueOutOfBoundsException("far"), new ValueOutOfBoundsException("far", true)};
+        for (Exception e : withTraces) {
+            e.addSuppressed(closing);
+            assertEquals(1, e.getSuppressed().length);
+            assertTrue(e.getStackTrace().length > 0);
+        }
+        final Exception[] cheap = {new MalformedNumberException("bad", false), new ValueOutOfBoundsException("far", false)};
+        for (Exception e : cheap) {
+            e.addSuppressed(closing);
+            assertEquals(0, e.getSuppressed().length);
+            assertEquals(0, e.getStackTrace().length);
+        }
+    }
 }
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Gary F. Pollice
+ * 
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  * Contributors:
+ *    gpollice
+ *    rpdabrowski
+ *******************************************************************************/
+package tdd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Test cases for the ValidationReport class.
+ *
+ * @author rpdabrowski
+ * @version 2.1.0
+ */
+public class ValidationReportTest {
+
+    private static final String[] ROWS = {"XIV", "", "MMXXIV", "XIV?", "IIII", "IIV", "4000", "abc", "0", " 42 "};
+    
+    private static void assertFailure(ValidationReport report, int entry, long row, int offset, NumeralError error) {
+        assertEquals(row, report.row(entry));
+        assertEquals(offset, report.offset(entry));
+        assertEquals(error, report.error(entry));
+    }
+    
+    @Test
+    public void failures() {
+        final ValidationReport report = new ValidationReport();
+        report.checkAll(ROWS, 0, ROWS.length);
+        assertEquals(10, report.rows());
+        assertEquals(3, report.passed());
+        assertEquals(7, report.failures());
+        assertEquals(7, report.size());
+        assertFailure(report, 0, 1, 0, NumeralError.EMPTY);
+        assertFailure(report, 1, 3, 3, NumeralError.UNEXPECTED_CHARACTER);
+        assertFailure(report, 2, 4, 3, NumeralError.TOO_MANY_REPEATS);
+        assertFailure(report, 3, 5, 2, NumeralError.BAD_SUBTRACTIVE_PAIR);
+        assertFailure(report, 4, 6, -1, NumeralError.OUT_OF_RANGE);
+        assertFailure(report, 5, 7, 0, NumeralError.NOT_A_NUMBER);
+        assertFailure(report, 6, 8, -1, NumeralError.OUT_OF_RANGE);
+        assertEquals(2, report.count(NumeralError.OUT_OF_RANGE));
+        assertEquals(1, report.count(NumeralError.EMPTY));
+    }
+    
+    @Test
+    public void messagesMatchExceptions() {
+        final ValidationReport report = new ValidationReport();
+        report.checkAll(ROWS, 0, ROWS.length);
+        for (int entry = 0; entry < report.size(); entry++) {
+            final String row = ROWS[(int) report.row(entry)];
+            String expected;
+            try {
+                expected = new RomanArabicConverter(row).toRoman();
+            } catch (MalformedNumberException | ValueOutOfBoundsException e) {
+                expected = e.getMessage();
+            }
+            final String prefix = report.offset(entry) < 0 ? "Row " + report.row(entry) + ": "
+                    : "Row " + report.row(entry) + ", offset " + report.offset(entry) + ": ";
+            assertEquals(prefix + expected, report.message(entry));
+        }
+    }
+    
+    @Test
+    public void check() {
+        final ValidationReport report = new ValidationReport();
+        assertEquals(14, report.check("XIV"));
+        assertEquals(NumeralError.OUT_OF_RANGE, NumeralError.of(report.check("-5")));
+        assertEquals(NumeralError.TOO_MANY_REPEATS, NumeralError.of(report.check("XXXX")));
+        assertNull(NumeralError.of(report.check("3999")));
+    }
+    
+    @Test
+    public void linesSameAsRows() {
+        final ValidationReport rows = new ValidationReport();
+        rows.checkAll(ROWS, 0, ROWS.length);
+        final ValidationReport lines = new ValidationReport();
+        lines.checkLines(ByteBuffer.wrap(String.join("\n", ROWS).getBytes(StandardCharsets.ISO_8859_1)));
+        assertEquals(rows.toString(), lines.toString());
+        assertEquals(rows.size(), lines.size());
+        for (int entry = 0; entry < rows.size(); entry++) {
+            assertEquals(rows.message(entry), lines.message(entry));
+        }
+    }
+    
+    @Test
+    public void maxFailures() {
+        final ValidationReport report = new ValidationReport(2);
+        for (int i = 0; i < 100; i++) report.check("?");
+        assertEquals(2, report.size());
+        assertEquals(100, report.failures());
+        assertEquals(100, report.count(NumeralError.NOT_A_NUMBER));
+        assertEquals(1, report.row(1));
+    }
+    
+    @Test
+    public void merge() {
+        final ValidationReport first = new ValidationReport();
+        first.checkAll(ROWS, 0, 4);
+        final ValidationReport second = new ValidationReport();
+        second.checkAll(ROWS, 4, ROWS.length);
+        first.merge(second);
+        final ValidationReport all = new ValidationReport();
+        all.checkAll(ROWS, 0, ROWS.length);
+        assertEquals(all.toString(), first.toString());
+        for (int entry = 0; entry < all.size(); entry++) {
+            assertEquals(all.message(entry), first.message(entry));
+        }
+    }
+    
+    @Test
+    public void summary() {
+        final ValidationReport report = new ValidationReport();
+        report.checkAll(ROWS, 0, ROWS.length);
+        assertEquals("10 rows, 3 passed, 1 EMPTY, 1 NOT_A_NUMBER, 1 UNEXPECTED_CHARACTER, 1 TOO_MANY_REPEATS, "
+                + "1 BAD_SUBTRACTIVE_PAIR, 2 OUT_OF_RANGE", report.toString());
+        report.clear();
+        assertEquals("0 rows, 0 passed", report.toString());
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void noSuchEntry() {
+        new ValidationReport().message(0);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeMax() {
+        new ValidationReport(-1);
+    }
+}